@@ -0,0 +1,62 @@
+#!/bin/bash
+
+# 行程输出格式基准测试：对本地桩服务分别使用完整字段（verbose）和紧凑格式（compact）生成行程，
+# 对比单次规划耗时、输出token数以及按紧凑格式展开的天数。桩服务按输出token数追加延迟，模拟耗时随输出长度增长的模型
+# 用法: mvn -B package -DskipTests && ./scripts/benchmark-compact-schema.sh [请求数]
+
+cd "$(dirname "$0")/.."
+
+REQUESTS=${1:-30}
+STUB_PORT=18080
+APP_PORT=18081
+JAR=$(ls target/ai-travel-planner-*.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+    echo "❌ 未找到应用jar，请先执行 mvn -B package -DskipTests"
+    exit 1
+fi
+
+PORT=$STUB_PORT DELAY_MS=${DELAY_MS:-200} MS_PER_TOKEN=${MS_PER_TOKEN:-5} node scripts/stub-openai-server.js &
+STUB_PID=$!
+trap 'kill $STUB_PID 2>/dev/null' EXIT
+sleep 1
+
+# 7天行程，关闭渐进式生成，使整个行程在一次调用中输出
+BODY='{"destination":"厦门","startDate":"2025-05-01","endDate":"2025-05-07","budget":7000,"companions":2,"preferences":"美食, 海边","progressive":false}'
+
+for SCHEMA in verbose compact; do
+    echo "🚀 输出格式: $SCHEMA"
+    java -jar "$JAR" --server.port=$APP_PORT \
+        --app.ai.itinerary.compact-schema=$([ "$SCHEMA" = compact ] && echo true || echo false) \
+        --app.workflow.generation=pipeline \
+        --app.cache.enabled=false \
+        --app.ai.routing.default-client=openAiChatClient \
+        --spring.ai.openai.base-url=http://localhost:$STUB_PORT \
+        --logging.level.com.aitravelplanner=WARN > /dev/null 2>&1 &
+    APP_PID=$!
+
+    until curl -sf http://localhost:$APP_PORT/api/ai/health > /dev/null; do sleep 1; done
+
+    BEFORE=$(curl -s http://localhost:$STUB_PORT/stats)
+    TIMES=$(for i in $(seq 1 "$REQUESTS"); do
+        curl -s -o /dev/null -w '%{time_total}\n' -X POST http://localhost:$APP_PORT/api/ai/plan \
+            -H 'Content-Type: application/json' -d "$BODY"
+    done)
+    AFTER=$(curl -s http://localhost:$STUB_PORT/stats)
+    METRICS=$(curl -s http://localhost:$APP_PORT/api/ai/metrics)
+
+    REQUESTS=$REQUESTS TIMES="$TIMES" BEFORE="$BEFORE" AFTER="$AFTER" METRICS="$METRICS" node -e '
+        const n = Number(process.env.REQUESTS);
+        const times = process.env.TIMES.trim().split("\n").map(t => Number(t) * 1000).sort((a, b) => a - b);
+        const pct = p => times[Math.min(times.length - 1, Math.floor(times.length * p))].toFixed(0);
+        const before = JSON.parse(process.env.BEFORE), after = JSON.parse(process.env.AFTER);
+        const repair = JSON.parse(process.env.METRICS).itineraryRepair;
+        console.log(`⏱️  耗时 avg=${(times.reduce((a, b) => a + b, 0) / times.length).toFixed(0)}ms p50=${pct(0.5)}ms p95=${pct(0.95)}ms`);
+        console.log(`🤖 每次规划: AI调用=${((after.requests - before.requests) / n).toFixed(2)}` +
+                    ` 输出token=${((after.completionTokens - before.completionTokens) / n).toFixed(0)}`);
+        console.log(`🧾 紧凑格式天数=${repair.compactDays} 完整字段天数=${repair.verboseDays} 修复天数=${repair.repairedDays}`);
+    '
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null
+done
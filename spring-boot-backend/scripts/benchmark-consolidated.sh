@@ -0,0 +1,71 @@
+#!/bin/bash
+
+# 生成方式基准测试：对本地桩服务分别使用三次调用（pipeline）和一次调用（consolidated）生成行程，
+# 对比单次规划耗时、AI调用次数、提示词和输出token数以及解析成功率
+# 用法: mvn -B package -DskipTests && ./scripts/benchmark-consolidated.sh [请求数]
+
+cd "$(dirname "$0")/.."
+
+REQUESTS=${1:-50}
+STUB_PORT=18080
+APP_PORT=18081
+JAR=$(ls target/ai-travel-planner-*.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+    echo "❌ 未找到应用jar，请先执行 mvn -B package -DskipTests"
+    exit 1
+fi
+
+PORT=$STUB_PORT DELAY_MS=${DELAY_MS:-200} node scripts/stub-openai-server.js &
+STUB_PID=$!
+trap 'kill $STUB_PID 2>/dev/null' EXIT
+sleep 1
+
+# 目的地不在本地景点目录中，两种方式的推荐内容都由AI生成
+BODY='{"destination":"厦门","startDate":"2025-05-01","endDate":"2025-05-05","budget":5000,"companions":2,"preferences":"美食, 海边"}'
+
+for MODE in pipeline consolidated; do
+    echo "🚀 生成方式: $MODE"
+    java -jar "$JAR" --server.port=$APP_PORT \
+        --app.workflow.generation=$MODE \
+        --app.cache.enabled=false \
+        --app.ai.routing.default-client=openAiChatClient \
+        --spring.ai.openai.base-url=http://localhost:$STUB_PORT \
+        --logging.level.com.aitravelplanner=WARN > /dev/null 2>&1 &
+    APP_PID=$!
+
+    until curl -sf http://localhost:$APP_PORT/api/ai/health > /dev/null; do sleep 1; done
+
+    BEFORE=$(curl -s http://localhost:$STUB_PORT/stats)
+    TIMES=$(for i in $(seq 1 "$REQUESTS"); do
+        curl -s -o /dev/null -w '%{time_total}\n' -X POST http://localhost:$APP_PORT/api/ai/plan \
+            -H 'Content-Type: application/json' -d "$BODY"
+    done)
+    AFTER=$(curl -s http://localhost:$STUB_PORT/stats)
+    METRICS=$(curl -s http://localhost:$APP_PORT/api/ai/metrics)
+
+    MODE=$MODE REQUESTS=$REQUESTS TIMES="$TIMES" BEFORE="$BEFORE" AFTER="$AFTER" METRICS="$METRICS" node -e '
+        const n = Number(process.env.REQUESTS);
+        const times = process.env.TIMES.trim().split("\n").map(t => Number(t) * 1000).sort((a, b) => a - b);
+        const pct = p => times[Math.min(times.length - 1, Math.floor(times.length * p))].toFixed(0);
+        const before = JSON.parse(process.env.BEFORE), after = JSON.parse(process.env.AFTER);
+        const metrics = JSON.parse(process.env.METRICS);
+        const tools = process.env.MODE === "consolidated" ? ["consolidated"] : ["budget", "itinerary", "recommendation"];
+        let ok = 0, total = 0;
+        for (const tool of tools) {
+            const s = metrics.jsonParsing[tool];
+            ok += s.parsed + s.salvaged;
+            total += s.parsed + s.salvaged + s.failed;
+        }
+        console.log(`⏱️  耗时 avg=${(times.reduce((a, b) => a + b, 0) / times.length).toFixed(0)}ms p50=${pct(0.5)}ms p95=${pct(0.95)}ms`);
+        console.log(`🤖 每次规划: AI调用=${((after.requests - before.requests) / n).toFixed(2)}` +
+                    ` 提示词token=${((after.promptTokens - before.promptTokens) / n).toFixed(0)}` +
+                    ` 输出token=${((after.completionTokens - before.completionTokens) / n).toFixed(0)}`);
+        console.log(`🧾 解析成功率=${total === 0 ? "n/a" : (ok / total * 100).toFixed(1) + "%"}` +
+                    (process.env.MODE === "consolidated"
+                        ? ` 一次调用完整率=${(metrics.consolidated.completeRate * 100).toFixed(1)}%` : ""));
+    '
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null
+done
@@ -0,0 +1,52 @@
+#!/bin/bash
+
+# 响应编码基准测试：对3、7、14天的行程分别以JSON、Smile、CBOR获取完整响应和字段投影后的响应，
+# 对比响应大小和服务端处理时间（首字节时间减去请求发送完成时间，读取已保存的行程不调用AI，主要为序列化耗时）
+# 用法: mvn -B package -DskipTests && ./scripts/benchmark-encodings.sh [每组请求数]
+
+cd "$(dirname "$0")/.."
+
+REQUESTS=${1:-200}
+STUB_PORT=18080
+APP_PORT=18081
+JAR=$(ls target/ai-travel-planner-*.jar 2>/dev/null | head -1)
+FIELDS='days.title,days.dailyBudget,totalBudget'
+
+if [ -z "$JAR" ]; then
+    echo "❌ 未找到应用jar，请先执行 mvn -B package -DskipTests"
+    exit 1
+fi
+
+PORT=$STUB_PORT DELAY_MS=${DELAY_MS:-20} node scripts/stub-openai-server.js &
+STUB_PID=$!
+java -jar "$JAR" --server.port=$APP_PORT \
+    --app.cache.enabled=false \
+    --app.workflow.progressive.enabled=false \
+    --app.ai.routing.default-client=openAiChatClient \
+    --spring.ai.openai.base-url=http://localhost:$STUB_PORT \
+    --logging.level.com.aitravelplanner=WARN > /dev/null 2>&1 &
+APP_PID=$!
+trap 'kill $APP_PID $STUB_PID 2>/dev/null' EXIT
+
+until curl -sf http://localhost:$APP_PORT/api/ai/health > /dev/null; do sleep 1; done
+
+printf '%-5s %-10s %-28s %10s %12s\n' "天数" "响应" "编码" "大小(B)" "服务端avg(ms)"
+for DAYS in 3 7 14; do
+    END_DATE=$(date -d "2025-05-01 + $((DAYS - 1)) days" +%Y-%m-%d)
+    PLAN_ID=$(curl -s -X POST http://localhost:$APP_PORT/api/ai/plan -H 'Content-Type: application/json' \
+        -d "{\"destination\":\"厦门\",\"startDate\":\"2025-05-01\",\"endDate\":\"$END_DATE\",\"budget\":$((DAYS * 1000)),\"companions\":2,\"preferences\":\"美食, 海边\"}" \
+        | node -e 'let s = ""; process.stdin.on("data", d => s += d).on("end", () => console.log(JSON.parse(s).planId))')
+
+    for QUERY in "" "?fields=$FIELDS"; do
+        for ACCEPT in application/json application/x-jackson-smile application/cbor; do
+            RESULTS=$(for i in $(seq 1 "$REQUESTS"); do
+                curl -s -o /dev/null -H "Accept: $ACCEPT" \
+                    -w '%{size_download} %{time_pretransfer} %{time_starttransfer}\n' \
+                    "http://localhost:$APP_PORT/api/ai/plans/$PLAN_ID$QUERY"
+            done)
+            echo "$RESULTS" | awk -v days="$DAYS" -v view="$([ -z "$QUERY" ] && echo full || echo projected)" -v accept="$ACCEPT" '
+                { size = $1; total += ($3 - $2) * 1000; n++ }
+                END { printf "%-5s %-10s %-28s %10d %12.2f\n", days, view, accept, size, total / n }'
+        done
+    done
+done
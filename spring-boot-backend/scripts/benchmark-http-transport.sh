@@ -0,0 +1,54 @@
+#!/bin/bash
+
+# HTTP传输基准测试：对本地桩服务分别使用不同传输实现，对比单次调用开销和连接复用情况
+# 用法: mvn -B package -DskipTests && ./scripts/benchmark-http-transport.sh [请求数]
+
+cd "$(dirname "$0")/.."
+
+REQUESTS=${1:-50}
+STUB_PORT=18080
+APP_PORT=18081
+JAR=$(ls target/ai-travel-planner-*.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+    echo "❌ 未找到应用jar，请先执行 mvn -B package -DskipTests"
+    exit 1
+fi
+
+PORT=$STUB_PORT DELAY_MS=${DELAY_MS:-20} node scripts/stub-openai-server.js &
+STUB_PID=$!
+trap 'kill $STUB_PID 2>/dev/null' EXIT
+sleep 1
+
+for TRANSPORT in default apache jdk; do
+    echo "🚀 传输实现: $TRANSPORT"
+    java -jar "$JAR" --server.port=$APP_PORT \
+        --app.ai.http.client=$TRANSPORT \
+        --app.cache.enabled=false \
+        --app.ai.routing.default-client=openAiChatClient \
+        --spring.ai.openai.base-url=http://localhost:$STUB_PORT \
+        --logging.level.com.aitravelplanner=WARN > /dev/null 2>&1 &
+    APP_PID=$!
+
+    until curl -sf http://localhost:$APP_PORT/api/ai/health > /dev/null; do sleep 1; done
+
+    START=$(date +%s%N)
+    for i in $(seq 1 "$REQUESTS"); do
+        curl -s -o /dev/null -X POST http://localhost:$APP_PORT/api/ai/plan \
+            -H 'Content-Type: application/json' \
+            -d '{"destination":"杭州","startDate":"2025-05-01","endDate":"2025-05-03","budget":3000,"companions":2,"preferences":"美食"}'
+    done
+    END=$(date +%s%N)
+
+    echo "⏱️  平均每次规划耗时: $(( (END - START) / REQUESTS / 1000000 ))ms"
+    curl -s http://localhost:$APP_PORT/api/ai/metrics | node -e '
+        let s = ""; process.stdin.on("data", d => s += d).on("end", () => {
+            const t = JSON.parse(s).httpTransport;
+            const pool = t.connectTime
+                ? ` 新建连接比例=${t.newConnectionRatio.toFixed(3)} 建连avg=${t.connectTime.avgMillis}ms` : "";
+            console.log(`📊 请求=${t.requests}${pool} 首字节p50=${t.timeToFirstByte.p50Millis}ms p95=${t.timeToFirstByte.p95Millis}ms`);
+        });'
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null
+done
@@ -0,0 +1,95 @@
+#!/bin/bash
+
+# 启动基准测试：对比普通启动、fast-start（AOT + 延迟初始化 + JIT预热）和 fast-start + CDS
+# 统计从进程启动到健康检查就绪、到首个成功规划请求返回的耗时，以及首个请求自身的耗时
+# 用法: ./scripts/benchmark-startup.sh [每种方式的启动次数]
+#       已构建过时可设置 SKIP_BUILD=1
+
+cd "$(dirname "$0")/.."
+
+RUNS=${1:-5}
+STUB_PORT=18080
+APP_PORT=18081
+BENCH_DIR=target/startup-bench
+REQUEST='{"destination":"成都","startDate":"2025-05-01","endDate":"2025-05-03","budget":4000,"companions":2,"preferences":"美食, 文化"}'
+
+if [ -z "$SKIP_BUILD" ]; then
+    echo "🔨 构建普通fat jar..."
+    mvn -B -q package -DskipTests || exit 1
+    mkdir -p $BENCH_DIR/default
+    cp target/ai-travel-planner-*.jar $BENCH_DIR/default/app.jar
+
+    echo "🔨 构建fast-start..."
+    mvn -B -q package -Pfast-start -DskipTests || exit 1
+    rm -rf $BENCH_DIR/fast-start && mkdir -p $BENCH_DIR/fast-start
+    cp target/ai-travel-planner-*.jar $BENCH_DIR/fast-start/app.jar
+    cp -r target/lib $BENCH_DIR/fast-start/lib
+
+    echo "📦 训练启动，生成CDS归档..."
+    (cd $BENCH_DIR/fast-start && java -XX:ArchiveClassesAtExit=app-cds.jsa -Dspring.context.exit=onRefresh \
+        -Dspring.aot.enabled=true -Dspring.profiles.active=fast-start -jar app.jar > training.log 2>&1)
+fi
+
+PORT=$STUB_PORT DELAY_MS=${DELAY_MS:-20} node scripts/stub-openai-server.js > /dev/null &
+STUB_PID=$!
+trap 'kill $STUB_PID 2>/dev/null' EXIT
+sleep 1
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+# AI调用失败时工具流返回默认行程，同样带有days；默认行程的活动描述固定，出现即视为未成功
+DEFAULT_ITINERARY_MARKER='游览当地著名景点'
+
+is_planned() {
+    local body
+    body=$(curl -sf -X POST http://localhost:$APP_PORT/api/ai/plan \
+        -H 'Content-Type: application/json' -d "$REQUEST") || return 1
+    grep -q '"days"' <<< "$body" && ! grep -q "$DEFAULT_ITINERARY_MARKER" <<< "$body"
+}
+
+run_once() {
+    local dir=$1; shift
+    local start=$(now_ms)
+    (cd $dir && exec java "$@" -jar app.jar --server.port=$APP_PORT \
+        --app.ai.routing.default-client=openAiChatClient \
+        --spring.ai.openai.base-url=http://localhost:$STUB_PORT \
+        --app.cache.enabled=false \
+        --logging.level.com.aitravelplanner=WARN > /dev/null 2>&1) &
+    local app_pid=$!
+
+    until [ "$(curl -s -o /dev/null -w '%{http_code}' http://localhost:$APP_PORT/api/ai/health)" = "200" ]; do
+        sleep 0.05
+    done
+    local ready=$(now_ms)
+
+    local request_start=$(now_ms)
+    until is_planned; do
+        sleep 0.05
+    done
+    local finished=$(now_ms)
+
+    kill $app_pid
+    wait $app_pid 2>/dev/null
+    echo "$((ready - start)) $((finished - start)) $((finished - request_start))"
+}
+
+bench() {
+    local name=$1; shift
+    local total_ready=0 total_first=0 total_request=0
+    for i in $(seq 1 "$RUNS"); do
+        read ready first request < <(run_once "$@")
+        total_ready=$((total_ready + ready))
+        total_first=$((total_first + first))
+        total_request=$((total_request + request))
+    done
+    printf "%-18s 就绪=%6dms  首个成功请求=%6dms  首个请求耗时=%5dms\n" "$name" \
+        $((total_ready / RUNS)) $((total_first / RUNS)) $((total_request / RUNS))
+}
+
+echo "🚀 每种方式启动 $RUNS 次，取平均值"
+bench "default" $BENCH_DIR/default
+bench "fast-start" $BENCH_DIR/fast-start -Dspring.aot.enabled=true -Dspring.profiles.active=fast-start
+bench "fast-start+cds" $BENCH_DIR/fast-start -XX:SharedArchiveFile=app-cds.jsa \
+    -Dspring.aot.enabled=true -Dspring.profiles.active=fast-start
@@ -0,0 +1,29 @@
+#!/bin/bash
+
+# 快速启动：首次运行时做一次训练启动生成CDS归档，之后以 AOT + fast-start 配置 + CDS 启动
+# 用法: mvn -B package -Pfast-start -DskipTests && ./scripts/fast-start.sh [应用参数...]
+
+cd "$(dirname "$0")/.."
+
+JAR=$(ls target/ai-travel-planner-*.jar 2>/dev/null | head -1)
+ARCHIVE=target/app-cds.jsa
+JAVA_OPTS="-Dspring.aot.enabled=true -Dspring.profiles.active=fast-start $JAVA_OPTS"
+
+if [ -z "$JAR" ] || [ ! -d target/lib ]; then
+    echo "❌ 未找到快速启动构建产物，请先执行 mvn -B package -Pfast-start -DskipTests"
+    exit 1
+fi
+
+# 应用jar更新后重新生成归档；训练启动在上下文刷新完成后立即退出，不对外提供服务
+if [ ! -f "$ARCHIVE" ] || [ "$JAR" -nt "$ARCHIVE" ]; then
+    echo "📦 训练启动，生成CDS归档: $ARCHIVE"
+    java -XX:ArchiveClassesAtExit=$ARCHIVE -Dspring.context.exit=onRefresh $JAVA_OPTS \
+        -jar "$JAR" "$@" > target/app-cds-training.log 2>&1 \
+        || echo "⚠️ CDS归档生成失败，详见 target/app-cds-training.log"
+fi
+
+if [ -f "$ARCHIVE" ]; then
+    JAVA_OPTS="-XX:SharedArchiveFile=$ARCHIVE $JAVA_OPTS"
+fi
+
+exec java $JAVA_OPTS -jar "$JAR" "$@"
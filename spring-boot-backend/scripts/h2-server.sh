@@ -0,0 +1,19 @@
+#!/bin/bash
+
+# 本地启动H2 TCP服务器，供多个实例以cluster配置共享租约表和结果表
+# 用法: ./scripts/h2-server.sh [端口]
+# 之后各实例: java -jar target/ai-travel-planner-*.jar --spring.profiles.active=cluster --server.port=808x
+
+cd "$(dirname "$0")/.."
+
+PORT=${1:-9092}
+H2_JAR=$(ls ~/.m2/repository/com/h2database/h2/*/h2-*.jar 2>/dev/null | sort -V | tail -1)
+
+if [ -z "$H2_JAR" ]; then
+    echo "❌ 未找到H2驱动，请先执行 mvn -B package -DskipTests"
+    exit 1
+fi
+
+mkdir -p target/h2
+echo "🗄️ H2服务器: jdbc:h2:tcp://localhost:$PORT/travelplanner (数据目录 target/h2)"
+exec java -cp "$H2_JAR" org.h2.tools.Server -tcp -tcpPort "$PORT" -ifNotExists -baseDir target/h2
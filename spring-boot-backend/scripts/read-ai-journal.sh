@@ -0,0 +1,16 @@
+#!/bin/bash
+
+# 离线读取AI调用日志：逐条输出记录并按工具汇总调用数、失败率、延迟分位数和token估算
+# 用法: ./scripts/read-ai-journal.sh [目录或分段文件] [--request 请求编号] [--tool 工具] [--bodies] [--summary]
+
+cd "$(dirname "$0")/.."
+
+if [ ! -d target/classes ]; then
+    echo "❌ 未找到编译结果，请先执行 mvn -B compile"
+    exit 1
+fi
+
+INPUT=${1:-logs/ai-journal}
+shift
+
+exec java -cp target/classes com.aitravelplanner.service.llm.AiCallJournalReader "$INPUT" "$@"
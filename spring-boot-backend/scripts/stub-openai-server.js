@@ -0,0 +1,103 @@
+// 本地OpenAI兼容桩服务，用于离线压测，不访问真实模型
+// 用法: PORT=18080 DELAY_MS=50 MS_PER_TOKEN=0 node stub-openai-server.js
+// MS_PER_TOKEN 按输出token数追加延迟，模拟耗时随输出长度增长的模型
+// GET /stats 返回累计的请求数和估算的提示词、输出token数
+const http = require('http');
+
+const PORT = parseInt(process.env.PORT || '18080', 10);
+const DELAY_MS = parseInt(process.env.DELAY_MS || '50', 10);
+const MS_PER_TOKEN = parseFloat(process.env.MS_PER_TOKEN || '0');
+
+function budget(prompt, days) {
+    const total = parseInt((prompt.match(/总预算：(\d+)元/) || [])[1] || '3000', 10);
+    return { dailyBudget: Math.floor(total / days), budgetAllocation: { transportation: '30%' } };
+}
+
+function itinerary(days, detailed = days) {
+    const list = [];
+    for (let i = 1; i <= days; i++) {
+        // 行程骨架请求中，详细安排之外的天只有标题
+        list.push({
+            title: `第${i}天：城市漫步`,
+            dailyBudget: 1000,
+            activities: i > detailed ? [] : [
+                { time: '09:00', activity: '地标游览', desc: '参观城市地标', location: '市中心', cost: 100, category: '景点' },
+                { time: '12:00', activity: '午餐', desc: '品尝当地美食', location: '美食街', cost: 80, category: '餐饮' },
+                { time: '15:00', activity: '博物馆', desc: '了解当地历史', location: '博物馆', cost: 60, category: '文化' }
+            ]
+        });
+    }
+    return { summary: '桩服务生成的行程', days: list };
+}
+
+// 紧凑输出格式：短键、位置数组和类型代码，内容与itinerary相同
+const CATEGORY_CODES = { '景点': 1, '餐饮': 2, '文化': 3 };
+
+function compactItinerary(days, detailed) {
+    const full = itinerary(days, detailed);
+    return {
+        summary: full.summary,
+        days: full.days.map((day, i) => ({
+            d: i + 1, t: day.title, b: day.dailyBudget,
+            a: day.activities.map(a => [a.time, a.activity, a.desc, a.location, a.cost, CATEGORY_CODES[a.category] || 0])
+        }))
+    };
+}
+
+const RECOMMENDATIONS = { restaurants: ['本地老字号 - 招牌菜'], tips: ['提前预约热门景点'] };
+
+function reply(prompt) {
+    const days = parseInt((prompt.match(/旅行天数：(\d+)天/) || [])[1] || '3', 10);
+    if (prompt.includes('"itinerary"')) {
+        return JSON.stringify({ budget: budget(prompt, days), recommendations: RECOMMENDATIONS, itinerary: itinerary(days) });
+    }
+    if (prompt.includes('budgetAllocation')) {
+        return JSON.stringify(budget(prompt, days));
+    }
+    if (prompt.includes('"days"')) {
+        const detailed = parseInt((prompt.match(/只详细安排前(\d+)天/) || [])[1] || String(days), 10);
+        return JSON.stringify(prompt.includes('"a": [') ? compactItinerary(days, detailed) : itinerary(days, detailed));
+    }
+    return JSON.stringify(RECOMMENDATIONS);
+}
+
+// 与应用中PromptBudgeter相同的估算：汉字约1个token，其余约4个字符1个token
+function tokens(text) {
+    let wide = 0;
+    let narrow = 0;
+    for (const ch of text) {
+        if (ch.codePointAt(0) >= 0x2E80) {
+            wide++;
+        } else {
+            narrow++;
+        }
+    }
+    return wide + Math.ceil(narrow / 4);
+}
+
+const stats = { requests: 0, promptTokens: 0, completionTokens: 0 };
+
+http.createServer((req, res) => {
+    if (req.method === 'GET' && req.url === '/stats') {
+        res.writeHead(200, { 'Content-Type': 'application/json' });
+        res.end(JSON.stringify(stats));
+        return;
+    }
+    let body = '';
+    req.on('data', chunk => body += chunk);
+    req.on('end', () => {
+        const messages = (JSON.parse(body || '{}').messages || []).map(m => m.content).join('\n');
+        const content = reply(messages);
+        stats.requests++;
+        stats.promptTokens += tokens(messages);
+        stats.completionTokens += tokens(content);
+        setTimeout(() => {
+            res.writeHead(200, { 'Content-Type': 'application/json' });
+            res.end(JSON.stringify({
+                id: 'stub', object: 'chat.completion', created: Date.now(), model: 'stub',
+                choices: [{ index: 0, message: { role: 'assistant', content }, finish_reason: 'stop' }],
+                usage: { prompt_tokens: tokens(messages), completion_tokens: tokens(content), total_tokens: tokens(messages) + tokens(content) }
+            }));
+        }, DELAY_MS + MS_PER_TOKEN * tokens(content));
+    });
+}).listen(PORT, () => console.log(`🧪 OpenAI桩服务已启动: http://localhost:${PORT}`));
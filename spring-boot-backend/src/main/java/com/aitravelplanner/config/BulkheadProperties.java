@@ -0,0 +1,73 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 工具隔离舱配置
+ * 对应 app.ai.bulkhead 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.bulkhead")
+public class BulkheadProperties {
+
+    /**
+     * 是否启用；关闭时AI调用在调用方线程上直接执行
+     */
+    private boolean enabled = true;
+
+    /**
+     * 各工具的隔离舱，键为 budget / itinerary / recommendation；未配置的工具使用默认值
+     */
+    private Map<String, Tool> tools = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Map<String, Tool> getTools() {
+        return tools;
+    }
+
+    public void setTools(Map<String, Tool> tools) {
+        this.tools = tools;
+    }
+
+    /**
+     * 单个工具的隔离舱
+     */
+    public static class Tool {
+
+        /**
+         * 同时进行的AI调用上限
+         */
+        private int maxConcurrent = 4;
+
+        /**
+         * 等待执行的调用上限，超出时立即拒绝并由工具返回兜底结果
+         */
+        private int queueSize = 8;
+
+        public int getMaxConcurrent() {
+            return maxConcurrent;
+        }
+
+        public void setMaxConcurrent(int maxConcurrent) {
+            this.maxConcurrent = maxConcurrent;
+        }
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        public void setQueueSize(int queueSize) {
+            this.queueSize = queueSize;
+        }
+    }
+}
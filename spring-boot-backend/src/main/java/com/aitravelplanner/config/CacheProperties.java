@@ -0,0 +1,192 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 行程缓存配置
+ * 对应 app.cache 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cache")
+public class CacheProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 缓存有效期（秒）
+     */
+    private long ttl = 3600;
+
+    /**
+     * 过期后仍直接返回、同时在后台重新生成的宽限期（秒），0表示过期即失效
+     */
+    private long staleWhileRevalidate = 600;
+
+    /**
+     * 后台重新生成失败时，过期条目继续返回的最长时间（秒，从过期时算起）
+     */
+    private long staleIfError = 3600;
+
+    /**
+     * 重新生成失败后再次尝试的间隔（秒）
+     */
+    private long revalidateRetryInterval = 60;
+
+    /**
+     * 同时进行的后台重新生成数，超出时本次不重新生成，按失败处理
+     */
+    private int revalidateMaxConcurrent = 2;
+
+    /**
+     * 最大缓存条数，超出时淘汰最早写入的条目
+     */
+    private int maxEntries = 100000;
+
+    private Similarity similarity = new Similarity();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getStaleWhileRevalidate() {
+        return staleWhileRevalidate;
+    }
+
+    public void setStaleWhileRevalidate(long staleWhileRevalidate) {
+        this.staleWhileRevalidate = staleWhileRevalidate;
+    }
+
+    public long getStaleIfError() {
+        return staleIfError;
+    }
+
+    public void setStaleIfError(long staleIfError) {
+        this.staleIfError = staleIfError;
+    }
+
+    public long getRevalidateRetryInterval() {
+        return revalidateRetryInterval;
+    }
+
+    public void setRevalidateRetryInterval(long revalidateRetryInterval) {
+        this.revalidateRetryInterval = revalidateRetryInterval;
+    }
+
+    public int getRevalidateMaxConcurrent() {
+        return revalidateMaxConcurrent;
+    }
+
+    public void setRevalidateMaxConcurrent(int revalidateMaxConcurrent) {
+        this.revalidateMaxConcurrent = revalidateMaxConcurrent;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public Similarity getSimilarity() {
+        return similarity;
+    }
+
+    public void setSimilarity(Similarity similarity) {
+        this.similarity = similarity;
+    }
+
+    /**
+     * 相似请求匹配配置
+     */
+    public static class Similarity {
+
+        private boolean enabled = true;
+
+        /**
+         * 偏好的最低Jaccard相似度
+         */
+        private double threshold = 0.6;
+
+        /**
+         * 预算的最大相对差异
+         */
+        private double budgetTolerance = 0.15;
+
+        /**
+         * LSH分段数，bands * rows 即MinHash签名长度
+         */
+        private int bands = 16;
+
+        /**
+         * 每段包含的签名行数
+         */
+        private int rows = 4;
+
+        /**
+         * 单次查找最多比较的候选条目数
+         */
+        private int maxCandidates = 64;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(double threshold) {
+            this.threshold = threshold;
+        }
+
+        public double getBudgetTolerance() {
+            return budgetTolerance;
+        }
+
+        public void setBudgetTolerance(double budgetTolerance) {
+            this.budgetTolerance = budgetTolerance;
+        }
+
+        public int getBands() {
+            return bands;
+        }
+
+        public void setBands(int bands) {
+            this.bands = bands;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public void setRows(int rows) {
+            this.rows = rows;
+        }
+
+        public int getMaxCandidates() {
+            return maxCandidates;
+        }
+
+        public void setMaxCandidates(int maxCandidates) {
+            this.maxCandidates = maxCandidates;
+        }
+    }
+}
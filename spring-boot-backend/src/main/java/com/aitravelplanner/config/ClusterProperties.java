@@ -0,0 +1,101 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 集群去重配置
+ * 对应 app.cluster 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.cluster")
+public class ClusterProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 实例标识，为空时使用 进程号@主机名
+     */
+    private String nodeId;
+
+    /**
+     * 租约有效期（毫秒），持有者每三分之一有效期续约一次；持有者崩溃后最多经过该时长被接管
+     */
+    private long leaseTtlMs = 30000;
+
+    /**
+     * 等待其他实例生成时查询结果的间隔（毫秒）
+     */
+    private long pollIntervalMs = 500;
+
+    /**
+     * 等待其他实例生成的最长时间（毫秒），超时后本实例直接生成
+     */
+    private long maxWaitMs = 180000;
+
+    /**
+     * 共享结果有效期（秒）
+     */
+    private long resultTtl = 3600;
+
+    /**
+     * 过期租约和结果的清理间隔（毫秒）
+     */
+    private long cleanupIntervalMs = 60000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getLeaseTtlMs() {
+        return leaseTtlMs;
+    }
+
+    public void setLeaseTtlMs(long leaseTtlMs) {
+        this.leaseTtlMs = leaseTtlMs;
+    }
+
+    public long getPollIntervalMs() {
+        return pollIntervalMs;
+    }
+
+    public void setPollIntervalMs(long pollIntervalMs) {
+        this.pollIntervalMs = pollIntervalMs;
+    }
+
+    public long getMaxWaitMs() {
+        return maxWaitMs;
+    }
+
+    public void setMaxWaitMs(long maxWaitMs) {
+        this.maxWaitMs = maxWaitMs;
+    }
+
+    public long getResultTtl() {
+        return resultTtl;
+    }
+
+    public void setResultTtl(long resultTtl) {
+        this.resultTtl = resultTtl;
+    }
+
+    public long getCleanupIntervalMs() {
+        return cleanupIntervalMs;
+    }
+
+    public void setCleanupIntervalMs(long cleanupIntervalMs) {
+        this.cleanupIntervalMs = cleanupIntervalMs;
+    }
+}
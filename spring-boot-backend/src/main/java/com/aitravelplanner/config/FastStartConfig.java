@@ -0,0 +1,21 @@
+package com.aitravelplanner.config;
+
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 快速启动配置
+ * 开启 spring.main.lazy-initialization 时，工具流自身的Bean和AI客户端不延迟创建，
+ * 避免首个规划请求承担它们的初始化开销；其余框架Bean（JPA、H2控制台等）仍按需创建
+ */
+@Configuration
+public class FastStartConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter hotPathLazyInitExcludeFilter() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && (beanType.getName().startsWith("com.aitravelplanner.") || ChatClient.class.isAssignableFrom(beanType));
+    }
+}
@@ -0,0 +1,142 @@
+package com.aitravelplanner.config;
+
+import com.aitravelplanner.service.llm.HttpTransportMetrics;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.client5.http.socket.PlainConnectionSocketFactory;
+import org.apache.hc.client5.http.ssl.SSLConnectionSocketFactory;
+import org.apache.hc.core5.http.config.RegistryBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+/**
+ * 大模型调用的HTTP传输配置
+ * 通过RestClientCustomizer替换Spring AI所用RestClient的底层传输，提供连接池、保活和超时控制
+ */
+@Configuration
+public class HttpTransportConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpTransportConfig.class);
+
+    private CloseableHttpClient pooledClient;
+
+    @Bean
+    public RestClientCustomizer aiHttpTransportCustomizer(HttpTransportProperties properties,
+                                                          HttpTransportMetrics metrics,
+                                                          @Value("${app.ai.timeout:60000}") long readTimeoutMs) {
+        ClientHttpRequestFactory requestFactory = createRequestFactory(properties, metrics, readTimeoutMs);
+        ClientHttpRequestInterceptor timing = timingInterceptor(metrics);
+        return builder -> {
+            if (requestFactory != null) {
+                builder.requestFactory(requestFactory);
+            }
+            builder.requestInterceptor(timing);
+        };
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (pooledClient != null) {
+            pooledClient.close();
+        }
+    }
+
+    private ClientHttpRequestFactory createRequestFactory(HttpTransportProperties properties,
+                                                          HttpTransportMetrics metrics, long readTimeoutMs) {
+        switch (properties.getClient()) {
+            case "apache":
+                logger.info("🔌 使用连接池HTTP传输: 最大连接数={}, 单主机={}, 保活={}ms",
+                           properties.getMaxConnections(), properties.getMaxConnectionsPerRoute(),
+                           properties.getKeepAliveMs());
+                return createPooledFactory(properties, metrics, readTimeoutMs);
+            case "jdk":
+                logger.info("🔌 使用JDK HTTP传输: HTTP/2={}", properties.isHttp2());
+                return createJdkFactory(properties, metrics, readTimeoutMs);
+            case "default":
+                return null;
+            default:
+                throw new IllegalStateException("不支持的HTTP传输实现: " + properties.getClient());
+        }
+    }
+
+    private ClientHttpRequestFactory createPooledFactory(HttpTransportProperties properties,
+                                                         HttpTransportMetrics metrics, long readTimeoutMs) {
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", new TimedConnectionSocketFactory(
+                                PlainConnectionSocketFactory.getSocketFactory(), metrics))
+                        .register("https", new TimedConnectionSocketFactory(
+                                SSLConnectionSocketFactory.getSocketFactory(), metrics))
+                        .build());
+        pool.setMaxTotal(properties.getMaxConnections());
+        pool.setDefaultMaxPerRoute(properties.getMaxConnectionsPerRoute());
+        pool.setDefaultConnectionConfig(ConnectionConfig.custom()
+                .setConnectTimeout(Timeout.ofMilliseconds(properties.getConnectTimeoutMs()))
+                .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                .build());
+
+        TimeValue keepAlive = TimeValue.ofMilliseconds(properties.getKeepAliveMs());
+        pooledClient = HttpClients.custom()
+                .setConnectionManager(pool)
+                .setKeepAliveStrategy((response, context) -> keepAlive)
+                .evictIdleConnections(keepAlive)
+                .evictExpiredConnections()
+                .build();
+        metrics.register("apache", pool);
+        return new HttpComponentsClientHttpRequestFactory(pooledClient);
+    }
+
+    private ClientHttpRequestFactory createJdkFactory(HttpTransportProperties properties,
+                                                      HttpTransportMetrics metrics, long readTimeoutMs) {
+        // JDK HttpClient的连接池只能通过系统属性配置，需在首个客户端创建前设置
+        System.setProperty("jdk.httpclient.connectionPoolSize", String.valueOf(properties.getMaxConnections()));
+        System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(properties.getKeepAliveMs() / 1000));
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .build();
+        JdkClientHttpRequestFactory factory = new JdkClientHttpRequestFactory(httpClient);
+        factory.setReadTimeout(Duration.ofMillis(readTimeoutMs));
+        metrics.register(properties.isHttp2() ? "jdk-h2" : "jdk", null);
+        return factory;
+    }
+
+    /**
+     * 记录每次请求到收到响应头的耗时（首字节时间）
+     */
+    private ClientHttpRequestInterceptor timingInterceptor(HttpTransportMetrics metrics) {
+        return (request, body, execution) -> {
+            metrics.requestStarted();
+            long start = System.nanoTime();
+            boolean success = false;
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                success = true;
+                return response;
+            } finally {
+                metrics.requestFinished((System.nanoTime() - start) / 1_000_000, success);
+            }
+        };
+    }
+}
@@ -0,0 +1,88 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 大模型调用的HTTP传输配置
+ * 对应 app.ai.http 配置项，读超时取自 app.ai.timeout
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.http")
+public class HttpTransportProperties {
+
+    /**
+     * 传输实现: apache（连接池，HTTP/1.1）、jdk（支持HTTP/2多路复用）、default（Spring默认）
+     */
+    private String client = "apache";
+
+    /**
+     * 连接池最大连接数
+     */
+    private int maxConnections = 50;
+
+    /**
+     * 每个目标主机的最大连接数
+     */
+    private int maxConnectionsPerRoute = 20;
+
+    /**
+     * 空闲连接保活时间
+     */
+    private long keepAliveMs = 60000;
+
+    private long connectTimeoutMs = 5000;
+
+    /**
+     * jdk传输是否优先使用HTTP/2
+     */
+    private boolean http2 = true;
+
+    public String getClient() {
+        return client;
+    }
+
+    public void setClient(String client) {
+        this.client = client;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+    }
+
+    public long getKeepAliveMs() {
+        return keepAliveMs;
+    }
+
+    public void setKeepAliveMs(long keepAliveMs) {
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    public long getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public void setConnectTimeoutMs(long connectTimeoutMs) {
+        this.connectTimeoutMs = connectTimeoutMs;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+}
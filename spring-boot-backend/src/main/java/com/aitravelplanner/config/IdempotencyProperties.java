@@ -0,0 +1,88 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 幂等键配置
+ * 对应 app.idempotency 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.idempotency")
+public class IdempotencyProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 请求完成后保留结果的时间（秒），期间使用相同幂等键的重试直接返回保存的结果
+     */
+    private long retention = 3600;
+
+    /**
+     * 重试等待进行中的原请求的最长时间（秒），超出时返回409
+     */
+    private long attachTimeout = 120;
+
+    /**
+     * 最多保留的幂等键数（包括进行中的请求），超出时淘汰最早的已完成结果
+     */
+    private int maxEntries = 10000;
+
+    /**
+     * 保存的响应正文总字节数上限，超出时淘汰最早的已完成结果
+     */
+    private long maxStoredBytes = 64L * 1024 * 1024;
+
+    /**
+     * 幂等键最大长度
+     */
+    private int maxKeyLength = 255;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getRetention() {
+        return retention;
+    }
+
+    public void setRetention(long retention) {
+        this.retention = retention;
+    }
+
+    public long getAttachTimeout() {
+        return attachTimeout;
+    }
+
+    public void setAttachTimeout(long attachTimeout) {
+        this.attachTimeout = attachTimeout;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxStoredBytes() {
+        return maxStoredBytes;
+    }
+
+    public void setMaxStoredBytes(long maxStoredBytes) {
+        this.maxStoredBytes = maxStoredBytes;
+    }
+
+    public int getMaxKeyLength() {
+        return maxKeyLength;
+    }
+
+    public void setMaxKeyLength(int maxKeyLength) {
+        this.maxKeyLength = maxKeyLength;
+    }
+}
@@ -0,0 +1,104 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * AI调用日志配置
+ * 对应 app.ai.journal 配置项；是否记录由 app.ai.enable-logging 控制
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.journal")
+public class JournalProperties {
+
+    /**
+     * 日志分段文件所在目录
+     */
+    private String directory = "logs/ai-journal";
+
+    /**
+     * 单个分段文件的大小上限，超出后滚动到新文件
+     */
+    private long segmentMaxBytes = 64L * 1024 * 1024;
+
+    /**
+     * 保留的分段文件数，超出时删除最旧的文件
+     */
+    private int maxSegments = 16;
+
+    /**
+     * 等待写入的记录数上限，写入跟不上时丢弃新记录而不阻塞调用方
+     */
+    private int queueCapacity = 8192;
+
+    /**
+     * 等待写入的提示词和响应正文的字符数上限，超出时新记录只保留元数据
+     */
+    private long maxQueuedBodyChars = 8L * 1024 * 1024;
+
+    /**
+     * 是否记录压缩后的提示词和响应正文
+     */
+    private boolean includeBodies = false;
+
+    /**
+     * 没有新记录时把缓冲区刷到文件的间隔
+     */
+    private long flushIntervalMs = 1000;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSegmentMaxBytes() {
+        return segmentMaxBytes;
+    }
+
+    public void setSegmentMaxBytes(long segmentMaxBytes) {
+        this.segmentMaxBytes = segmentMaxBytes;
+    }
+
+    public int getMaxSegments() {
+        return maxSegments;
+    }
+
+    public void setMaxSegments(int maxSegments) {
+        this.maxSegments = maxSegments;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public long getMaxQueuedBodyChars() {
+        return maxQueuedBodyChars;
+    }
+
+    public void setMaxQueuedBodyChars(long maxQueuedBodyChars) {
+        this.maxQueuedBodyChars = maxQueuedBodyChars;
+    }
+
+    public boolean isIncludeBodies() {
+        return includeBodies;
+    }
+
+    public void setIncludeBodies(boolean includeBodies) {
+        this.includeBodies = includeBodies;
+    }
+
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+}
@@ -0,0 +1,194 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 服务等级配置
+ * 对应 app.workflow.modes 配置项；请求中的mode字段选择其中一个执行档位
+ */
+@Component
+@ConfigurationProperties(prefix = "app.workflow.modes")
+public class ModeProperties {
+
+    /**
+     * 档位从快到慢、从简略到详细的顺序，缓存中较详细的结果可以复用给较快的档位
+     */
+    public static final List<String> MODES = List.of("fast", "balanced", "detailed");
+
+    /**
+     * 请求未指定mode时使用的档位
+     */
+    private String defaultMode = "detailed";
+
+    private Profile fast = new Profile("consolidated", true, 1200, "每天2-3个活动，每个活动描述不超过20字", 0.4, 9000L);
+
+    private Profile balanced = new Profile("pipeline", true, 1600, "每天3-4个活动，描述简洁", null, 20000L);
+
+    private Profile detailed = new Profile(null, false, null, "每天3-5个主要活动，描述具体详细并包含实用信息", null, 60000L);
+
+    /**
+     * 获取档位配置
+     *
+     * @param mode 档位名称，为空时使用默认档位
+     */
+    public Profile profile(String mode) {
+        return switch (mode != null ? mode : defaultMode) {
+            case "fast" -> fast;
+            case "balanced" -> balanced;
+            default -> detailed;
+        };
+    }
+
+    /**
+     * 档位的详细程度序号，越大越详细；未知或为空时按最详细处理
+     */
+    public static int rank(String mode) {
+        int index = MODES.indexOf(mode);
+        return index < 0 ? MODES.size() - 1 : index;
+    }
+
+    public String getDefaultMode() {
+        return defaultMode;
+    }
+
+    public void setDefaultMode(String defaultMode) {
+        this.defaultMode = defaultMode;
+    }
+
+    public Profile getFast() {
+        return fast;
+    }
+
+    public void setFast(Profile fast) {
+        this.fast = fast;
+    }
+
+    public Profile getBalanced() {
+        return balanced;
+    }
+
+    public void setBalanced(Profile balanced) {
+        this.balanced = balanced;
+    }
+
+    public Profile getDetailed() {
+        return detailed;
+    }
+
+    public void setDetailed(Profile detailed) {
+        this.detailed = detailed;
+    }
+
+    /**
+     * 单个档位的执行配置
+     */
+    public static class Profile {
+
+        /**
+         * 生成方式：pipeline 或 consolidated，为空时使用 app.workflow.generation；请求中的generation字段优先
+         */
+        private String generation;
+
+        /**
+         * 是否按总预算和天数在本地估算预算分配，不调用预算估算工具
+         */
+        private boolean localBudget;
+
+        /**
+         * 每次AI调用的输出token上限，为空时使用后端默认值；通过ChatOptions传给所有后端，本地桩后端不支持
+         */
+        private Integer maxTokens;
+
+        /**
+         * 写入行程提示词的详细程度要求，控制每天的活动数和描述长度
+         */
+        private String detail;
+
+        /**
+         * 相似缓存命中的最低偏好相似度，为空时使用 app.cache.similarity.threshold
+         */
+        private Double similarityThreshold;
+
+        /**
+         * 期望的p95耗时（毫秒），只用于在统计中与实际耗时对照
+         */
+        private Long targetP95Ms;
+
+        public Profile() {}
+
+        public Profile(String generation, boolean localBudget, Integer maxTokens, String detail,
+                       Double similarityThreshold, Long targetP95Ms) {
+            this.generation = generation;
+            this.localBudget = localBudget;
+            this.maxTokens = maxTokens;
+            this.detail = detail;
+            this.similarityThreshold = similarityThreshold;
+            this.targetP95Ms = targetP95Ms;
+        }
+
+        public String getGeneration() {
+            return generation;
+        }
+
+        public void setGeneration(String generation) {
+            this.generation = generation;
+        }
+
+        public boolean isLocalBudget() {
+            return localBudget;
+        }
+
+        public void setLocalBudget(boolean localBudget) {
+            this.localBudget = localBudget;
+        }
+
+        public Integer getMaxTokens() {
+            return maxTokens;
+        }
+
+        public void setMaxTokens(Integer maxTokens) {
+            this.maxTokens = maxTokens;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public void setDetail(String detail) {
+            this.detail = detail;
+        }
+
+        public Double getSimilarityThreshold() {
+            return similarityThreshold;
+        }
+
+        public void setSimilarityThreshold(Double similarityThreshold) {
+            this.similarityThreshold = similarityThreshold;
+        }
+
+        public Long getTargetP95Ms() {
+            return targetP95Ms;
+        }
+
+        public void setTargetP95Ms(Long targetP95Ms) {
+            this.targetP95Ms = targetP95Ms;
+        }
+
+        /**
+         * 配置快照，用于统计输出
+         */
+        public Map<String, Object> describe() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("generation", generation);
+            result.put("localBudget", localBudget);
+            result.put("maxTokens", maxTokens);
+            result.put("detail", detail);
+            result.put("similarityThreshold", similarityThreshold);
+            result.put("targetP95Ms", targetP95Ms);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 本地景点餐厅目录配置
+ * 对应 app.poi 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.poi")
+public class PoiProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 目录数据位置，支持 classpath: 和 file: 前缀
+     */
+    private String location = "classpath:poi/catalog.json";
+
+    /**
+     * 空间网格边长（公里）
+     */
+    private double cellSizeKm = 1.0;
+
+    /**
+     * 行程地点周边的搜索半径（公里）
+     */
+    private double radiusKm = 3.0;
+
+    /**
+     * 每类推荐的条数
+     */
+    private int limit = 5;
+
+    /**
+     * 本地餐厅推荐少于该数量时改由AI生成
+     */
+    private int minResults = 3;
+
+    /**
+     * 本地推荐后是否再调用AI补充贴士和文化洞察
+     */
+    private boolean llmEnrich = false;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public double getCellSizeKm() {
+        return cellSizeKm;
+    }
+
+    public void setCellSizeKm(double cellSizeKm) {
+        this.cellSizeKm = cellSizeKm;
+    }
+
+    public double getRadiusKm() {
+        return radiusKm;
+    }
+
+    public void setRadiusKm(double radiusKm) {
+        this.radiusKm = radiusKm;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    public int getMinResults() {
+        return minResults;
+    }
+
+    public void setMinResults(int minResults) {
+        this.minResults = minResults;
+    }
+
+    public boolean isLlmEnrich() {
+        return llmEnrich;
+    }
+
+    public void setLlmEnrich(boolean llmEnrich) {
+        this.llmEnrich = llmEnrich;
+    }
+}
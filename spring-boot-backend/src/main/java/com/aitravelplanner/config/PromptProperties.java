@@ -0,0 +1,67 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 提示词预算配置
+ * 对应 app.ai.prompt 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.prompt")
+public class PromptProperties {
+
+    /**
+     * 各工具用户消息的token上限，键为 budget / itinerary / recommendation；未配置的工具不限制
+     */
+    private Map<String, Integer> maxUserTokens = new HashMap<>();
+
+    /**
+     * 单个自由文本字段（偏好、行程概述、调整要求等）的token上限
+     */
+    private int fieldMaxTokens = 200;
+
+    /**
+     * 提供商缓存前缀的最小长度，系统消息短于该值时不计为可缓存前缀
+     */
+    private int prefixCacheMinTokens = 256;
+
+    /**
+     * 提供商缓存前缀的保留时间，超过该时间未再发送的系统消息视为缓存已失效
+     */
+    private long prefixCacheTtlMs = 300000;
+
+    public Map<String, Integer> getMaxUserTokens() {
+        return maxUserTokens;
+    }
+
+    public void setMaxUserTokens(Map<String, Integer> maxUserTokens) {
+        this.maxUserTokens = maxUserTokens;
+    }
+
+    public int getFieldMaxTokens() {
+        return fieldMaxTokens;
+    }
+
+    public void setFieldMaxTokens(int fieldMaxTokens) {
+        this.fieldMaxTokens = fieldMaxTokens;
+    }
+
+    public int getPrefixCacheMinTokens() {
+        return prefixCacheMinTokens;
+    }
+
+    public void setPrefixCacheMinTokens(int prefixCacheMinTokens) {
+        this.prefixCacheMinTokens = prefixCacheMinTokens;
+    }
+
+    public long getPrefixCacheTtlMs() {
+        return prefixCacheTtlMs;
+    }
+
+    public void setPrefixCacheTtlMs(long prefixCacheTtlMs) {
+        this.prefixCacheTtlMs = prefixCacheTtlMs;
+    }
+}
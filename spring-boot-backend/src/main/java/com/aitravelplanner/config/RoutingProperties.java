@@ -0,0 +1,210 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 多模型路由配置
+ * 对应 app.ai.routing 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.routing")
+public class RoutingProperties {
+
+    /**
+     * 是否启用路由；关闭时所有工具使用默认ChatClient
+     */
+    private boolean enabled = false;
+
+    /**
+     * 未配置路由时使用的ChatClient Bean名称，为空时使用唯一或主ChatClient
+     */
+    private String defaultClient;
+
+    /**
+     * EWMA平滑系数，越大越偏向最近的调用
+     */
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * 后端出现限流或连续失败后的冷却时间
+     */
+    private long cooldownMs = 30000;
+
+    /**
+     * 后端空闲超过该时间后，其延迟估计回落到先验值，以便重新探测
+     */
+    private long probeIntervalMs = 60000;
+
+    /**
+     * 所有已注册的后端
+     */
+    private List<Backend> backends = new ArrayList<>();
+
+    /**
+     * 工具到候选后端的映射，键为 budget / itinerary / recommendation
+     */
+    private Map<String, List<String>> tools = new HashMap<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDefaultClient() {
+        return defaultClient;
+    }
+
+    public void setDefaultClient(String defaultClient) {
+        this.defaultClient = defaultClient;
+    }
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    public void setEwmaAlpha(double ewmaAlpha) {
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public long getCooldownMs() {
+        return cooldownMs;
+    }
+
+    public void setCooldownMs(long cooldownMs) {
+        this.cooldownMs = cooldownMs;
+    }
+
+    public long getProbeIntervalMs() {
+        return probeIntervalMs;
+    }
+
+    public void setProbeIntervalMs(long probeIntervalMs) {
+        this.probeIntervalMs = probeIntervalMs;
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    public void setBackends(List<Backend> backends) {
+        this.backends = backends;
+    }
+
+    public Map<String, List<String>> getTools() {
+        return tools;
+    }
+
+    public void setTools(Map<String, List<String>> tools) {
+        this.tools = tools;
+    }
+
+    /**
+     * 单个后端配置
+     */
+    public static class Backend {
+
+        private String name;
+
+        /**
+         * 后端类型: chat-client（使用ChatClient Bean的默认模型）、openai（按model覆盖OpenAI模型）、stub（本地桩）
+         */
+        private String type = "chat-client";
+
+        /**
+         * ChatClient Bean名称，stub类型不需要
+         */
+        private String clientBean;
+
+        private String model;
+
+        /**
+         * 每分钟请求上限，0表示不限
+         */
+        private int requestsPerMinute = 0;
+
+        /**
+         * 延迟先验值，后端尚无调用记录时使用
+         */
+        private long expectedLatencyMs = 3000;
+
+        /**
+         * stub类型的模拟延迟
+         */
+        private long stubLatencyMs = 50;
+
+        /**
+         * stub类型的模拟失败率
+         */
+        private double stubErrorRate = 0.0;
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getClientBean() {
+            return clientBean;
+        }
+
+        public void setClientBean(String clientBean) {
+            this.clientBean = clientBean;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public void setModel(String model) {
+            this.model = model;
+        }
+
+        public int getRequestsPerMinute() {
+            return requestsPerMinute;
+        }
+
+        public void setRequestsPerMinute(int requestsPerMinute) {
+            this.requestsPerMinute = requestsPerMinute;
+        }
+
+        public long getExpectedLatencyMs() {
+            return expectedLatencyMs;
+        }
+
+        public void setExpectedLatencyMs(long expectedLatencyMs) {
+            this.expectedLatencyMs = expectedLatencyMs;
+        }
+
+        public long getStubLatencyMs() {
+            return stubLatencyMs;
+        }
+
+        public void setStubLatencyMs(long stubLatencyMs) {
+            this.stubLatencyMs = stubLatencyMs;
+        }
+
+        public double getStubErrorRate() {
+            return stubErrorRate;
+        }
+
+        public void setStubErrorRate(double stubErrorRate) {
+            this.stubErrorRate = stubErrorRate;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.aitravelplanner.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 全局AI调用调度器配置
+ * 对应 app.ai.scheduler 配置项
+ */
+@Component
+@ConfigurationProperties(prefix = "app.ai.scheduler")
+public class SchedulerProperties {
+
+    /**
+     * 是否启用；关闭时AI调用不排队，直接进入工具隔离舱
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限，之后按延迟和限流错误自适应调整
+     */
+    private int initialLimit = 8;
+
+    private int minLimit = 1;
+
+    private int maxLimit = 32;
+
+    /**
+     * 收到提供商限流错误（429）时并发上限乘以该系数
+     */
+    private double rateLimitBackoff = 0.5;
+
+    /**
+     * 调用耗时超过该工具基线的倍数时视为提供商开始排队，并发上限乘以 latencyBackoff
+     */
+    private double latencyTolerance = 2.0;
+
+    private double latencyBackoff = 0.9;
+
+    /**
+     * 两次降低并发上限的最小间隔，避免同一波拥塞中的多个信号连续降低
+     */
+    private long decreaseIntervalMs = 1000;
+
+    /**
+     * 各工具耗时基线的EWMA平滑系数，取值较小使基线反映长期水平
+     */
+    private double baselineAlpha = 0.02;
+
+    /**
+     * 各优先级类别，键为 interactive / batch / prewarm；未配置的类别使用默认值
+     */
+    private Map<String, PriorityClass> classes = new HashMap<>(Map.of(
+        "interactive", new PriorityClass(8, 1.0, 64, 30000),
+        "batch", new PriorityClass(2, 0.75, 256, 120000),
+        "prewarm", new PriorityClass(1, 0.5, 256, 300000)
+    ));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getRateLimitBackoff() {
+        return rateLimitBackoff;
+    }
+
+    public void setRateLimitBackoff(double rateLimitBackoff) {
+        this.rateLimitBackoff = rateLimitBackoff;
+    }
+
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    public double getLatencyBackoff() {
+        return latencyBackoff;
+    }
+
+    public void setLatencyBackoff(double latencyBackoff) {
+        this.latencyBackoff = latencyBackoff;
+    }
+
+    public long getDecreaseIntervalMs() {
+        return decreaseIntervalMs;
+    }
+
+    public void setDecreaseIntervalMs(long decreaseIntervalMs) {
+        this.decreaseIntervalMs = decreaseIntervalMs;
+    }
+
+    public double getBaselineAlpha() {
+        return baselineAlpha;
+    }
+
+    public void setBaselineAlpha(double baselineAlpha) {
+        this.baselineAlpha = baselineAlpha;
+    }
+
+    public Map<String, PriorityClass> getClasses() {
+        return classes;
+    }
+
+    public void setClasses(Map<String, PriorityClass> classes) {
+        this.classes = classes;
+    }
+
+    /**
+     * 单个优先级类别
+     */
+    public static class PriorityClass {
+
+        /**
+         * 加权公平排队的权重，各类别都有排队时按权重比例放行
+         */
+        private double weight = 1;
+
+        /**
+         * 该类别最多占用的并发上限比例，为交互请求预留额度
+         */
+        private double maxShare = 1.0;
+
+        /**
+         * 排队数上限，超出时立即拒绝
+         */
+        private int maxQueued = 64;
+
+        /**
+         * 最长排队时间，超时后放弃本次调用
+         */
+        private long maxWaitMs = 30000;
+
+        public PriorityClass() {}
+
+        public PriorityClass(double weight, double maxShare, int maxQueued, long maxWaitMs) {
+            this.weight = weight;
+            this.maxShare = maxShare;
+            this.maxQueued = maxQueued;
+            this.maxWaitMs = maxWaitMs;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+
+        public void setWeight(double weight) {
+            this.weight = weight;
+        }
+
+        public double getMaxShare() {
+            return maxShare;
+        }
+
+        public void setMaxShare(double maxShare) {
+            this.maxShare = maxShare;
+        }
+
+        public int getMaxQueued() {
+            return maxQueued;
+        }
+
+        public void setMaxQueued(int maxQueued) {
+            this.maxQueued = maxQueued;
+        }
+
+        public long getMaxWaitMs() {
+            return maxWaitMs;
+        }
+
+        public void setMaxWaitMs(long maxWaitMs) {
+            this.maxWaitMs = maxWaitMs;
+        }
+    }
+}
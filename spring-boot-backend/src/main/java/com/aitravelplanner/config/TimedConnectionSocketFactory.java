@@ -0,0 +1,52 @@
+package com.aitravelplanner.config;
+
+import com.aitravelplanner.service.llm.HttpTransportMetrics;
+import org.apache.hc.client5.http.socket.ConnectionSocketFactory;
+import org.apache.hc.core5.http.HttpHost;
+import org.apache.hc.core5.http.protocol.HttpContext;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * 记录建连耗时的Socket工厂，HTTPS下包含TLS握手时间
+ */
+class TimedConnectionSocketFactory implements ConnectionSocketFactory {
+
+    private final ConnectionSocketFactory delegate;
+    private final HttpTransportMetrics metrics;
+
+    TimedConnectionSocketFactory(ConnectionSocketFactory delegate, HttpTransportMetrics metrics) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Socket createSocket(HttpContext context) throws IOException {
+        return delegate.createSocket(context);
+    }
+
+    @Override
+    public Socket connectSocket(TimeValue connectTimeout, Socket socket, HttpHost host,
+                                InetSocketAddress remoteAddress, InetSocketAddress localAddress,
+                                HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        Socket connected = delegate.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+        metrics.recordConnect((System.nanoTime() - start) / 1_000_000);
+        return connected;
+    }
+
+    @Override
+    public Socket connectSocket(Socket socket, HttpHost host, InetSocketAddress remoteAddress,
+                                InetSocketAddress localAddress, Timeout connectTimeout, Object attachment,
+                                HttpContext context) throws IOException {
+        long start = System.nanoTime();
+        Socket connected = delegate.connectSocket(socket, host, remoteAddress, localAddress,
+                connectTimeout, attachment, context);
+        metrics.recordConnect((System.nanoTime() - start) / 1_000_000);
+        return connected;
+    }
+}
@@ -0,0 +1,92 @@
+package com.aitravelplanner.config;
+
+import com.aitravelplanner.service.llm.RequestContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 工具流执行配置
+ * 提供工具流内部并行调用所使用的线程池；提交到这些线程池的任务沿用提交者的请求上下文（服务等级）
+ */
+@Configuration
+public class WorkflowConfig {
+
+    /**
+     * 工具流线程池，大小由 app.workflow.max-concurrent 控制
+     */
+    @Bean(name = "workflowExecutor")
+    public ThreadPoolTaskExecutor workflowExecutor(
+            @Value("${app.workflow.max-concurrent:5}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(maxConcurrent * 20);
+        executor.setThreadNamePrefix("workflow-");
+        executor.setTaskDecorator(RequestContext::wrap);
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 多城市行程的分段线程池
+     * 
+     * 每段内部还会向工具流线程池提交推测任务，分段使用独立线程池以免两层任务互相等待；
+     * 线程池满时由请求线程直接执行该段
+     */
+    @Bean(name = "legExecutor")
+    public ThreadPoolTaskExecutor legExecutor(
+            @Value("${app.workflow.legs.max-concurrent:12}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("trip-leg-");
+        executor.setTaskDecorator(RequestContext::wrap);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 渐进式行程的逐天补全线程池
+     * 
+     * 后台补全让位于请求线程：队列满时丢弃后台任务，该天在被查看时再生成
+     */
+    @Bean(name = "dayFillExecutor")
+    public ThreadPoolTaskExecutor dayFillExecutor(
+            @Value("${app.workflow.progressive.max-concurrent:4}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(maxConcurrent * 50);
+        executor.setThreadNamePrefix("day-fill-");
+        executor.setTaskDecorator(RequestContext::wrap);
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * 过期缓存的后台重新生成线程池
+     * 
+     * 队列满时不再排队，该条目按重新生成失败处理，继续返回旧结果并稍后重试
+     */
+    @Bean(name = "revalidationExecutor")
+    public ThreadPoolTaskExecutor revalidationExecutor(
+            @Value("${app.cache.revalidate-max-concurrent:2}") int maxConcurrent) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        executor.setQueueCapacity(maxConcurrent * 10);
+        executor.setThreadNamePrefix("revalidate-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,71 @@
+package com.aitravelplanner.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.*;
+
+/**
+ * 响应字段投影
+ *
+ * 对应接口的 ?fields= 参数，只保留列出的字段，例如 days.title,days.dailyBudget,totalBudget：
+ * 路径用点分隔，经过数组时对每个元素分别投影；只写到某个字段时保留它的全部子字段，
+ * 响应中不存在的字段直接忽略。字段顺序与完整响应一致
+ */
+final class FieldProjection {
+
+    /** 子字段投影，为空表示保留整个字段 */
+    private final Map<String, FieldProjection> children = new HashMap<>();
+
+    private FieldProjection() {}
+
+    /**
+     * 解析fields参数
+     *
+     * @return 投影，参数为空时返回null表示不投影
+     * @throws IllegalArgumentException 参数中有空的字段名
+     */
+    static FieldProjection parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return null;
+        }
+        FieldProjection root = new FieldProjection();
+        for (String path : fields.split(",")) {
+            FieldProjection node = root;
+            for (String name : path.trim().split("\\.", -1)) {
+                if (name.isBlank()) {
+                    throw new IllegalArgumentException("字段路径无效: " + path.trim());
+                }
+                node = node.children.computeIfAbsent(name.trim(), key -> new FieldProjection());
+            }
+        }
+        return root;
+    }
+
+    /**
+     * 对序列化后的响应树投影，返回新的树
+     */
+    JsonNode apply(JsonNode node) {
+        if (children.isEmpty()) {
+            return node;
+        }
+        if (node.isArray()) {
+            ArrayNode result = JsonNodeFactory.instance.arrayNode(node.size());
+            node.forEach(element -> result.add(apply(element)));
+            return result;
+        }
+        if (node.isObject()) {
+            ObjectNode result = JsonNodeFactory.instance.objectNode();
+            node.fields().forEachRemaining(field -> {
+                FieldProjection child = children.get(field.getKey());
+                if (child != null) {
+                    result.set(field.getKey(), child.apply(field.getValue()));
+                }
+            });
+            return result;
+        }
+        return node;
+    }
+}
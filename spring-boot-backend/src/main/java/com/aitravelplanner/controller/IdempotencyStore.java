@@ -0,0 +1,270 @@
+package com.aitravelplanner.controller;
+
+import com.aitravelplanner.config.IdempotencyProperties;
+import com.aitravelplanner.model.TripRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 幂等键存储
+ *
+ * 客户端超时后重试 POST /plan 时携带相同的 Idempotency-Key：原请求进行中时重试等待同一个结果，
+ * 完成后在保留期内直接返回保存的响应，不再重新执行工具流。请求体按序列化后的摘要比对，
+ * 相同的键对应不同请求体时拒绝。只保存成功的响应，失败后释放幂等键，之后的重试重新执行。
+ * 键数和保存的正文字节数都有上限，超出时淘汰最早的已完成结果；进行中的请求占满上限时不再登记新的键
+ */
+@Component
+public class IdempotencyStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    @Autowired
+    private IdempotencyProperties properties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    /** 按登记顺序排列，淘汰和过期清理都从最早的键开始 */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long storedBytes;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder attached = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final LongAdder released = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * 登记结果
+     */
+    public enum State {
+        /** 新的键，由本次请求执行 */
+        STARTED,
+        /** 相同的键已登记，等待或直接使用原请求的结果 */
+        ATTACHED,
+        /** 相同的键对应不同的请求体 */
+        MISMATCH,
+        /** 进行中的请求已占满上限，本次请求不登记幂等键 */
+        BYPASSED
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final long createdAt = System.currentTimeMillis();
+        /** 成功时正文为序列化后的TripResponse，失败时为原错误响应 */
+        final CompletableFuture<ResponseEntity<?>> result = new CompletableFuture<>();
+        /** 完成时间，进行中为0 */
+        long completedAt;
+        int bytes;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /**
+     * 一次登记
+     */
+    public static final class Claim {
+        private final String key;
+        private final State state;
+        private final Entry entry;
+
+        private Claim(String key, State state, Entry entry) {
+            this.key = key;
+            this.state = state;
+            this.entry = entry;
+        }
+
+        public State state() {
+            return state;
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 校验幂等键格式
+     *
+     * @throws IllegalArgumentException 键为空、过长或包含不可见字符
+     */
+    public void validateKey(String key) {
+        if (key.isBlank() || key.length() > properties.getMaxKeyLength()) {
+            throw new IllegalArgumentException("Idempotency-Key长度应为1到" + properties.getMaxKeyLength() + "个字符");
+        }
+        if (!key.chars().allMatch(c -> c >= 0x21 && c <= 0x7e)) {
+            throw new IllegalArgumentException("Idempotency-Key只能包含可见ASCII字符");
+        }
+    }
+
+    /**
+     * 登记幂等键
+     *
+     * @param request 尚未被工具流修改的原始请求
+     */
+    public Claim claim(String key, TripRequest request) {
+        String fingerprint = fingerprint(request);
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            expire(now);
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                if (!existing.fingerprint.equals(fingerprint)) {
+                    mismatched.increment();
+                    return new Claim(key, State.MISMATCH, existing);
+                }
+                attached.increment();
+                if (existing.completedAt > 0) {
+                    replayed.increment();
+                }
+                return new Claim(key, State.ATTACHED, existing);
+            }
+            while (entries.size() >= properties.getMaxEntries() && evictOldestCompleted()) {
+                // 淘汰最早的已完成结果，直到有空位
+            }
+            if (entries.size() >= properties.getMaxEntries()) {
+                bypassed.increment();
+                logger.warn("⚠️ 进行中的幂等请求已达上限{}，本次请求不登记幂等键", properties.getMaxEntries());
+                return new Claim(key, State.BYPASSED, null);
+            }
+            Entry entry = new Entry(fingerprint);
+            entries.put(key, entry);
+            started.increment();
+            return new Claim(key, State.STARTED, entry);
+        }
+    }
+
+    /**
+     * 记录本次请求的结果，并唤醒等待中的重试
+     *
+     * 成功的响应序列化后在保留期内保存；失败或正文超出上限时释放幂等键，等待中的重试得到相同的响应
+     */
+    public void complete(Claim claim, ResponseEntity<?> response) {
+        if (claim.state != State.STARTED) {
+            return;
+        }
+        Entry entry = claim.entry;
+        byte[] json = null;
+        if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+            try {
+                json = objectMapper.writeValueAsBytes(response.getBody());
+            } catch (JsonProcessingException e) {
+                logger.warn("⚠️ 幂等响应序列化失败，释放幂等键: {}", e.getMessage());
+            }
+        }
+
+        synchronized (entries) {
+            if (json == null || json.length > properties.getMaxStoredBytes()) {
+                entries.remove(claim.key, entry);
+                released.increment();
+            } else {
+                entry.completedAt = System.currentTimeMillis();
+                entry.bytes = json.length;
+                storedBytes += json.length;
+                while (storedBytes > properties.getMaxStoredBytes() && evictOldestCompleted()) {
+                    // 淘汰最早的已完成结果，直到总字节数不超过上限
+                }
+            }
+        }
+        entry.result.complete(json == null ? response
+                : ResponseEntity.status(response.getStatusCode()).headers(response.getHeaders()).body(json));
+    }
+
+    /**
+     * 等待原请求的结果
+     *
+     * @return 成功时正文为序列化后的TripResponse，失败时为原错误响应
+     * @throws TimeoutException 原请求在attach-timeout内未完成
+     */
+    public ResponseEntity<?> await(Claim claim) throws TimeoutException, InterruptedException {
+        try {
+            return claim.entry.result.get(properties.getAttachTimeout(), TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 从最早登记的键开始删除超出保留期的结果；登记时间在保留期内的键不可能过期，遇到即停止
+     */
+    private void expire(long now) {
+        long retentionMillis = properties.getRetention() * 1000;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.createdAt + retentionMillis > now) {
+                return;
+            }
+            if (entry.completedAt > 0 && entry.completedAt + retentionMillis <= now) {
+                iterator.remove();
+                storedBytes -= entry.bytes;
+            }
+        }
+    }
+
+    private boolean evictOldestCompleted() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.completedAt > 0) {
+                iterator.remove();
+                storedBytes -= entry.bytes;
+                evicted.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 请求体摘要：按TripRequest序列化，字段顺序和空白不同的相同请求得到相同的摘要
+     */
+    private String fingerprint(TripRequest request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("请求摘要计算失败", e);
+        }
+    }
+
+    /**
+     * 获取幂等键统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("started", started.sum());
+        result.put("attached", attached.sum());
+        result.put("replayed", replayed.sum());
+        result.put("mismatched", mismatched.sum());
+        result.put("released", released.sum());
+        result.put("evicted", evicted.sum());
+        result.put("bypassed", bypassed.sum());
+        synchronized (entries) {
+            long inFlight = entries.values().stream().filter(entry -> entry.completedAt == 0).count();
+            result.put("entries", entries.size());
+            result.put("inFlight", inFlight);
+            result.put("storedBytes", storedBytes);
+        }
+        return result;
+    }
+}
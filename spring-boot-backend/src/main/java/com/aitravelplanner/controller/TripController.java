@@ -1,15 +1,37 @@
 package com.aitravelplanner.controller;
 
+import com.aitravelplanner.model.PlanChangeRequest;
 import com.aitravelplanner.model.TripRequest;
 import com.aitravelplanner.model.TripResponse;
+import com.aitravelplanner.service.ConsolidatedPlanningTool;
+import com.aitravelplanner.service.ItineraryPlanningTool;
+import com.aitravelplanner.service.LenientJsonParser;
+import com.aitravelplanner.service.ProgressiveDayFiller;
+import com.aitravelplanner.service.RecommendationExtractionTool;
 import com.aitravelplanner.service.TripOrchestratorService;
+import com.aitravelplanner.service.cache.ClusterPlanCoordinator;
+import com.aitravelplanner.service.cache.PlanCache;
+import com.aitravelplanner.service.llm.AiCallJournal;
+import com.aitravelplanner.service.llm.HttpTransportMetrics;
+import com.aitravelplanner.service.llm.LlmRouter;
+import com.aitravelplanner.service.llm.LlmScheduler;
+import com.aitravelplanner.service.llm.PromptBudgeter;
+import com.aitravelplanner.service.llm.ToolBulkheads;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.availability.ApplicationAvailability;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import jakarta.validation.Valid;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeoutException;
 
 /**
  * 旅行规划控制器
@@ -25,6 +47,54 @@ public class TripController {
     @Autowired
     private TripOrchestratorService tripOrchestratorService;
     
+    @Autowired
+    private ItineraryPlanningTool itineraryPlanningTool;
+    
+    @Autowired
+    private RecommendationExtractionTool recommendationExtractionTool;
+    
+    @Autowired
+    private ConsolidatedPlanningTool consolidatedPlanningTool;
+    
+    @Autowired
+    private LenientJsonParser lenientJsonParser;
+    
+    @Autowired
+    private LlmRouter llmRouter;
+    
+    @Autowired
+    private PromptBudgeter promptBudgeter;
+    
+    @Autowired
+    private ToolBulkheads toolBulkheads;
+    
+    @Autowired
+    private LlmScheduler llmScheduler;
+    
+    @Autowired
+    private AiCallJournal aiCallJournal;
+    
+    @Autowired
+    private HttpTransportMetrics httpTransportMetrics;
+    
+    @Autowired
+    private ProgressiveDayFiller progressiveDayFiller;
+    
+    @Autowired
+    private PlanCache planCache;
+    
+    @Autowired
+    private ClusterPlanCoordinator clusterPlanCoordinator;
+    
+    @Autowired
+    private ApplicationAvailability applicationAvailability;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
     /**
      * 生成旅行规划
      * 
@@ -36,12 +106,68 @@ public class TripController {
      * 3. 返回结构化的AI生成结果
      * 
      * @param request 旅行规划请求
+     * @param fields 只返回列出的字段，例如 days.title,days.dailyBudget,totalBudget；为空时返回完整响应
+     * @param idempotencyKey 客户端生成的幂等键，超时重试时携带相同的键可复用原请求的结果
      * @return 旅行规划响应
      */
     @PostMapping("/plan")
-    public ResponseEntity<?> generateTripPlan(@Valid @RequestBody TripRequest request) {
+    public ResponseEntity<?> generateTripPlan(@Valid @RequestBody TripRequest request,
+                                              @RequestParam(required = false) String fields,
+                                              @RequestHeader(value = "Idempotency-Key", required = false)
+                                              String idempotencyKey) {
         logger.info("🚀 收到旅行规划请求: {}", request);
         
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return invalidFields(e);
+        }
+        
+        IdempotencyStore.Claim claim = null;
+        if (idempotencyKey != null && idempotencyStore.isEnabled()) {
+            try {
+                idempotencyStore.validateKey(idempotencyKey);
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of(
+                            "error", "Idempotency-Key无效",
+                            "message", e.getMessage(),
+                            "timestamp", System.currentTimeMillis()
+                        ));
+            }
+            claim = idempotencyStore.claim(idempotencyKey, request);
+            if (claim.state() == IdempotencyStore.State.MISMATCH) {
+                return ResponseEntity.unprocessableEntity()
+                        .body(Map.of(
+                            "error", "Idempotency-Key已用于不同的请求",
+                            "message", "相同的幂等键只能用于相同的请求体，请为新的请求生成新的键",
+                            "timestamp", System.currentTimeMillis()
+                        ));
+            }
+            if (claim.state() == IdempotencyStore.State.ATTACHED) {
+                return replay(claim, projection);
+            }
+        }
+        
+        ResponseEntity<?> result = ResponseEntity.internalServerError().build();
+        try {
+            result = planTrip(request);
+        } finally {
+            if (claim != null) {
+                idempotencyStore.complete(claim, result);
+            }
+        }
+        return result.getBody() instanceof TripResponse response
+                ? ResponseEntity.status(result.getStatusCode()).headers(result.getHeaders())
+                        .body(project(response, projection))
+                : result;
+    }
+    
+    /**
+     * 执行工具流并构建完整响应
+     */
+    private ResponseEntity<?> planTrip(TripRequest request) {
         try {
             // 记录AI调用开始
             long startTime = System.currentTimeMillis();
@@ -62,12 +188,22 @@ public class TripController {
                                .mapToInt(day -> day.getActivities().size())
                                .sum());
             
-            // 返回成功响应
-            return ResponseEntity.ok()
+            // 返回成功响应；命中过期缓存时附带超出有效期的秒数
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok()
                     .header("X-AI-Processing-Time", String.valueOf(duration))
-                    .header("X-AI-Status", "success")
-                    .body(response);
+                    .header("X-AI-Status", "success");
+            if (response.getStaleMillis() != null) {
+                ok.header("X-Cache-Stale-Age", String.valueOf(response.getStaleMillis() / 1000));
+            }
+            return ok.body(response);
                     
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "error", "旅行规划请求无效",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
         } catch (Exception e) {
             logger.error("❌ AI旅行规划生成失败: {}", e.getMessage(), e);
             
@@ -82,15 +218,222 @@ public class TripController {
         }
     }
     
+    /**
+     * 使用相同幂等键的重试：等待进行中的原请求，或直接返回保存的结果
+     * 
+     * 原请求失败时返回相同的错误，幂等键已释放，再次重试会重新执行
+     */
+    private ResponseEntity<?> replay(IdempotencyStore.Claim claim, FieldProjection projection) {
+        logger.info("🔁 幂等重试，复用原请求的结果");
+        ResponseEntity<?> original;
+        try {
+            original = idempotencyStore.await(claim);
+        } catch (TimeoutException | InterruptedException e) {
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "5")
+                    .body(Map.of(
+                        "error", "相同Idempotency-Key的请求仍在处理中",
+                        "message", "请稍后使用相同的幂等键重试",
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        }
+        if (!(original.getBody() instanceof byte[] json)) {
+            return original;
+        }
+        try {
+            TripResponse response = objectMapper.readValue(json, TripResponse.class);
+            return ResponseEntity.status(original.getStatusCode()).headers(original.getHeaders())
+                    .header("Idempotent-Replayed", "true")
+                    .body(project(response, projection));
+        } catch (IOException e) {
+            logger.error("❌ 幂等结果读取失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .header("X-AI-Status", "error")
+                    .body(Map.of(
+                        "error", "幂等结果读取失败",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        }
+    }
+    
+    /**
+     * 获取已生成的行程
+     * 
+     * 接口路径: GET /api/ai/plans/{planId}
+     * 
+     * @param planId 行程ID
+     * @param fields 只返回列出的字段，为空时返回完整行程
+     * @return 行程
+     */
+    @GetMapping("/plans/{planId}")
+    public ResponseEntity<?> getTripPlan(@PathVariable String planId, @RequestParam(required = false) String fields) {
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return invalidFields(e);
+        }
+        return tripOrchestratorService.getTripPlan(planId)
+                .<ResponseEntity<?>>map(response -> ResponseEntity.ok(project(response, projection)))
+                .orElseGet(() -> ResponseEntity.status(404).body(Map.of(
+                    "error", "行程不存在",
+                    "planId", planId,
+                    "timestamp", System.currentTimeMillis()
+                )));
+    }
+    
+    /**
+     * 获取行程中某一天的完整安排
+     * 
+     * 接口路径: GET /api/ai/plans/{planId}/days/{day}
+     * 
+     * 渐进式行程中该天仍为pending时立即生成并等待，同时预先生成其后的天数
+     * 
+     * @param planId 行程ID
+     * @param day 天数（从1开始）
+     * @param fields 只返回列出的字段，例如 title,activities.time,activities.activity
+     * @return 该天的行程
+     */
+    @GetMapping("/plans/{planId}/days/{day}")
+    public ResponseEntity<?> getTripDay(@PathVariable String planId, @PathVariable int day,
+                                        @RequestParam(required = false) String fields) {
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return invalidFields(e);
+        }
+        try {
+            long startTime = System.currentTimeMillis();
+            TripResponse.DayItinerary result = tripOrchestratorService.getTripDay(planId, day);
+            return ResponseEntity.ok()
+                    .header("X-AI-Processing-Time", String.valueOf(System.currentTimeMillis() - startTime))
+                    .body(project(result, projection));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404)
+                    .body(Map.of(
+                        "error", "行程不存在",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "error", "天数无效",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        }
+    }
+    
+    /**
+     * 增量修改行程
+     * 
+     * 接口路径: PATCH /api/ai/plans/{planId}
+     * 
+     * 只重新生成受影响的每日行程，预算和推荐内容直接复用
+     * 
+     * @param planId 行程ID
+     * @param change 修改内容
+     * @param fields 只返回列出的字段，为空时返回完整行程
+     * @return 修改后的行程
+     */
+    @PatchMapping("/plans/{planId}")
+    public ResponseEntity<?> replanTrip(@PathVariable String planId, @Valid @RequestBody PlanChangeRequest change,
+                                        @RequestParam(required = false) String fields) {
+        logger.info("✏️ 收到行程修改请求: planId={}, {}", planId, change);
+        
+        FieldProjection projection;
+        try {
+            projection = FieldProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return invalidFields(e);
+        }
+        
+        try {
+            long startTime = System.currentTimeMillis();
+            TripResponse response = tripOrchestratorService.replanTrip(planId, change);
+            long duration = System.currentTimeMillis() - startTime;
+            
+            logger.info("✅ 行程修改成功，耗时: {}ms", duration);
+            return ResponseEntity.ok()
+                    .header("X-AI-Processing-Time", String.valueOf(duration))
+                    .header("X-AI-Status", "success")
+                    .body(project(response, projection));
+                    
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404)
+                    .body(Map.of(
+                        "error", "行程不存在",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of(
+                        "error", "修改请求无效",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        } catch (IllegalStateException e) {
+            logger.warn("⚠️ 行程修改未完成，原行程保持不变: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY)
+                    .header("X-AI-Status", "error")
+                    .body(Map.of(
+                        "error", "行程重新生成失败，原行程未修改",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        } catch (Exception e) {
+            logger.error("❌ 行程修改失败: {}", e.getMessage(), e);
+            return ResponseEntity.status(500)
+                    .header("X-AI-Status", "error")
+                    .body(Map.of(
+                        "error", "行程修改失败",
+                        "message", e.getMessage(),
+                        "timestamp", System.currentTimeMillis()
+                    ));
+        }
+    }
+
+    /**
+     * 按fields参数投影响应，未指定时原样返回
+     */
+    private Object project(Object body, FieldProjection projection) {
+        return projection == null ? body : projection.apply(objectMapper.valueToTree(body));
+    }
+
+    private ResponseEntity<?> invalidFields(IllegalArgumentException e) {
+        return ResponseEntity.badRequest()
+                .body(Map.of(
+                    "error", "fields参数无效",
+                    "message", e.getMessage(),
+                    "timestamp", System.currentTimeMillis()
+                ));
+    }
+
     /**
      * 健康检查接口
      * 
+     * 启动尚未完成（包括JIT预热期间）时返回503
+     * 
      * @return 服务状态
      */
     @GetMapping("/health")
     public ResponseEntity<?> healthCheck() {
         logger.info("🔍 健康检查请求");
         
+        if (applicationAvailability.getReadinessState() != ReadinessState.ACCEPTING_TRAFFIC) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                "status", "starting",
+                "timestamp", System.currentTimeMillis()
+            ));
+        }
+        
         return ResponseEntity.ok(Map.of(
             "status", "healthy",
             "service", "AI Travel Planner",
@@ -100,6 +443,34 @@ public class TripController {
         ));
     }
     
+    /**
+     * 获取工具流运行指标
+     * 
+     * @return 各组件的运行统计
+     */
+    @GetMapping("/metrics")
+    public ResponseEntity<?> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("modes", tripOrchestratorService.getModeStats());
+        metrics.put("speculation", tripOrchestratorService.getSpeculationStats());
+        metrics.put("itineraryRepair", itineraryPlanningTool.getRepairStats());
+        metrics.put("recommendation", recommendationExtractionTool.getStats());
+        metrics.put("consolidated", consolidatedPlanningTool.getStats());
+        metrics.put("progressive", progressiveDayFiller.getStats());
+        metrics.put("jsonParsing", lenientJsonParser.getStats());
+        metrics.put("routing", llmRouter.getStats());
+        metrics.put("prompts", promptBudgeter.getStats());
+        metrics.put("scheduler", llmScheduler.getStats());
+        metrics.put("bulkheads", toolBulkheads.getStats());
+        metrics.put("aiJournal", aiCallJournal.getStats());
+        metrics.put("httpTransport", httpTransportMetrics.snapshot());
+        metrics.put("planCache", planCache.getStats());
+        metrics.put("cluster", clusterPlanCoordinator.getStats());
+        metrics.put("idempotency", idempotencyStore.getStats());
+        metrics.put("timestamp", System.currentTimeMillis());
+        return ResponseEntity.ok(metrics);
+    }
+    
     /**
      * 获取AI服务信息
      * 
@@ -0,0 +1,81 @@
+package com.aitravelplanner.metrics;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 延迟记录器
+ * 无锁记录次数、总耗时、最大值和固定分桶直方图，可按分桶估算分位数
+ */
+public class LatencyRecorder {
+
+    /**
+     * 分桶上界（毫秒），最后一个桶收集超出范围的值
+     */
+    private static final long[] BUCKETS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000};
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalMillis = new LongAdder();
+    private final LongAccumulator maxMillis = new LongAccumulator(Math::max, 0);
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+    /**
+     * 记录一次耗时
+     */
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        count.increment();
+        totalMillis.add(value);
+        maxMillis.accumulate(value);
+        histogram.incrementAndGet(bucketOf(value));
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 估算分位数，返回所在分桶的上界
+     */
+    public long percentile(double quantile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            seen += histogram.get(i);
+            if (seen >= target) {
+                return BUCKETS[i];
+            }
+        }
+        return maxMillis.get();
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Map<String, Object> snapshot() {
+        long total = count.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("avgMillis", total == 0 ? 0 : totalMillis.sum() / total);
+        result.put("p50Millis", percentile(0.50));
+        result.put("p95Millis", percentile(0.95));
+        result.put("p99Millis", percentile(0.99));
+        result.put("maxMillis", maxMillis.get());
+        return result;
+    }
+
+    private int bucketOf(long millis) {
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (millis <= BUCKETS[i]) {
+                return i;
+            }
+        }
+        return BUCKETS.length;
+    }
+}
@@ -0,0 +1,100 @@
+package com.aitravelplanner.model;
+
+import jakarta.validation.constraints.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 行程增量修改请求模型
+ * 
+ * 支持的修改类型：
+ * - editDay: 修改第day天的偏好并重新生成该天
+ * - changeDates: 修改结束日期，延长或缩短行程
+ * - swapActivity: 替换第day天的第activityIndex个活动
+ */
+public class PlanChangeRequest {
+    
+    @NotBlank(message = "修改类型不能为空")
+    @JsonProperty("type")
+    private String type;
+    
+    @Min(value = 1, message = "天数从1开始")
+    @JsonProperty("day")
+    private Integer day;
+    
+    @JsonProperty("preferences")
+    private String preferences;
+    
+    @JsonProperty("endDate")
+    private String endDate;
+    
+    @Min(value = 1, message = "活动序号从1开始")
+    @JsonProperty("activityIndex")
+    private Integer activityIndex;
+    
+    @JsonProperty("hint")
+    private String hint;
+    
+    // 构造函数
+    public PlanChangeRequest() {}
+    
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+    
+    public void setType(String type) {
+        this.type = type;
+    }
+    
+    public Integer getDay() {
+        return day;
+    }
+    
+    public void setDay(Integer day) {
+        this.day = day;
+    }
+    
+    public String getPreferences() {
+        return preferences;
+    }
+    
+    public void setPreferences(String preferences) {
+        this.preferences = preferences;
+    }
+    
+    public String getEndDate() {
+        return endDate;
+    }
+    
+    public void setEndDate(String endDate) {
+        this.endDate = endDate;
+    }
+    
+    public Integer getActivityIndex() {
+        return activityIndex;
+    }
+    
+    public void setActivityIndex(Integer activityIndex) {
+        this.activityIndex = activityIndex;
+    }
+    
+    public String getHint() {
+        return hint;
+    }
+    
+    public void setHint(String hint) {
+        this.hint = hint;
+    }
+    
+    @Override
+    public String toString() {
+        return "PlanChangeRequest{" +
+                "type='" + type + '\'' +
+                ", day=" + day +
+                ", preferences='" + preferences + '\'' +
+                ", endDate='" + endDate + '\'' +
+                ", activityIndex=" + activityIndex +
+                ", hint='" + hint + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.aitravelplanner.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * 集群行程生成租约
+ * 同一规范化请求同时只有持有租约的实例调用AI生成；持有者定期续约，崩溃后租约过期由其他实例接管
+ */
+@Entity
+@Table(name = "plan_lease")
+public class PlanLease {
+
+    /**
+     * 规范化请求键的SHA-256
+     */
+    @Id
+    @Column(name = "request_key", length = 64)
+    private String requestKey;
+
+    @Column(name = "owner", length = 128, nullable = false)
+    private String owner;
+
+    /**
+     * 每次获取租约生成的随机令牌，续约和释放时校验，避免误操作已被接管的租约
+     */
+    @Column(name = "token", length = 36, nullable = false)
+    private String token;
+
+    @Column(name = "acquired_at", nullable = false)
+    private long acquiredAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    public PlanLease() {}
+
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,69 @@
+package com.aitravelplanner.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+
+/**
+ * 集群共享的行程生成结果
+ * 各实例调用AI前先按规范化请求键查找，命中且未过期时直接复用
+ */
+@Entity
+@Table(name = "shared_plan_result")
+public class SharedPlanResult {
+
+    /**
+     * 规范化请求键的SHA-256
+     */
+    @Id
+    @Column(name = "request_key", length = 64)
+    private String requestKey;
+
+    /**
+     * 各工具中间结果的JSON
+     */
+    @Lob
+    @Column(name = "payload", nullable = false)
+    private String payload;
+
+    @Column(name = "owner", length = 128)
+    private String owner;
+
+    @Column(name = "created_at", nullable = false)
+    private long createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private long expiresAt;
+
+    public SharedPlanResult() {}
+
+    public SharedPlanResult(String requestKey, String payload, String owner, long createdAt, long expiresAt) {
+        this.requestKey = requestKey;
+        this.payload = payload;
+        this.owner = owner;
+        this.createdAt = createdAt;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getRequestKey() {
+        return requestKey;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+}
@@ -0,0 +1,84 @@
+package com.aitravelplanner.model;
+
+import jakarta.validation.constraints.*;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * 多城市行程中的一段
+ *
+ * 相邻两段之间安排一个中转日：下一段可以从上一段的最后一天开始（该天作为中转日）、
+ * 紧接着下一天开始（下一段的第一天作为中转日）或间隔一天开始（间隔的那天作为中转日）
+ */
+public class TripLeg {
+
+    @NotBlank(message = "目的地不能为空")
+    @JsonProperty("destination")
+    private String destination;
+
+    @NotBlank(message = "开始日期不能为空")
+    @JsonProperty("startDate")
+    private String startDate;
+
+    @NotBlank(message = "结束日期不能为空")
+    @JsonProperty("endDate")
+    private String endDate;
+
+    /**
+     * 该段的偏好，为空时使用整个行程的偏好
+     */
+    @JsonProperty("preferences")
+    private String preferences;
+
+    // 构造函数
+    public TripLeg() {}
+
+    public TripLeg(String destination, String startDate, String endDate, String preferences) {
+        this.destination = destination;
+        this.startDate = startDate;
+        this.endDate = endDate;
+        this.preferences = preferences;
+    }
+
+    // Getters and Setters
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public String getStartDate() {
+        return startDate;
+    }
+
+    public void setStartDate(String startDate) {
+        this.startDate = startDate;
+    }
+
+    public String getEndDate() {
+        return endDate;
+    }
+
+    public void setEndDate(String endDate) {
+        this.endDate = endDate;
+    }
+
+    public String getPreferences() {
+        return preferences;
+    }
+
+    public void setPreferences(String preferences) {
+        this.preferences = preferences;
+    }
+
+    @Override
+    public String toString() {
+        return "TripLeg{" +
+                "destination='" + destination + '\'' +
+                ", startDate='" + startDate + '\'' +
+                ", endDate='" + endDate + '\'' +
+                ", preferences='" + preferences + '\'' +
+                '}';
+    }
+}
@@ -1,10 +1,16 @@
 package com.aitravelplanner.model;
 
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.List;
+
 /**
  * 旅行规划请求模型
+ * 
+ * 多城市行程通过legs指定每段的目的地和日期，此时destination、startDate、endDate可省略，
+ * 分别取各段目的地的连接、第一段的开始日期和最后一段的结束日期
  */
 public class TripRequest {
     
@@ -34,6 +40,38 @@ public class TripRequest {
     @JsonProperty("preferences")
     private String preferences;
     
+    /**
+     * 生成方式：pipeline（预算、行程、推荐三次调用）或 consolidated（一次调用），为空时使用 app.workflow.generation
+     */
+    @Pattern(regexp = "pipeline|consolidated", message = "生成方式只能是pipeline或consolidated")
+    @JsonProperty("generation")
+    private String generation;
+    
+    /**
+     * 服务等级：fast（本地预算 + 缓存或一次精简调用）、balanced 或 detailed（完整工具流），为空时使用 app.workflow.modes.default-mode
+     */
+    @Pattern(regexp = "fast|balanced|detailed", message = "服务等级只能是fast、balanced或detailed")
+    @JsonProperty("mode")
+    private String mode;
+    
+    /**
+     * AI调用的优先级：interactive（默认）、batch（批量规划等后台任务）或 prewarm（预热），排队时交互请求优先
+     */
+    @Pattern(regexp = "interactive|batch|prewarm", message = "优先级只能是interactive、batch或prewarm")
+    @JsonProperty("priority")
+    private String priority;
+    
+    /**
+     * 是否渐进式生成：先返回行程骨架和前几天的完整安排，其余天数稍后补全；为空时按 app.workflow.progressive 配置决定
+     */
+    @JsonProperty("progressive")
+    private Boolean progressive;
+    
+    @Valid
+    @Size(max = 6, message = "多城市行程最多6段")
+    @JsonProperty("legs")
+    private List<TripLeg> legs;
+    
     // 构造函数
     public TripRequest() {}
     
@@ -96,6 +134,66 @@ public class TripRequest {
         this.preferences = preferences;
     }
     
+    public String getGeneration() {
+        return generation;
+    }
+    
+    public void setGeneration(String generation) {
+        this.generation = generation;
+    }
+    
+    public String getMode() {
+        return mode;
+    }
+    
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+    
+    public String getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(String priority) {
+        this.priority = priority;
+    }
+    
+    public Boolean getProgressive() {
+        return progressive;
+    }
+    
+    public void setProgressive(Boolean progressive) {
+        this.progressive = progressive;
+    }
+    
+    public List<TripLeg> getLegs() {
+        return legs;
+    }
+    
+    public void setLegs(List<TripLeg> legs) {
+        this.legs = legs;
+        if (legs == null || legs.isEmpty()) {
+            return;
+        }
+        // 未单独指定时由各段推导，请求体中的字段顺序不影响结果
+        if (destination == null) {
+            destination = String.join(" → ", legs.stream().map(TripLeg::getDestination).toList());
+        }
+        if (startDate == null) {
+            startDate = legs.get(0).getStartDate();
+        }
+        if (endDate == null) {
+            endDate = legs.get(legs.size() - 1).getEndDate();
+        }
+    }
+    
+    /**
+     * 是否为多城市行程
+     */
+    public boolean hasLegs() {
+        return legs != null && !legs.isEmpty();
+    }
+    
     @Override
     public String toString() {
         return "TripRequest{" +
@@ -105,6 +203,11 @@ public class TripRequest {
                 ", budget=" + budget +
                 ", companions=" + companions +
                 ", preferences='" + preferences + '\'' +
+                (generation != null ? ", generation='" + generation + '\'' : "") +
+                (mode != null ? ", mode='" + mode + '\'' : "") +
+                (priority != null ? ", priority='" + priority + '\'' : "") +
+                (progressive != null ? ", progressive=" + progressive : "") +
+                (hasLegs() ? ", legs=" + legs : "") +
                 '}';
     }
 }
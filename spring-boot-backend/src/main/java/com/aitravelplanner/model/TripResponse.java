@@ -1,5 +1,7 @@
 package com.aitravelplanner.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
@@ -8,6 +10,9 @@ import java.util.List;
  */
 public class TripResponse {
     
+    @JsonProperty("planId")
+    private String planId;
+    
     @JsonProperty("totalBudget")
     private Integer totalBudget;
     
@@ -17,6 +22,40 @@ public class TripResponse {
     @JsonProperty("recommendations")
     private Recommendations recommendations;
     
+    /**
+     * AI输出被截断并经过修复时为true
+     */
+    @JsonProperty("truncated")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean truncated;
+    
+    /**
+     * 命中缓存时的类型：exact（完全相同的请求）、similar（相似请求）或shared（集群共享结果）
+     */
+    @JsonProperty("cacheHit")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String cacheHit;
+    
+    /**
+     * 相似命中时偏好的估算相似度
+     */
+    @JsonProperty("similarity")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double similarity;
+    
+    /**
+     * 多城市行程中各段的日期、天数范围和预算
+     */
+    @JsonProperty("legs")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<LegSummary> legs;
+    
+    /**
+     * 命中已过期的缓存条目时超出有效期的毫秒数，通过 X-Cache-Stale-Age 响应头返回
+     */
+    @JsonIgnore
+    private Long staleMillis;
+    
     // 构造函数
     public TripResponse() {}
     
@@ -27,6 +66,14 @@ public class TripResponse {
     }
     
     // Getters and Setters
+    public String getPlanId() {
+        return planId;
+    }
+    
+    public void setPlanId(String planId) {
+        this.planId = planId;
+    }
+    
     public Integer getTotalBudget() {
         return totalBudget;
     }
@@ -51,6 +98,46 @@ public class TripResponse {
         this.recommendations = recommendations;
     }
     
+    public Boolean getTruncated() {
+        return truncated;
+    }
+    
+    public void setTruncated(Boolean truncated) {
+        this.truncated = truncated;
+    }
+    
+    public Long getStaleMillis() {
+        return staleMillis;
+    }
+    
+    public void setStaleMillis(Long staleMillis) {
+        this.staleMillis = staleMillis;
+    }
+    
+    public String getCacheHit() {
+        return cacheHit;
+    }
+    
+    public void setCacheHit(String cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+    
+    public Double getSimilarity() {
+        return similarity;
+    }
+    
+    public void setSimilarity(Double similarity) {
+        this.similarity = similarity;
+    }
+    
+    public List<LegSummary> getLegs() {
+        return legs;
+    }
+    
+    public void setLegs(List<LegSummary> legs) {
+        this.legs = legs;
+    }
+    
     /**
      * 每日行程模型
      */
@@ -67,6 +154,13 @@ public class TripResponse {
         @JsonProperty("activities")
         private List<Activity> activities;
         
+        /**
+         * 渐进式行程中尚未生成活动安排时为true，可通过 GET /api/ai/plans/{planId}/days/{day} 获取
+         */
+        @JsonProperty("pending")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Boolean pending;
+        
         // 构造函数
         public DayItinerary() {}
         
@@ -109,6 +203,14 @@ public class TripResponse {
         public void setActivities(List<Activity> activities) {
             this.activities = activities;
         }
+        
+        public Boolean getPending() {
+            return pending;
+        }
+        
+        public void setPending(Boolean pending) {
+            this.pending = pending;
+        }
     }
     
     /**
@@ -194,4 +296,105 @@ public class TripResponse {
             this.tips = tips;
         }
     }
+    
+    /**
+     * 多城市行程中的一段
+     */
+    public static class LegSummary {
+        @JsonProperty("destination")
+        private String destination;
+        
+        @JsonProperty("startDate")
+        private String startDate;
+        
+        @JsonProperty("endDate")
+        private String endDate;
+        
+        /**
+         * 该段在合并行程中的第一天和最后一天（不含中转日）
+         */
+        @JsonProperty("fromDay")
+        private Integer fromDay;
+        
+        @JsonProperty("toDay")
+        private Integer toDay;
+        
+        @JsonProperty("budget")
+        private Integer budget;
+        
+        @JsonProperty("cacheHit")
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String cacheHit;
+        
+        // 构造函数
+        public LegSummary() {}
+        
+        public LegSummary(String destination, String startDate, String endDate,
+                          Integer fromDay, Integer toDay, Integer budget, String cacheHit) {
+            this.destination = destination;
+            this.startDate = startDate;
+            this.endDate = endDate;
+            this.fromDay = fromDay;
+            this.toDay = toDay;
+            this.budget = budget;
+            this.cacheHit = cacheHit;
+        }
+        
+        // Getters and Setters
+        public String getDestination() {
+            return destination;
+        }
+        
+        public void setDestination(String destination) {
+            this.destination = destination;
+        }
+        
+        public String getStartDate() {
+            return startDate;
+        }
+        
+        public void setStartDate(String startDate) {
+            this.startDate = startDate;
+        }
+        
+        public String getEndDate() {
+            return endDate;
+        }
+        
+        public void setEndDate(String endDate) {
+            this.endDate = endDate;
+        }
+        
+        public Integer getFromDay() {
+            return fromDay;
+        }
+        
+        public void setFromDay(Integer fromDay) {
+            this.fromDay = fromDay;
+        }
+        
+        public Integer getToDay() {
+            return toDay;
+        }
+        
+        public void setToDay(Integer toDay) {
+            this.toDay = toDay;
+        }
+        
+        public Integer getBudget() {
+            return budget;
+        }
+        
+        public void setBudget(Integer budget) {
+            this.budget = budget;
+        }
+        
+        public String getCacheHit() {
+            return cacheHit;
+        }
+        
+        public void setCacheHit(String cacheHit) {
+            this.cacheHit = cacheHit;
+        }
+    }
 }
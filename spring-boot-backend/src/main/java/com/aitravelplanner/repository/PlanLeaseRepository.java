@@ -0,0 +1,58 @@
+package com.aitravelplanner.repository;
+
+import com.aitravelplanner.model.PlanLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 集群租约表访问
+ * 获取、接管、续约和释放均为单条语句，依赖数据库的主键约束和行锁保证原子性
+ */
+public interface PlanLeaseRepository extends JpaRepository<PlanLease, String> {
+
+    /**
+     * 插入新租约，键已存在时抛出 DataIntegrityViolationException
+     */
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO plan_lease (request_key, owner, token, acquired_at, expires_at) "
+            + "VALUES (:key, :owner, :token, :now, :expiresAt)", nativeQuery = true)
+    int insert(@Param("key") String key, @Param("owner") String owner, @Param("token") String token,
+               @Param("now") long now, @Param("expiresAt") long expiresAt);
+
+    /**
+     * 接管已过期的租约
+     *
+     * @return 接管成功时为1
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanLease l SET l.owner = :owner, l.token = :token, l.acquiredAt = :now, l.expiresAt = :expiresAt "
+            + "WHERE l.requestKey = :key AND l.expiresAt < :now")
+    int takeOver(@Param("key") String key, @Param("owner") String owner, @Param("token") String token,
+                 @Param("now") long now, @Param("expiresAt") long expiresAt);
+
+    /**
+     * 续约，租约已被接管时返回0
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE PlanLease l SET l.expiresAt = :expiresAt WHERE l.requestKey = :key AND l.token = :token")
+    int renew(@Param("key") String key, @Param("token") String token, @Param("expiresAt") long expiresAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PlanLease l WHERE l.requestKey = :key AND l.token = :token")
+    int release(@Param("key") String key, @Param("token") String token);
+
+    /**
+     * 清理过期租约（持有者崩溃且无人接管的）
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM PlanLease l WHERE l.expiresAt < :now")
+    int deleteExpired(@Param("now") long now);
+}
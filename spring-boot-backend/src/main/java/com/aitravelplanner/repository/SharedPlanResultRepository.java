@@ -0,0 +1,24 @@
+package com.aitravelplanner.repository;
+
+import com.aitravelplanner.model.SharedPlanResult;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+/**
+ * 集群共享结果表访问
+ */
+public interface SharedPlanResultRepository extends JpaRepository<SharedPlanResult, String> {
+
+    @Query("SELECT r FROM SharedPlanResult r WHERE r.requestKey = :key AND r.expiresAt >= :now")
+    Optional<SharedPlanResult> findLive(@Param("key") String key, @Param("now") long now);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM SharedPlanResult r WHERE r.expiresAt < :now")
+    int deleteExpired(@Param("now") long now);
+}
@@ -1,14 +1,15 @@
 package com.aitravelplanner.service;
 
-import org.springframework.ai.chat.ChatClient;
+import com.aitravelplanner.service.llm.AiTool;
+import com.aitravelplanner.service.llm.LlmRouter;
+import com.aitravelplanner.service.llm.PromptBudgeter;
+import com.aitravelplanner.service.llm.PromptTemplate;
 import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.*;
 
@@ -21,10 +22,57 @@ public class BudgetEstimationTool {
     
     private static final Logger logger = LoggerFactory.getLogger(BudgetEstimationTool.class);
     
+    /**
+     * 系统消息：角色、输出格式和分配要求，所有请求逐字节相同，可命中提供商的前缀缓存
+     */
+    private static final String SYSTEM_PROMPT = """
+        你是一个专业的旅行预算规划师。请为用户的旅行需求制定详细的预算分配方案。
+        
+        请按照以下格式返回JSON格式的预算分配：
+        {
+            "dailyBudget": 每日预算金额,
+            "budgetAllocation": {
+                "transportation": "交通费用占比和金额",
+                "accommodation": "住宿费用占比和金额", 
+                "dining": "餐饮费用占比和金额",
+                "attractions": "景点门票占比和金额",
+                "shopping": "购物费用占比和金额",
+                "miscellaneous": "其他费用占比和金额"
+            },
+            "costFactors": {
+                "destination": "目的地消费水平评估",
+                "season": "季节因素影响",
+                "groupSize": "人数对成本的影响"
+            },
+            "recommendations": "预算优化建议"
+        }
+        
+        要求：
+        1. 预算分配要合理，考虑目的地消费水平
+        2. 交通费用通常占30-40%
+        3. 住宿费用通常占25-35%
+        4. 餐饮费用通常占20-30%
+        5. 景点门票通常占10-20%
+        6. 购物和其他费用占剩余部分
+        7. 给出具体的优化建议
+        """;
+    
+    private static final PromptTemplate USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 旅行天数：{days}天
+        - 同行人数：{companions}人
+        - 总预算：{totalBudget}元人民币
+        """);
+    
     @Autowired
-    private ChatClient chatClient;
+    private LlmRouter llmRouter;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private LenientJsonParser lenientJsonParser;
+    
+    @Autowired
+    private PromptBudgeter promptBudgeter;
     
     /**
      * 估算旅行预算分配
@@ -42,13 +90,11 @@ public class BudgetEstimationTool {
         
         try {
             // 构建预算估算提示词
-            String prompt = buildBudgetPrompt(totalBudget, days, companions, destination);
-            logger.info("📝 预算估算提示词: {}", prompt);
+            Prompt prompt = buildBudgetPrompt(totalBudget, days, companions, destination);
             
             // 调用AI进行预算估算
-            ChatResponse response = chatClient.call(new Prompt(new UserMessage(prompt)));
+            ChatResponse response = llmRouter.call(AiTool.BUDGET, prompt);
             String aiResponse = response.getResult().getOutput().getContent();
-            logger.info("🤖 AI预算估算响应: {}", aiResponse);
             
             // 解析AI响应
             Map<String, Object> budgetResult = parseBudgetResponse(aiResponse, totalBudget, days);
@@ -63,69 +109,53 @@ public class BudgetEstimationTool {
         }
     }
     
+    /**
+     * 按总预算和天数在本地估算预算分配，不调用AI
+     * 
+     * 与AI失败时的默认分配相同，但不标记为兜底结果，可以写入缓存
+     */
+    public Map<String, Object> estimateLocally(Integer totalBudget, Integer days) {
+        Map<String, Object> result = getDefaultBudgetAllocation(totalBudget, days);
+        result.remove("fallback");
+        result.put("local", true);
+        return result;
+    }
+    
     /**
      * 构建预算估算提示词
      */
-    private String buildBudgetPrompt(Integer totalBudget, Integer days, 
+    private Prompt buildBudgetPrompt(Integer totalBudget, Integer days,
                                    Integer companions, String destination) {
-        return String.format("""
-            你是一个专业的旅行预算规划师。请为以下旅行需求制定详细的预算分配方案：
-            
-            旅行信息：
-            - 目的地：%s
-            - 旅行天数：%d天
-            - 同行人数：%d人
-            - 总预算：%d元人民币
-            
-            请按照以下格式返回JSON格式的预算分配：
-            {
-                "dailyBudget": 每日预算金额,
-                "budgetAllocation": {
-                    "transportation": "交通费用占比和金额",
-                    "accommodation": "住宿费用占比和金额", 
-                    "dining": "餐饮费用占比和金额",
-                    "attractions": "景点门票占比和金额",
-                    "shopping": "购物费用占比和金额",
-                    "miscellaneous": "其他费用占比和金额"
-                },
-                "costFactors": {
-                    "destination": "目的地消费水平评估",
-                    "season": "季节因素影响",
-                    "groupSize": "人数对成本的影响"
-                },
-                "recommendations": "预算优化建议"
-            }
-            
-            要求：
-            1. 预算分配要合理，考虑目的地消费水平
-            2. 交通费用通常占30-40%
-            3. 住宿费用通常占25-35%
-            4. 餐饮费用通常占20-30%
-            5. 景点门票通常占10-20%
-            6. 购物和其他费用占剩余部分
-            7. 给出具体的优化建议
-            """, destination, days, companions, totalBudget);
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("days", days);
+        values.put("companions", companions);
+        values.put("totalBudget", totalBudget);
+        return promptBudgeter.build(AiTool.BUDGET, SYSTEM_PROMPT, USER_PROMPT, values, "destination");
     }
     
     /**
      * 解析AI预算响应
      */
     private Map<String, Object> parseBudgetResponse(String aiResponse, Integer totalBudget, Integer days) {
-        try {
-            // 尝试解析JSON响应
-            Map<String, Object> result = objectMapper.readValue(aiResponse, Map.class);
-            
-            // 验证必要字段
-            if (!result.containsKey("dailyBudget")) {
-                result.put("dailyBudget", totalBudget / days);
-            }
-            
-            return result;
-            
-        } catch (Exception e) {
-            logger.warn("AI响应解析失败，使用默认预算分配: {}", e.getMessage());
+        // 宽松解析，被截断的响应保留已完整生成的字段
+        LenientJsonParser.Result parsed = lenientJsonParser.parse(AiTool.BUDGET, aiResponse);
+        if (parsed.value() == null) {
+            logger.warn("AI响应解析失败，使用默认预算分配");
             return getDefaultBudgetAllocation(totalBudget, days);
         }
+        
+        Map<String, Object> result = parsed.value();
+        
+        // 验证必要字段
+        if (!result.containsKey("dailyBudget")) {
+            result.put("dailyBudget", totalBudget / days);
+        }
+        if (parsed.truncated()) {
+            result.put("truncated", true);
+        }
+        
+        return result;
     }
     
     /**
@@ -133,6 +163,7 @@ public class BudgetEstimationTool {
      */
     private Map<String, Object> getDefaultBudgetAllocation(Integer totalBudget, Integer days) {
         Map<String, Object> result = new HashMap<>();
+        result.put("fallback", true);
         result.put("dailyBudget", totalBudget / days);
         
         Map<String, Object> allocation = new HashMap<>();
@@ -0,0 +1,134 @@
+package com.aitravelplanner.service;
+
+import java.util.*;
+
+/**
+ * 行程的紧凑输出格式
+ *
+ * 模型按短键和位置数组输出行程，不必为每个活动重复 "activity"、"desc"、"location"、"category" 等键名：
+ * 每天为 {"d": 天数序号, "t": 标题, "b": 每日预算, "a": [活动...]}，
+ * 每个活动为 ["时间", "活动名称", "描述", "地点", 费用, 类型代码]。
+ * 解析后在本地展开为完整字段，之后的校验、修复和响应构建与原格式相同；
+ * 模型仍按完整字段输出的天和活动原样保留
+ */
+final class CompactItinerary {
+
+    /**
+     * 活动类型代码，下标即代码，需与提示词中的代码说明一致
+     */
+    private static final String[] CATEGORIES = {"其他", "景点", "餐饮", "文化", "购物", "娱乐", "休闲", "交通", "住宿"};
+
+    /**
+     * 位置数组中各列对应的完整字段
+     */
+    private static final String[] ACTIVITY_FIELDS = {"time", "activity", "desc", "location", "cost", "category"};
+
+    private CompactItinerary() {}
+
+    /**
+     * 就地展开行程中按紧凑格式输出的天
+     *
+     * @param result 含days数组的解析结果
+     * @return 按紧凑格式输出的天数
+     */
+    static int expand(Map<String, Object> result) {
+        if (result == null || !(result.get("days") instanceof List<?> days)) {
+            return 0;
+        }
+        int expanded = 0;
+        for (Object item : days) {
+            if (item instanceof Map<?, ?> raw && expandDay((Map<String, Object>) raw)) {
+                expanded++;
+            }
+        }
+        return expanded;
+    }
+
+    private static boolean expandDay(Map<String, Object> day) {
+        rename(day, "d", "day");
+        rename(day, "t", "title");
+        rename(day, "b", "dailyBudget");
+        if (!(day.get("a") instanceof List<?> compact)) {
+            return false;
+        }
+        day.remove("a");
+        if (day.containsKey("activities")) {
+            return false;
+        }
+        List<Object> activities = new ArrayList<>(compact.size());
+        for (Object item : compact) {
+            activities.add(item instanceof List<?> columns ? expandActivity(columns) : item);
+        }
+        day.put("activities", activities);
+        return true;
+    }
+
+    private static Map<String, Object> expandActivity(List<?> columns) {
+        Map<String, Object> activity = new HashMap<>();
+        for (int i = 0; i < ACTIVITY_FIELDS.length && i < columns.size(); i++) {
+            if (columns.get(i) != null) {
+                activity.put(ACTIVITY_FIELDS[i], columns.get(i));
+            }
+        }
+        activity.computeIfPresent("category", (key, code) -> categoryOf(code));
+        return activity;
+    }
+
+    /**
+     * 类型代码转换为类型名称；模型直接输出名称时原样保留
+     */
+    private static Object categoryOf(Object code) {
+        Integer index = code instanceof Number || code instanceof String text && text.matches("\\d+")
+                ? ItineraryValidator.toInteger(code) : null;
+        if (index == null) {
+            return code;
+        }
+        return index < CATEGORIES.length ? CATEGORIES[index] : CATEGORIES[0];
+    }
+
+    private static void rename(Map<String, Object> day, String shortKey, String key) {
+        Object value = day.remove(shortKey);
+        if (value != null) {
+            day.putIfAbsent(key, value);
+        }
+    }
+
+    /**
+     * 将完整字段的行程转换为紧凑格式，用于对比两种格式的输出长度
+     */
+    static Map<String, Object> compact(Map<String, Object> itinerary) {
+        Map<String, Object> result = new LinkedHashMap<>(itinerary);
+        List<Object> days = new ArrayList<>();
+        for (Object item : (List<?>) itinerary.get("days")) {
+            Map<String, Object> day = (Map<String, Object>) item;
+            Map<String, Object> compactDay = new LinkedHashMap<>();
+            compactDay.put("d", day.getOrDefault("day", days.size() + 1));
+            compactDay.put("t", day.get("title"));
+            compactDay.put("b", day.get("dailyBudget"));
+            List<Object> activities = new ArrayList<>();
+            for (Object activity : (List<?>) day.get("activities")) {
+                Map<String, Object> fields = (Map<String, Object>) activity;
+                List<Object> columns = new ArrayList<>();
+                for (String field : ACTIVITY_FIELDS) {
+                    Object value = fields.get(field);
+                    if ("category".equals(field)) {
+                        value = codeOf(value);
+                    } else if (value == null) {
+                        value = "cost".equals(field) ? 0 : "";
+                    }
+                    columns.add(value);
+                }
+                activities.add(columns);
+            }
+            compactDay.put("a", activities);
+            days.add(compactDay);
+        }
+        result.put("days", days);
+        return result;
+    }
+
+    private static int codeOf(Object category) {
+        int index = Arrays.asList(CATEGORIES).indexOf(category);
+        return Math.max(index, 0);
+    }
+}
@@ -0,0 +1,383 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.model.TripRequest;
+import com.aitravelplanner.service.cache.PlanCache;
+import com.aitravelplanner.service.llm.AiTool;
+import com.aitravelplanner.service.llm.LlmRouter;
+import com.aitravelplanner.service.llm.PromptBudgeter;
+import com.aitravelplanner.service.llm.PromptTemplate;
+import com.aitravelplanner.service.llm.RequestContext;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并生成工具
+ * 一次AI调用同时生成预算分配、每日行程和推荐内容，目的地信息只发送一次，推荐内容可以参考完整行程；
+ * 结果拆分为与三个独立工具相同结构的预算、行程和推荐结果，缺失或无法使用的部分再交给对应工具单独生成。
+ *
+ * 本地预算模式（fast档位）下预算在本地估算，提示词只要求行程和推荐，推荐缺失时也只使用本地目录，保证只有一次AI调用
+ */
+@Service
+public class ConsolidatedPlanningTool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsolidatedPlanningTool.class);
+
+    /**
+     * itinerary.days数组所在深度，截断修复时只保留完整的天
+     */
+    private static final int COMPLETE_DAY_DEPTH = 3;
+
+    /**
+     * 行程放在最后：输出被截断时只损失末尾的天数，由行程修复补全，预算和推荐不受影响
+     */
+    private static final String SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求一次性完成预算分配、多日行程安排和个性化推荐。
+
+        请按照以下格式返回JSON，三个部分依次为预算、推荐和行程：
+        {
+            "budget": {
+                "dailyBudget": 每日预算金额,
+                "budgetAllocation": {
+                    "transportation": "交通费用占比和金额",
+                    "accommodation": "住宿费用占比和金额",
+                    "dining": "餐饮费用占比和金额",
+                    "attractions": "景点门票占比和金额",
+                    "shopping": "购物费用占比和金额",
+                    "miscellaneous": "其他费用占比和金额"
+                },
+                "recommendations": "预算优化建议"
+            },
+            "recommendations": {
+                "restaurants": ["餐厅名称 - 特色菜和推荐理由"],
+                "attractions": ["景点名称 - 游览亮点和最佳时间"],
+                "tips": ["实用贴士 - 具体建议和注意事项"],
+                "localInsights": ["当地文化洞察"]
+            },
+            "itinerary": {
+                "summary": "行程总体概述",
+                "days": [
+                    {
+                        "date": "YYYY-MM-DD",
+                        "title": "第X天：标题",
+                        "dailyBudget": 每日预算金额,
+                        "activities": [
+                            {
+                                "time": "时间",
+                                "activity": "活动名称",
+                                "desc": "详细描述",
+                                "location": "地点",
+                                "cost": 预估费用,
+                                "category": "活动类型"
+                            }
+                        ]
+                    }
+                ]
+            }
+        }
+
+        要求：
+        1. 预算分配要合理：交通通常占30-40%，住宿25-35%，餐饮20-30%，景点门票10-20%
+        2. 每天的活动数量和描述详略遵循用户消息中的详细程度，合理安排交通和休息时间，第一天和最后一天考虑抵达和离开
+        3. 活动结合用户偏好和目的地特色，费用符合每日预算
+        4. 推荐的餐厅和景点与行程中的地点相呼应，各提供3-5项；贴士具体可操作
+        """;
+    
+    /**
+     * 本地预算模式的系统消息：预算已在本地估算，只生成推荐和行程，输出更短
+     */
+    private static final String COMPACT_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求一次性完成多日行程安排和推荐，内容简洁。
+        
+        请按照以下格式返回JSON，两个部分依次为推荐和行程：
+        {
+            "recommendations": {
+                "restaurants": ["餐厅名称 - 特色菜"],
+                "tips": ["实用贴士"]
+            },
+            "itinerary": {
+                "summary": "一句话概述",
+                "days": [
+                    {
+                        "date": "YYYY-MM-DD",
+                        "title": "第X天：标题",
+                        "dailyBudget": 每日预算金额,
+                        "activities": [
+                            {"time": "时间", "activity": "活动名称", "desc": "简短描述", "location": "地点", "cost": 预估费用}
+                        ]
+                    }
+                ]
+            }
+        }
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，第一天和最后一天考虑抵达和离开
+        2. 费用符合用户消息中的每日预算
+        3. 餐厅和贴士各提供3项
+        """;
+
+    /**
+     * 行程使用紧凑输出格式时的系统消息，行程部分按短键和位置数组输出，解析后由 {@link CompactItinerary} 展开
+     */
+    private static final String SHORT_KEY_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求一次性完成预算分配、多日行程安排和个性化推荐。
+
+        请按照以下格式返回JSON，三个部分依次为预算、推荐和行程，行程部分使用紧凑格式，不要输出其他键名：
+        {
+            "budget": {
+                "dailyBudget": 每日预算金额,
+                "budgetAllocation": {
+                    "transportation": "交通费用占比和金额",
+                    "accommodation": "住宿费用占比和金额",
+                    "dining": "餐饮费用占比和金额",
+                    "attractions": "景点门票占比和金额",
+                    "shopping": "购物费用占比和金额",
+                    "miscellaneous": "其他费用占比和金额"
+                },
+                "recommendations": "预算优化建议"
+            },
+            "recommendations": {
+                "restaurants": ["餐厅名称 - 特色菜和推荐理由"],
+                "attractions": ["景点名称 - 游览亮点和最佳时间"],
+                "tips": ["实用贴士 - 具体建议和注意事项"],
+                "localInsights": ["当地文化洞察"]
+            },
+            "itinerary": {
+                "summary": "行程总体概述",
+                "days": [
+                    {
+                        "d": 天数序号,
+                        "t": "第X天：标题",
+                        "b": 每日预算金额,
+                        "a": [
+                            ["时间", "活动名称", "详细描述", "地点", 预估费用, 类型代码]
+                        ]
+                    }
+                ]
+            }
+        }
+        类型代码：1景点 2餐饮 3文化 4购物 5娱乐 6休闲 7交通 8住宿 0其他
+
+        要求：
+        1. 预算分配要合理：交通通常占30-40%，住宿25-35%，餐饮20-30%，景点门票10-20%
+        2. 每天的活动数量和描述详略遵循用户消息中的详细程度，合理安排交通和休息时间，第一天和最后一天考虑抵达和离开
+        3. 活动结合用户偏好和目的地特色，费用符合每日预算
+        4. 推荐的餐厅和景点与行程中的地点相呼应，各提供3-5项；贴士具体可操作
+        """;
+
+    /**
+     * 本地预算模式且行程使用紧凑输出格式时的系统消息
+     */
+    private static final String SHORT_KEY_COMPACT_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求一次性完成多日行程安排和推荐，内容简洁。
+        
+        请按照以下格式返回JSON，两个部分依次为推荐和行程，行程部分使用紧凑格式，不要输出其他键名：
+        {
+            "recommendations": {
+                "restaurants": ["餐厅名称 - 特色菜"],
+                "tips": ["实用贴士"]
+            },
+            "itinerary": {
+                "summary": "一句话概述",
+                "days": [
+                    {
+                        "d": 天数序号,
+                        "t": "第X天：标题",
+                        "b": 每日预算金额,
+                        "a": [
+                            ["时间", "活动名称", "简短描述", "地点", 预估费用, 类型代码]
+                        ]
+                    }
+                ]
+            }
+        }
+        类型代码：1景点 2餐饮 3文化 4购物 5娱乐 6休闲 7交通 8住宿 0其他
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，第一天和最后一天考虑抵达和离开
+        2. 费用符合用户消息中的每日预算
+        3. 餐厅和贴士各提供3项
+        """;
+
+    private static final PromptTemplate USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 出发日期：{startDate}
+        - 返回日期：{endDate}
+        - 旅行天数：{days}天
+        - 同行人数：{companions}人
+        - 总预算：{budget}元人民币
+        - 每日预算：{dailyBudget}
+        - 用户偏好：{preferences}
+        - 详细程度：{detail}
+        """);
+
+    @Autowired
+    private LlmRouter llmRouter;
+
+    @Autowired
+    private LenientJsonParser lenientJsonParser;
+
+    @Autowired
+    private PromptBudgeter promptBudgeter;
+
+    @Autowired
+    private BudgetEstimationTool budgetEstimationTool;
+
+    @Autowired
+    private ItineraryPlanningTool itineraryPlanningTool;
+
+    @Autowired
+    private RecommendationExtractionTool recommendationExtractionTool;
+
+    /**
+     * 与单独的行程规划共用同一开关
+     */
+    @Value("${app.ai.itinerary.compact-schema:true}")
+    private boolean compactSchema;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder complete = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder compactDays = new LongAdder();
+    private final LongAdder budgetFallbacks = new LongAdder();
+    private final LongAdder itineraryFallbacks = new LongAdder();
+    private final LongAdder recommendationFallbacks = new LongAdder();
+    private final LongAdder callMillis = new LongAdder();
+
+    /**
+     * 一次调用生成完整的旅行规划
+     *
+     * @param request 旅行规划请求
+     * @param days 旅行天数
+     * @param localBudget 是否在本地估算预算，只让AI生成行程和推荐
+     * @return 预算、行程和推荐结果
+     */
+    public PlanCache.CachedPlan plan(TripRequest request, int days, boolean localBudget) {
+        logger.info("🧩 开始合并生成: 目的地={}, {}天{}", request.getDestination(), days, localBudget ? "（本地预算）" : "");
+        calls.increment();
+        Map<String, Object> localBudgetResult = localBudget
+                ? budgetEstimationTool.estimateLocally(request.getBudget(), days) : null;
+
+        Map<String, Object> result = null;
+        try {
+            Prompt prompt = buildPrompt(request, days, localBudgetResult);
+            long start = System.currentTimeMillis();
+            ChatResponse response = llmRouter.call(AiTool.CONSOLIDATED, prompt);
+            callMillis.add(System.currentTimeMillis() - start);
+            String aiResponse = response.getResult().getOutput().getContent();
+
+            LenientJsonParser.Result parsed = lenientJsonParser.parse(AiTool.CONSOLIDATED, aiResponse, COMPLETE_DAY_DEPTH);
+            result = parsed.value();
+            if (parsed.truncated()) {
+                truncated.increment();
+            }
+            if (result != null && result.get("itinerary") instanceof Map<?, ?> itinerary) {
+                if (compactSchema) {
+                    compactDays.add(CompactItinerary.expand((Map<String, Object>) itinerary));
+                }
+                if (parsed.truncated()) {
+                    ((Map<String, Object>) itinerary).put("truncated", true);
+                }
+            }
+        } catch (Exception e) {
+            logger.error("❌ 合并生成失败，改为分别调用各工具: {}", e.getMessage(), e);
+        }
+        if (result == null) {
+            failed.increment();
+            result = Map.of();
+        }
+
+        boolean whole = true;
+        Map<String, Object> budgetResult = localBudget ? localBudgetResult : section(result, "budget");
+        if (budgetResult == null || ItineraryValidator.toInteger(budgetResult.get("dailyBudget")) == null) {
+            budgetFallbacks.increment();
+            whole = false;
+            budgetResult = budgetEstimationTool.estimateBudget(
+                request.getBudget(), days, request.getCompanions(), request.getDestination());
+        }
+
+        Map<String, Object> itineraryResult = section(result, "itinerary");
+        if (itineraryResult == null || !(itineraryResult.get("days") instanceof List<?> generatedDays)
+                || generatedDays.isEmpty()) {
+            itineraryFallbacks.increment();
+            whole = false;
+            itineraryResult = itineraryPlanningTool.planItinerary(request.getDestination(), request.getStartDate(),
+                    request.getEndDate(), budgetResult, request.getPreferences());
+        } else {
+            // 与单独生成的行程一样校验天数，只对缺失或格式错误的天做定向修复
+            itineraryPlanningTool.completeItinerary(itineraryResult, request.getDestination(),
+                    request.getStartDate(), days, budgetResult.get("dailyBudget"), request.getPreferences());
+        }
+
+        Map<String, Object> recommendationsResult = section(result, "recommendations");
+        if (recommendationsResult == null || !(recommendationsResult.get("restaurants") instanceof List<?>)
+                || !(recommendationsResult.get("tips") instanceof List<?>)) {
+            recommendationFallbacks.increment();
+            whole = false;
+            recommendationsResult = localBudget
+                ? recommendationExtractionTool.extractLocally(
+                    request.getDestination(), request.getPreferences(), itineraryResult)
+                : recommendationExtractionTool.extractRecommendations(
+                    request.getDestination(), request.getPreferences(), itineraryResult);
+        }
+
+        if (whole) {
+            complete.increment();
+        }
+        logger.info("✅ 合并生成完成: {}", whole ? "一次调用得到全部结果" : "部分结果由各工具单独生成");
+        return new PlanCache.CachedPlan(request, budgetResult, itineraryResult, recommendationsResult);
+    }
+
+    /**
+     * 获取合并生成统计
+     */
+    public Map<String, Object> getStats() {
+        long total = calls.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("calls", total);
+        result.put("complete", complete.sum());
+        result.put("completeRate", total == 0 ? 0.0 : (double) complete.sum() / total);
+        result.put("failed", failed.sum());
+        result.put("truncated", truncated.sum());
+        result.put("compactSchema", compactSchema);
+        result.put("compactDays", compactDays.sum());
+        result.put("budgetFallbacks", budgetFallbacks.sum());
+        result.put("itineraryFallbacks", itineraryFallbacks.sum());
+        result.put("recommendationFallbacks", recommendationFallbacks.sum());
+        result.put("avgCallMillis", total == 0 ? 0 : callMillis.sum() / total);
+        return result;
+    }
+
+    /**
+     * 构建合并生成提示词
+     */
+    private Prompt buildPrompt(TripRequest request, int days, Map<String, Object> localBudgetResult) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", request.getDestination());
+        values.put("startDate", request.getStartDate());
+        values.put("endDate", request.getEndDate());
+        values.put("days", days);
+        values.put("companions", request.getCompanions());
+        values.put("budget", request.getBudget());
+        values.put("dailyBudget", localBudgetResult != null ? localBudgetResult.get("dailyBudget") + "元" : "由预算分配得出");
+        values.put("preferences", request.getPreferences());
+        values.put("detail", RequestContext.current().detail());
+        String systemPrompt = localBudgetResult != null
+                ? (compactSchema ? SHORT_KEY_COMPACT_SYSTEM_PROMPT : COMPACT_SYSTEM_PROMPT)
+                : (compactSchema ? SHORT_KEY_SYSTEM_PROMPT : SYSTEM_PROMPT);
+        return promptBudgeter.build(AiTool.CONSOLIDATED, systemPrompt, USER_PROMPT, values, "destination", "preferences");
+    }
+
+    private Map<String, Object> section(Map<String, Object> result, String key) {
+        return result.get(key) instanceof Map<?, ?> section ? new HashMap<>((Map<String, Object>) section) : null;
+    }
+}
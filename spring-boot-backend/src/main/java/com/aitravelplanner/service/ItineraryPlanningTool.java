@@ -1,19 +1,24 @@
 package com.aitravelplanner.service;
 
-import org.springframework.ai.chat.ChatClient;
+import com.aitravelplanner.service.llm.AiTool;
+import com.aitravelplanner.service.llm.CallScope;
+import com.aitravelplanner.service.llm.LlmRouter;
+import com.aitravelplanner.service.llm.PromptBudgeter;
+import com.aitravelplanner.service.llm.PromptTemplate;
+import com.aitravelplanner.service.llm.RequestContext;
 import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 行程规划工具
@@ -25,9 +30,246 @@ public class ItineraryPlanningTool {
     private static final Logger logger = LoggerFactory.getLogger(ItineraryPlanningTool.class);
     
     @Autowired
-    private ChatClient chatClient;
+    private LlmRouter llmRouter;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private LenientJsonParser lenientJsonParser;
+    
+    @Autowired
+    private PromptBudgeter promptBudgeter;
+    
+    /**
+     * days数组所在深度，截断修复时只保留完整的天
+     */
+    private static final int COMPLETE_DAY_DEPTH = 2;
+    
+    /**
+     * 修复调用中携带的相邻天数上限，控制提示词长度
+     */
+    private static final int MAX_REPAIR_CONTEXT_DAYS = 4;
+    
+    /**
+     * 未提供有效的每日预算时默认安排使用的每日预算
+     */
+    private static final int DEFAULT_DAILY_BUDGET = 2000;
+    
+    /**
+     * 系统消息只包含角色、输出格式和要求，逐字节不变，请求相关的信息都放在用户消息中
+     */
+    private static final String SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求制定详细的多日行程安排。
+        
+        请按照以下格式返回JSON格式的行程安排：
+        {
+            "summary": "行程总体概述",
+            "days": [
+                {
+                    "date": "YYYY-MM-DD",
+                    "title": "第X天：标题",
+                    "dailyBudget": 每日预算金额,
+                    "activities": [
+                        {
+                            "time": "时间",
+                            "activity": "活动名称",
+                            "desc": "详细描述",
+                            "location": "地点",
+                            "cost": 预估费用,
+                            "category": "活动类型"
+                        }
+                    ]
+                }
+            ]
+        }
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，避免过于紧凑
+        2. 合理安排时间，考虑交通和休息时间
+        3. 结合用户偏好和目的地特色
+        4. 包含文化体验、美食、景点、购物等多样化活动
+        5. 第一天和最后一天考虑抵达和离开的时间
+        6. 活动描述要具体，包含实用信息
+        7. 费用估算要合理，符合预算分配
+        8. 考虑当地交通、天气、开放时间等实际因素
+        """;
+    
+    /**
+     * 紧凑输出格式的系统消息：短键和位置数组，类型用代码表示，解析后由 {@link CompactItinerary} 展开
+     */
+    private static final String COMPACT_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的旅行需求制定详细的多日行程安排。
+        
+        请按照以下紧凑格式返回JSON格式的行程安排，不要输出其他键名：
+        {
+            "summary": "行程总体概述",
+            "days": [
+                {
+                    "d": 天数序号,
+                    "t": "第X天：标题",
+                    "b": 每日预算金额,
+                    "a": [
+                        ["时间", "活动名称", "详细描述", "地点", 预估费用, 类型代码]
+                    ]
+                }
+            ]
+        }
+        类型代码：1景点 2餐饮 3文化 4购物 5娱乐 6休闲 7交通 8住宿 0其他
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，避免过于紧凑
+        2. 合理安排时间，考虑交通和休息时间
+        3. 结合用户偏好和目的地特色
+        4. 包含文化体验、美食、景点、购物等多样化活动
+        5. 第一天和最后一天考虑抵达和离开的时间
+        6. 活动描述要具体，包含实用信息
+        7. 费用估算要合理，符合预算分配
+        8. 考虑当地交通、天气、开放时间等实际因素
+        """;
+    
+    private static final PromptTemplate USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 出发日期：{startDate}
+        - 返回日期：{endDate}
+        - 旅行天数：{days}天
+        - 用户偏好：{preferences}
+        - 每日预算：{dailyBudget}元
+        - 详细程度：{detail}
+        """);
+    
+    /**
+     * 骨架与完整行程共用系统消息，只在用户消息中限定需要详细安排的天数
+     */
+    private static final PromptTemplate SKELETON_USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 出发日期：{startDate}
+        - 返回日期：{endDate}
+        - 旅行天数：{days}天
+        - 用户偏好：{preferences}
+        - 每日预算：{dailyBudget}元
+        - 详细程度：{detail}
+        
+        本次只详细安排前{detailedDays}天：这几天给出完整的activities；
+        之后每天只给出日期和体现当天主题的标题，活动为空数组，稍后再补全。
+        """);
+    
+    private static final String DAYS_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。用户调整了已有行程，请只为指定的天数重新生成安排，其余天数保持不变。
+        
+        请按照以下格式返回JSON格式的行程安排，days中只包含需要生成的天数：
+        {
+            "days": [
+                {
+                    "day": 天数序号,
+                    "date": "YYYY-MM-DD",
+                    "title": "第X天：标题",
+                    "dailyBudget": 每日预算金额,
+                    "activities": [
+                        {
+                            "time": "时间",
+                            "activity": "活动名称",
+                            "desc": "详细描述",
+                            "location": "地点",
+                            "cost": 预估费用,
+                            "category": "活动类型"
+                        }
+                    ]
+                }
+            ]
+        }
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，避免过于紧凑
+        2. 与相邻天数自然衔接，考虑交通和休息时间
+        3. 不要重复相邻天数中的景点和活动
+        4. 费用估算要合理，符合每日预算
+        """;
+    
+    private static final String COMPACT_DAYS_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。用户调整了已有行程，请只为指定的天数重新生成安排，其余天数保持不变。
+        
+        请按照以下紧凑格式返回JSON格式的行程安排，days中只包含需要生成的天数，不要输出其他键名：
+        {
+            "days": [
+                {
+                    "d": 天数序号,
+                    "t": "第X天：标题",
+                    "b": 每日预算金额,
+                    "a": [
+                        ["时间", "活动名称", "详细描述", "地点", 预估费用, 类型代码]
+                    ]
+                }
+            ]
+        }
+        类型代码：1景点 2餐饮 3文化 4购物 5娱乐 6休闲 7交通 8住宿 0其他
+        
+        要求：
+        1. 每天的活动数量和描述详略遵循用户消息中的详细程度，避免过于紧凑
+        2. 与相邻天数自然衔接，考虑交通和休息时间
+        3. 不要重复相邻天数中的景点和活动
+        4. 费用估算要合理，符合每日预算
+        """;
+    
+    private static final PromptTemplate DAYS_USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 行程总天数：{totalDays}天
+        - 用户偏好：{preferences}
+        - 每日预算：{dailyBudget}元
+        - 详细程度：{detail}
+        
+        需要生成的天数：
+        {targets}
+        相邻天数的现有安排（仅作参考）：
+        {context}
+        调整要求：{instruction}
+        """);
+    
+    private static final String ACTIVITY_SYSTEM_PROMPT = """
+        你是一个专业的旅行规划师。请为用户的行程替换一个活动，其余活动保持不变。
+        
+        请按照以下格式返回JSON：
+        {
+            "activity": {
+                "time": "时间",
+                "activity": "活动名称",
+                "desc": "详细描述",
+                "location": "地点",
+                "cost": 预估费用,
+                "category": "活动类型"
+            }
+        }
+        
+        要求：
+        1. 新活动时间与原活动一致，与当天其他活动衔接合理
+        2. 不要与当天其他活动重复
+        """;
+    
+    private static final PromptTemplate ACTIVITY_USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 用户偏好：{preferences}
+        - 当天安排：{dayPlan}
+        - 需要替换的活动：{time} {activity}
+        - 用户要求：{hint}
+        """);
+    
+    @Value("${app.ai.repair.max-days:3}")
+    private int maxRepairDays;
+    
+    @Value("${app.ai.itinerary.compact-schema:true}")
+    private boolean compactSchema;
+    
+    private final ItineraryValidator itineraryValidator = new ItineraryValidator();
+    
+    private final LongAdder plansChecked = new LongAdder();
+    private final LongAdder plansRepaired = new LongAdder();
+    private final LongAdder repairedDays = new LongAdder();
+    private final LongAdder fallbackDays = new LongAdder();
+    private final LongAdder duplicateDays = new LongAdder();
+    private final LongAdder invalidDays = new LongAdder();
+    private final LongAdder compactDays = new LongAdder();
+    private final LongAdder verboseDays = new LongAdder();
     
     /**
      * 生成旅行行程安排
@@ -49,112 +291,463 @@ public class ItineraryPlanningTool {
             logger.info("📅 旅行天数: {} 天", days);
             
             // 构建行程规划提示词
-            String prompt = buildItineraryPrompt(destination, startDate, endDate, days, budgetResult, preferences);
-            logger.info("📝 行程规划提示词长度: {} 字符", prompt.length());
+            Prompt prompt = buildItineraryPrompt(destination, startDate, endDate, days, budgetResult, preferences);
             
             // 调用AI生成行程
-            ChatResponse response = chatClient.call(new Prompt(new UserMessage(prompt)));
+            ChatResponse response = llmRouter.call(AiTool.ITINERARY, prompt);
             String aiResponse = response.getResult().getOutput().getContent();
-            logger.info("🤖 AI行程规划响应长度: {} 字符", aiResponse.length());
             
-            // 解析AI响应
-            Map<String, Object> itineraryResult = parseItineraryResponse(aiResponse, days);
-            logger.info("✅ 行程规划完成: {} 天行程", itineraryResult.get("days"));
+            // 解析AI响应，并只针对缺失、重复或格式错误的天数做定向修复
+            Map<String, Object> itineraryResult = parseItineraryResponse(aiResponse);
+            repairItinerary(itineraryResult, destination, startDate, days, budgetResult.get("dailyBudget"), preferences);
+            logger.info("✅ 行程规划完成: {} 天行程", ((List<?>) itineraryResult.get("days")).size());
             
             return itineraryResult;
             
         } catch (Exception e) {
             logger.error("❌ 行程规划失败: {}", e.getMessage(), e);
             // 返回默认行程
-            return getDefaultItinerary(destination, startDate, endDate);
+            return getDefaultItinerary(destination, startDate, endDate, budgetResult.get("dailyBudget"));
         }
     }
     
     /**
-     * 构建行程规划提示词
+     * 生成行程骨架：所有天的标题，以及前detailedDays天的完整安排
+     * 
+     * 其余天数只有日期和标题，标记为pending，由 ProgressiveDayFiller 在后台或用户查看时逐天补全
+     * 
+     * @param detailedDays 需要立即生成完整安排的天数
+     * @return 行程结果，包含未完成的天时带有progressive标记
      */
-    private String buildItineraryPrompt(String destination, String startDate, String endDate, 
-                                      int days, Map<String, Object> budgetResult, String preferences) {
-        return String.format("""
-            你是一个专业的旅行规划师。请为以下旅行需求制定详细的多日行程安排：
-            
-            旅行信息：
-            - 目的地：%s
-            - 出发日期：%s
-            - 返回日期：%s
-            - 旅行天数：%d天
-            - 用户偏好：%s
-            - 每日预算：%s元
-            
-            请按照以下格式返回JSON格式的行程安排：
-            {
-                "summary": "行程总体概述",
-                "days": [
-                    {
-                        "date": "YYYY-MM-DD",
-                        "title": "第X天：标题",
-                        "dailyBudget": 每日预算金额,
-                        "activities": [
-                            {
-                                "time": "时间",
-                                "activity": "活动名称",
-                                "desc": "详细描述",
-                                "location": "地点",
-                                "cost": 预估费用,
-                                "category": "活动类型"
-                            }
-                        ]
-                    }
-                ]
+    public Map<String, Object> planSkeleton(String destination, String startDate, String endDate,
+                                          Map<String, Object> budgetResult, String preferences, int detailedDays) {
+        logger.info("🗺️ 开始生成行程骨架: 目的地={}, 日期={} 到 {}, 详细安排前{}天",
+                   destination, startDate, endDate, detailedDays);
+        
+        try {
+            int days = calculateTripDays(startDate, endDate);
+            LocalDate start = LocalDate.parse(startDate);
+            Prompt prompt = buildSkeletonPrompt(destination, startDate, endDate, days, budgetResult,
+                                                preferences, detailedDays);
+            ChatResponse response = llmRouter.call(AiTool.ITINERARY, prompt);
+            String aiResponse = response.getResult().getOutput().getContent();
+            
+            Map<String, Object> itineraryResult = parseItineraryResponse(aiResponse);
+            List<?> rawDays = itineraryResult.get("days") instanceof List<?> list ? list : List.of();
+            
+            // 先记下每天的标题，校验会丢弃没有活动的天
+            Map<Integer, String> titles = new HashMap<>();
+            for (int i = 0; i < rawDays.size(); i++) {
+                if (rawDays.get(i) instanceof Map<?, ?> raw && raw.get("title") instanceof String title
+                        && !title.isBlank()) {
+                    titles.putIfAbsent(itineraryValidator.slotOf((Map<String, Object>) raw, i, start), title);
+                }
             }
+            // 模型对后面的天也给出了完整安排时直接保留
+            SortedMap<Integer, Map<String, Object>> extraDays = new TreeMap<>(
+                    itineraryValidator.validate(rawDays, days, start).validDays.tailMap(detailedDays + 1));
             
-            要求：
-            1. 每天安排3-5个主要活动，避免过于紧凑
-            2. 合理安排时间，考虑交通和休息时间
-            3. 结合用户偏好和目的地特色
-            4. 包含文化体验、美食、景点、购物等多样化活动
-            5. 第一天和最后一天考虑抵达和离开的时间
-            6. 活动描述要具体详细，包含实用信息
-            7. 费用估算要合理，符合预算分配
-            8. 考虑当地交通、天气、开放时间等实际因素
-            """, destination, startDate, endDate, days, preferences, 
-            budgetResult.get("dailyBudget"));
+            Object summary = itineraryResult.get("summary");
+            repairItinerary(itineraryResult, destination, startDate, Math.min(detailedDays, days),
+                            budgetResult.get("dailyBudget"), preferences);
+            List<Map<String, Object>> ordered = (List<Map<String, Object>>) itineraryResult.get("days");
+            int pending = 0;
+            for (int day = detailedDays + 1; day <= days; day++) {
+                Map<String, Object> data = extraDays.get(day);
+                if (data == null) {
+                    data = new HashMap<>();
+                    data.put("title", titles.getOrDefault(day, "第" + day + "天：探索" + destination));
+                    data.put("dailyBudget", ItineraryValidator.toInteger(budgetResult.get("dailyBudget")));
+                    data.put("activities", new ArrayList<>());
+                    data.put("pending", true);
+                    pending++;
+                }
+                data.put("date", start.plusDays(day - 1).toString());
+                data.remove("day");
+                ordered.add(data);
+            }
+            itineraryResult.put("summary", summary != null ? summary : destination + days + "日行程");
+            if (pending > 0) {
+                itineraryResult.put("progressive", true);
+            }
+            logger.info("✅ 行程骨架完成: {} 天，其中{}天待补全", ordered.size(), pending);
+            return itineraryResult;
+            
+        } catch (Exception e) {
+            logger.error("❌ 行程骨架生成失败: {}", e.getMessage(), e);
+            return getDefaultItinerary(destination, startDate, endDate, budgetResult.get("dailyBudget"));
+        }
     }
     
     /**
-     * 解析AI行程响应
+     * 只重新生成指定天数的行程
+     * 
+     * 提示词中只携带目标天数和相邻天数的概要，耗时和token消耗与修改的天数成正比，而不是整个行程的长度
+     * 
+     * @param destination 目的地
+     * @param preferences 用户偏好
+     * @param dailyBudget 每日预算
+     * @param totalDays 修改后的行程总天数
+     * @param targetDates 需要生成的天数（从1开始）及其日期
+     * @param contextDays 相邻天数的现有安排，仅作为上下文
+     * @param instruction 本次修改的要求
+     * @return 按天数顺序排列的新行程
+     * @throws IllegalStateException AI调用失败，或未返回某个目标天数的有效安排；不使用默认安排替代用户的行程
+     */
+    public List<Map<String, Object>> planDays(String destination, String preferences, Object dailyBudget,
+                                            int totalDays, SortedMap<Integer, String> targetDates,
+                                            List<Map<String, Object>> contextDays, String instruction) {
+        SortedMap<Integer, Map<String, Object>> generated = generateDays(destination, preferences, dailyBudget,
+                totalDays, targetDates, contextDays, instruction);
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int day : targetDates.keySet()) {
+            Map<String, Object> data = generated.get(day);
+            if (data == null) {
+                throw new IllegalStateException("AI未返回第" + day + "天的有效安排");
+            }
+            result.add(data);
+        }
+        logger.info("✅ 增量规划完成: {} 天", result.size());
+        return result;
+    }
+    
+    /**
+     * 调用AI生成指定天数，只返回通过校验的天
+     * 
+     * @return 天数到安排的映射，日期已按目标天数设置；缺失或无效的天不在其中
+     * @throws IllegalStateException AI调用或响应解析失败
      */
-    private Map<String, Object> parseItineraryResponse(String aiResponse, int expectedDays) {
+    private SortedMap<Integer, Map<String, Object>> generateDays(String destination, String preferences,
+                                                                 Object dailyBudget, int totalDays,
+                                                                 SortedMap<Integer, String> targetDates,
+                                                                 List<Map<String, Object>> contextDays,
+                                                                 String instruction) {
+        logger.info("🗺️ 开始增量规划: 目的地={}, 重新生成第{}天", destination, targetDates.keySet());
+        
+        List<Object> generated = new ArrayList<>();
         try {
-            // 清理AI响应，移除可能的markdown标记
-            String cleanResponse = cleanAIResponse(aiResponse);
+            Prompt prompt = buildDaysPrompt(destination, preferences, dailyBudget, totalDays,
+                                            targetDates, contextDays, instruction);
             
-            // 尝试解析JSON响应
-            Map<String, Object> result = objectMapper.readValue(cleanResponse, Map.class);
+            ChatResponse response = llmRouter.call(AiTool.ITINERARY, CallScope.PARTIAL, prompt);
+            String aiResponse = response.getResult().getOutput().getContent();
             
-            // 验证行程天数
-            List<Map<String, Object>> days = (List<Map<String, Object>>) result.get("days");
-            if (days == null || days.size() != expectedDays) {
-                logger.warn("行程天数不匹配，期望{}天，实际{}天", expectedDays, days != null ? days.size() : 0);
+            Map<String, Object> result = lenientJsonParser.parse(AiTool.ITINERARY, aiResponse, COMPLETE_DAY_DEPTH).value();
+            expandCompactDays(result);
+            if (result != null && result.get("days") instanceof List<?> days) {
+                generated.addAll(days);
+            }
+        } catch (Exception e) {
+            logger.error("❌ 增量规划失败: {}", e.getMessage(), e);
+            throw new IllegalStateException("行程生成失败: " + e.getMessage(), e);
+        }
+        
+        // 未标注day和date的天数按返回顺序对应目标天数，再统一校验
+        List<Integer> targetDays = new ArrayList<>(targetDates.keySet());
+        for (int i = 0; i < generated.size() && i < targetDays.size(); i++) {
+            if (generated.get(i) instanceof Map<?, ?> raw && raw.get("day") == null && raw.get("date") == null) {
+                ((Map<String, Object>) raw).put("day", targetDays.get(i));
             }
+        }
+        LocalDate start = LocalDate.parse(targetDates.get(targetDates.firstKey()))
+                .minusDays(targetDates.firstKey() - 1);
+        ItineraryValidator.Result validation = itineraryValidator.validate(generated, totalDays, start);
+        
+        SortedMap<Integer, Map<String, Object>> result = new TreeMap<>();
+        for (Map.Entry<Integer, String> target : targetDates.entrySet()) {
+            Map<String, Object> day = validation.validDays.get(target.getKey());
+            if (day != null) {
+                day.put("date", target.getValue());
+                day.remove("day");
+                result.put(target.getKey(), day);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 替换某一天中的单个活动
+     * 
+     * @param destination 目的地
+     * @param preferences 用户偏好
+     * @param day 该天的现有安排
+     * @param activityIndex 要替换的活动下标（从0开始）
+     * @param hint 用户对新活动的要求，可为空
+     * @return 新活动
+     */
+    public Map<String, Object> planActivity(String destination, String preferences, Map<String, Object> day,
+                                          int activityIndex, String hint) {
+        List<Map<String, Object>> activities = (List<Map<String, Object>>) day.get("activities");
+        Map<String, Object> current = activities.get(activityIndex);
+        logger.info("🔄 开始替换活动: 目的地={}, 活动={}", destination, current.get("activity"));
+        
+        try {
+            Prompt prompt = buildActivityPrompt(destination, preferences, day, activityIndex, hint);
+            ChatResponse response = llmRouter.call(AiTool.ITINERARY, CallScope.PARTIAL, prompt);
+            String aiResponse = response.getResult().getOutput().getContent();
             
+            Map<String, Object> result = lenientJsonParser.parse(AiTool.ITINERARY, aiResponse).value();
+            if (result != null && result.get("activity") instanceof Map<?, ?> raw && raw.get("activity") != null) {
+                Map<String, Object> activity = (Map<String, Object>) raw;
+                activity.putIfAbsent("time", current.get("time"));
+                logger.info("✅ 活动替换完成: {}", activity.get("activity"));
+                return activity;
+            }
+            logger.warn("AI活动响应缺少activity字段，使用默认活动");
+        } catch (Exception e) {
+            logger.error("❌ 活动替换失败，使用默认活动: {}", e.getMessage(), e);
+        }
+        return createActivity((String) current.get("time"), "自由活动", "自由探索" + destination + "周边",
+                              (String) current.get("location"), 0, "休闲");
+    }
+    
+    /**
+     * 构建增量规划提示词
+     */
+    private Prompt buildDaysPrompt(String destination, String preferences, Object dailyBudget, int totalDays,
+                                 SortedMap<Integer, String> targetDates, List<Map<String, Object>> contextDays,
+                                 String instruction) {
+        StringBuilder targets = new StringBuilder();
+        targetDates.forEach((day, date) -> {
+            targets.append("- 第").append(day).append("天（").append(date).append("）");
+            if (day == 1) {
+                targets.append("：行程第一天，考虑抵达时间");
+            } else if (day == totalDays) {
+                targets.append("：行程最后一天，考虑离开时间");
+            }
+            targets.append('\n');
+        });
+        
+        StringBuilder context = new StringBuilder();
+        for (Map<String, Object> day : contextDays) {
+            context.append("- ").append(day.get("title")).append("：").append(summarizeActivities(day)).append('\n');
+        }
+        if (context.length() == 0) {
+            context.append("- 无\n");
+        }
+        
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("totalDays", totalDays);
+        values.put("preferences", preferences);
+        values.put("dailyBudget", dailyBudget);
+        values.put("targets", targets);
+        values.put("context", context);
+        values.put("instruction", instruction);
+        values.put("detail", RequestContext.current().detail());
+        // 超出上限时先压缩相邻天数的上下文，再压缩偏好和调整要求
+        return promptBudgeter.build(AiTool.ITINERARY, compactSchema ? COMPACT_DAYS_SYSTEM_PROMPT : DAYS_SYSTEM_PROMPT,
+                                    DAYS_USER_PROMPT, values,
+                                    "context", "preferences", "instruction");
+    }
+    
+    /**
+     * 构建活动替换提示词
+     */
+    private Prompt buildActivityPrompt(String destination, String preferences, Map<String, Object> day,
+                                     int activityIndex, String hint) {
+        Map<String, Object> current = ((List<Map<String, Object>>) day.get("activities")).get(activityIndex);
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("preferences", preferences);
+        values.put("dayPlan", summarizeActivities(day));
+        values.put("time", current.get("time"));
+        values.put("activity", current.get("activity"));
+        values.put("hint", hint != null && !hint.isBlank() ? hint : "换一个不同类型的活动");
+        return promptBudgeter.build(AiTool.ITINERARY, ACTIVITY_SYSTEM_PROMPT, ACTIVITY_USER_PROMPT, values,
+                                    "dayPlan", "preferences", "hint");
+    }
+    
+    /**
+     * 将一天的活动概括为一行，用于提示词上下文
+     */
+    private String summarizeActivities(Map<String, Object> day) {
+        List<Map<String, Object>> activities = (List<Map<String, Object>>) day.get("activities");
+        if (activities == null || activities.isEmpty()) {
+            return "无安排";
+        }
+        StringJoiner joiner = new StringJoiner("、");
+        for (Map<String, Object> activity : activities) {
+            joiner.add(activity.get("time") + " " + activity.get("activity"));
+        }
+        return joiner.toString();
+    }
+    
+    /**
+     * 构建行程骨架提示词
+     */
+    private Prompt buildSkeletonPrompt(String destination, String startDate, String endDate, int days,
+                                     Map<String, Object> budgetResult, String preferences, int detailedDays) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("startDate", startDate);
+        values.put("endDate", endDate);
+        values.put("days", days);
+        values.put("preferences", preferences);
+        values.put("dailyBudget", budgetResult.get("dailyBudget"));
+        values.put("detail", RequestContext.current().detail());
+        values.put("detailedDays", detailedDays);
+        return promptBudgeter.build(AiTool.ITINERARY, systemPrompt(), SKELETON_USER_PROMPT, values, "preferences");
+    }
+    
+    /**
+     * 构建行程规划提示词
+     */
+    private Prompt buildItineraryPrompt(String destination, String startDate, String endDate,
+                                      int days, Map<String, Object> budgetResult, String preferences) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("startDate", startDate);
+        values.put("endDate", endDate);
+        values.put("days", days);
+        values.put("preferences", preferences);
+        values.put("dailyBudget", budgetResult.get("dailyBudget"));
+        values.put("detail", RequestContext.current().detail());
+        return promptBudgeter.build(AiTool.ITINERARY, systemPrompt(), USER_PROMPT, values, "preferences");
+    }
+    
+    private String systemPrompt() {
+        return compactSchema ? COMPACT_SYSTEM_PROMPT : SYSTEM_PROMPT;
+    }
+    
+    /**
+     * 解析AI行程响应
+     * 
+     * 响应被截断时只保留完整的天，缺失的天数和解析失败时的空days由后续修复阶段按正确的目的地和日期补全
+     */
+    private Map<String, Object> parseItineraryResponse(String aiResponse) {
+        LenientJsonParser.Result parsed = lenientJsonParser.parse(AiTool.ITINERARY, aiResponse, COMPLETE_DAY_DEPTH);
+        if (parsed.value() == null) {
+            logger.warn("AI响应解析失败，交由修复阶段补全");
+            Map<String, Object> result = new HashMap<>();
+            result.put("days", new ArrayList<>());
             return result;
+        }
+        
+        Map<String, Object> result = parsed.value();
+        expandCompactDays(result);
+        if (parsed.truncated()) {
+            result.put("truncated", true);
+        }
+        return result;
+    }
+    
+    /**
+     * 将紧凑格式的天展开为完整字段，并统计模型未按紧凑格式输出的天数
+     */
+    private void expandCompactDays(Map<String, Object> result) {
+        if (!compactSchema || result == null || !(result.get("days") instanceof List<?> days)) {
+            return;
+        }
+        int expanded = CompactItinerary.expand(result);
+        compactDays.add(expanded);
+        verboseDays.add(days.size() - expanded);
+    }
+    
+    /**
+     * 校验并修复由其他途径（合并生成模式）得到的行程，规则与 planItinerary 相同
+     */
+    void completeItinerary(Map<String, Object> itineraryResult, String destination, String startDate,
+                           int days, Object dailyBudget, String preferences) {
+        repairItinerary(itineraryResult, destination, startDate, days, dailyBudget, preferences);
+    }
+    
+    /**
+     * 校验并修复行程
+     * 
+     * 找出缺失、重复和格式错误的天数，用一次小的定向调用只重新生成这些天并合并回原行程；
+     * 需修复的天数超过 app.ai.repair.max-days 时不再调用AI，直接使用默认安排。
+     * 修复调用失败或仍缺少的天同样使用默认安排，此时行程带有fallback标记
+     */
+    private void repairItinerary(Map<String, Object> itineraryResult, String destination, String startDate,
+                               int expectedDays, Object dailyBudget, String preferences) {
+        LocalDate start = LocalDate.parse(startDate);
+        ItineraryValidator.Result validation = itineraryValidator.validate(
+                itineraryResult.get("days"), expectedDays, start);
+        plansChecked.increment();
+        duplicateDays.add(validation.duplicates);
+        invalidDays.add(validation.invalid);
+        
+        SortedMap<Integer, Map<String, Object>> days = new TreeMap<>(validation.validDays);
+        if (!validation.isComplete()) {
+            logger.warn("⚠️ 行程天数不匹配，期望{}天，需修复第{}天（重复{}、格式错误{}、超出范围{}）",
+                       expectedDays, validation.brokenDays, validation.duplicates,
+                       validation.invalid, validation.extras);
+            plansRepaired.increment();
             
-        } catch (Exception e) {
-            logger.warn("AI响应解析失败，使用默认行程: {}", e.getMessage());
-            return getDefaultItinerary("未知目的地", "2025-01-01", "2025-01-05");
+            SortedMap<Integer, String> targets = new TreeMap<>();
+            for (int day : validation.brokenDays) {
+                targets.put(day, start.plusDays(day - 1).toString());
+            }
+            
+            SortedMap<Integer, Map<String, Object>> repaired = new TreeMap<>();
+            if (targets.size() <= maxRepairDays) {
+                try {
+                    repaired = generateDays(destination, preferences, dailyBudget, expectedDays,
+                            targets, repairContext(validation), "补全原行程中缺失或格式错误的天数");
+                } catch (IllegalStateException e) {
+                    logger.warn("⚠️ 行程修复失败，使用默认安排: {}", e.getMessage());
+                }
+                repairedDays.add(repaired.size());
+            } else {
+                logger.warn("⚠️ 需修复{}天，超过上限{}天，使用默认安排", targets.size(), maxRepairDays);
+            }
+            // 修复不成功的天使用默认安排，并标记行程使用了兜底结果
+            for (Map.Entry<Integer, String> target : targets.entrySet()) {
+                Map<String, Object> data = repaired.get(target.getKey());
+                if (data == null) {
+                    fallbackDays.increment();
+                    data = defaultDay(destination, target.getKey(), target.getValue(), dailyBudget);
+                    itineraryResult.put("fallback", true);
+                }
+                days.put(target.getKey(), data);
+            }
+        }
+        
+        List<Map<String, Object>> ordered = new ArrayList<>();
+        days.forEach((day, data) -> {
+            data.put("date", start.plusDays(day - 1).toString());
+            data.remove("day");
+            ordered.add(data);
+        });
+        itineraryResult.put("days", ordered);
+        itineraryResult.putIfAbsent("summary", destination + expectedDays + "日行程");
+    }
+    
+    /**
+     * 取与待修复天数相邻的有效天数作为修复上下文
+     */
+    private List<Map<String, Object>> repairContext(ItineraryValidator.Result validation) {
+        SortedSet<Integer> neighbours = new TreeSet<>();
+        for (int day : validation.brokenDays) {
+            neighbours.add(day - 1);
+            neighbours.add(day + 1);
         }
+        List<Map<String, Object>> context = new ArrayList<>();
+        for (int day : neighbours) {
+            Map<String, Object> data = validation.validDays.get(day);
+            if (data != null && context.size() < MAX_REPAIR_CONTEXT_DAYS) {
+                context.add(data);
+            }
+        }
+        return context;
     }
     
     /**
-     * 清理AI响应
+     * 获取行程修复统计
      */
-    private String cleanAIResponse(String response) {
-        // 移除markdown代码块标记
-        response = response.replaceAll("```json", "").replaceAll("```", "");
-        // 移除可能的换行符和多余空格
-        response = response.trim();
-        return response;
+    public Map<String, Object> getRepairStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("plansChecked", plansChecked.sum());
+        result.put("plansRepaired", plansRepaired.sum());
+        result.put("repairedDays", repairedDays.sum());
+        result.put("fallbackDays", fallbackDays.sum());
+        result.put("duplicateDays", duplicateDays.sum());
+        result.put("invalidDays", invalidDays.sum());
+        result.put("compactSchema", compactSchema);
+        result.put("compactDays", compactDays.sum());
+        result.put("verboseDays", verboseDays.sum());
+        return result;
     }
     
     /**
@@ -173,9 +766,15 @@ public class ItineraryPlanningTool {
     
     /**
      * 获取默认行程
+     * 
+     * @param dailyBudget 行程的每日预算，活动费用按比例分配；无效时按2000元
      */
-    private Map<String, Object> getDefaultItinerary(String destination, String startDate, String endDate) {
+    private Map<String, Object> getDefaultItinerary(String destination, String startDate, String endDate,
+                                                    Object dailyBudget) {
+        Integer parsedBudget = ItineraryValidator.toInteger(dailyBudget);
+        int budget = parsedBudget != null && parsedBudget > 0 ? parsedBudget : DEFAULT_DAILY_BUDGET;
         Map<String, Object> result = new HashMap<>();
+        result.put("fallback", true);
         result.put("summary", "默认行程安排");
         
         List<Map<String, Object>> days = new ArrayList<>();
@@ -188,12 +787,12 @@ public class ItineraryPlanningTool {
             Map<String, Object> day = new HashMap<>();
             day.put("date", currentDate.toString());
             day.put("title", "第" + dayCount + "天：探索" + destination);
-            day.put("dailyBudget", 2000);
+            day.put("dailyBudget", budget);
             
             List<Map<String, Object>> activities = new ArrayList<>();
-            activities.add(createActivity("上午", "城市探索", "游览当地著名景点", "市中心", 500, "景点"));
-            activities.add(createActivity("下午", "美食体验", "品尝当地特色美食", "特色餐厅", 300, "餐饮"));
-            activities.add(createActivity("晚上", "休闲时光", "体验当地夜生活", "商业区", 200, "娱乐"));
+            activities.add(createActivity("上午", "城市探索", "游览当地著名景点", "市中心", budget / 4, "景点"));
+            activities.add(createActivity("下午", "美食体验", "品尝当地特色美食", "特色餐厅", budget * 3 / 20, "餐饮"));
+            activities.add(createActivity("晚上", "休闲时光", "体验当地夜生活", "商业区", budget / 10, "娱乐"));
             
             day.put("activities", activities);
             days.add(day);
@@ -206,6 +805,16 @@ public class ItineraryPlanningTool {
         return result;
     }
     
+    /**
+     * 获取单天默认安排
+     */
+    private Map<String, Object> defaultDay(String destination, int dayNumber, String date, Object dailyBudget) {
+        Map<String, Object> day = ((List<Map<String, Object>>) getDefaultItinerary(destination, date, date, dailyBudget)
+                .get("days")).get(0);
+        day.put("title", "第" + dayNumber + "天：探索" + destination);
+        return day;
+    }
+    
     /**
      * 创建活动
      */
@@ -0,0 +1,132 @@
+package com.aitravelplanner.service;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * 行程校验器
+ * 将AI返回的每日行程归位到第1到N天，找出缺失、重复和格式错误的天数，并就地规范字段类型
+ */
+class ItineraryValidator {
+
+    /**
+     * 校验结果
+     */
+    static class Result {
+        /** 通过校验的天数，键为天数序号（从1开始） */
+        final SortedMap<Integer, Map<String, Object>> validDays = new TreeMap<>();
+        /** 需要修复的天数序号 */
+        final SortedSet<Integer> brokenDays = new TreeSet<>();
+        int duplicates;
+        int invalid;
+        int extras;
+
+        boolean isComplete() {
+            return brokenDays.isEmpty();
+        }
+    }
+
+    /**
+     * 校验AI返回的days数组
+     *
+     * @param rawDays AI返回的days字段，可能为null或任意类型
+     * @param expectedDays 期望天数
+     * @param startDate 行程开始日期，用于按date字段归位
+     */
+    Result validate(Object rawDays, int expectedDays, LocalDate startDate) {
+        Result result = new Result();
+        List<?> days = rawDays instanceof List<?> list ? list : Collections.emptyList();
+
+        for (int i = 0; i < days.size(); i++) {
+            if (!(days.get(i) instanceof Map<?, ?> raw)) {
+                result.invalid++;
+                continue;
+            }
+            Map<String, Object> day = (Map<String, Object>) raw;
+            int slot = slotOf(day, i, startDate);
+            if (slot < 1 || slot > expectedDays) {
+                result.extras++;
+            } else if (result.validDays.containsKey(slot)) {
+                result.duplicates++;
+            } else if (!normalize(day, slot)) {
+                result.invalid++;
+            } else {
+                result.validDays.put(slot, day);
+            }
+        }
+
+        for (int slot = 1; slot <= expectedDays; slot++) {
+            if (!result.validDays.containsKey(slot)) {
+                result.brokenDays.add(slot);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 确定一天行程对应的天数：优先使用date字段，其次day字段，最后使用数组位置
+     */
+    int slotOf(Map<String, Object> day, int index, LocalDate startDate) {
+        if (day.get("date") instanceof String date && startDate != null) {
+            try {
+                return (int) ChronoUnit.DAYS.between(startDate, LocalDate.parse(date)) + 1;
+            } catch (DateTimeParseException e) {
+                // 日期格式不规范时退回其他方式
+            }
+        }
+        Integer dayNumber = toInteger(day.get("day"));
+        return dayNumber != null ? dayNumber : index + 1;
+    }
+
+    /**
+     * 规范一天行程的字段类型，无法使用时返回false
+     */
+    private boolean normalize(Map<String, Object> day, int slot) {
+        if (!(day.get("activities") instanceof List<?> rawActivities)) {
+            return false;
+        }
+        List<Map<String, Object>> activities = new ArrayList<>();
+        for (Object item : rawActivities) {
+            if (item instanceof Map<?, ?> raw && isText(raw.get("activity"))) {
+                Map<String, Object> activity = (Map<String, Object>) raw;
+                activity.put("activity", String.valueOf(activity.get("activity")));
+                activity.put("time", activity.get("time") != null ? String.valueOf(activity.get("time")) : "");
+                activity.put("desc", activity.get("desc") != null ? String.valueOf(activity.get("desc")) : "");
+                activities.add(activity);
+            }
+        }
+        if (activities.isEmpty()) {
+            return false;
+        }
+        day.put("activities", activities);
+
+        if (!isText(day.get("title"))) {
+            day.put("title", "第" + slot + "天");
+        }
+        day.put("dailyBudget", toInteger(day.get("dailyBudget")));
+        return true;
+    }
+
+    private boolean isText(Object value) {
+        return value != null && !String.valueOf(value).isBlank();
+    }
+
+    /**
+     * 将AI返回的数值（可能为整数、小数或带单位的字符串）转换为整数
+     */
+    static Integer toInteger(Object value) {
+        if (value instanceof Number number) {
+            return number.intValue();
+        }
+        if (value instanceof String text) {
+            try {
+                return (int) Double.parseDouble(text.replaceAll("[^0-9.]", ""));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+}
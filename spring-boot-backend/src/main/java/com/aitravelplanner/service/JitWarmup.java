@@ -0,0 +1,134 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.model.TripRequest;
+import com.aitravelplanner.model.TripResponse;
+import com.aitravelplanner.service.llm.AiTool;
+import com.aitravelplanner.service.poi.PoiCatalog;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * JIT预热
+ *
+ * 应用就绪前用录制的AI响应反复回放解析、校验、本地推荐、响应构建和序列化代码，让首批真实请求走已编译的代码。
+ * 预热不调用AI，使用独立的解析器实例，不写入行程存储、缓存和运行指标
+ */
+@Component
+public class JitWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(JitWarmup.class);
+
+    @Autowired
+    private TripOrchestratorService tripOrchestratorService;
+
+    @Autowired
+    private PoiCatalog poiCatalog;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    @Value("${app.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.warmup.location:classpath:warmup/recorded-plans.json}")
+    private String location;
+
+    @Value("${app.warmup.iterations:2000}")
+    private int iterations;
+
+    @Value("${app.warmup.max-millis:10000}")
+    private long maxMillis;
+
+    /**
+     * 录制的一次规划：请求和三个工具的AI原始响应
+     */
+    private record RecordedPlan(TripRequest request, String budget, String itinerary, String recommendations) {
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        List<RecordedPlan> plans;
+        try {
+            plans = load();
+        } catch (Exception e) {
+            logger.warn("⚠️ 预热数据加载失败，跳过JIT预热: {}", e.getMessage());
+            return;
+        }
+        if (plans.isEmpty()) {
+            return;
+        }
+
+        LenientJsonParser parser = new LenientJsonParser();
+        ItineraryValidator validator = new ItineraryValidator();
+        long start = System.currentTimeMillis();
+        int completed = 0;
+        try {
+            while (completed < iterations && System.currentTimeMillis() - start < maxMillis) {
+                replay(plans.get(completed % plans.size()), parser, validator);
+                completed++;
+            }
+        } catch (Exception e) {
+            logger.warn("⚠️ JIT预热中断: {}", e.getMessage());
+        }
+        logger.info("🔥 JIT预热完成: 回放{}次，耗时{}ms", completed, System.currentTimeMillis() - start);
+    }
+
+    private void replay(RecordedPlan plan, LenientJsonParser parser, ItineraryValidator validator) throws Exception {
+        TripRequest request = plan.request();
+        Map<String, Object> budget = parser.parse(AiTool.BUDGET, plan.budget()).value();
+        Map<String, Object> itinerary = parser.parse(AiTool.ITINERARY, plan.itinerary(), 2).value();
+        Map<String, Object> recommendations = parser.parse(AiTool.RECOMMENDATION, plan.recommendations()).value();
+        // 截断修复路径，直接调用避免每次回放都输出告警日志
+        parser.salvage(parser.clean(plan.itinerary().substring(0, plan.itinerary().length() * 2 / 3)), 2);
+
+        // 紧凑输出格式的展开路径
+        CompactItinerary.expand(CompactItinerary.compact(itinerary));
+        
+        List<?> days = (List<?>) itinerary.get("days");
+        validator.validate(days, days.size(), LocalDate.parse(request.getStartDate()));
+        poiCatalog.findCity(request.getDestination()).ifPresent(city -> city.recommend(
+            "restaurant", request.getPreferences(), city.findMentioned(List.of(plan.itinerary())), 4, 3.0, 5));
+
+        TripResponse response = tripOrchestratorService.buildTripResponse(request, budget, itinerary, recommendations);
+        objectMapper.writeValueAsBytes(response);
+    }
+
+    /**
+     * 加载录制数据，AI响应按模型常见的markdown代码块格式还原为文本
+     */
+    private List<RecordedPlan> load() throws Exception {
+        List<RecordedPlan> plans = new ArrayList<>();
+        try (InputStream input = resourceLoader.getResource(location).getInputStream()) {
+            for (JsonNode node : objectMapper.readTree(input)) {
+                plans.add(new RecordedPlan(
+                    objectMapper.treeToValue(node.get("request"), TripRequest.class),
+                    asResponse(node.get("budget")),
+                    asResponse(node.get("itinerary")),
+                    asResponse(node.get("recommendations"))));
+            }
+        }
+        return plans;
+    }
+
+    private String asResponse(JsonNode node) throws Exception {
+        return "```json\n" + objectMapper.writerWithDefaultPrettyPrinter().writeValueAsString(node) + "\n```";
+    }
+}
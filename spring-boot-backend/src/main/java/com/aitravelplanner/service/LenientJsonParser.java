@@ -0,0 +1,179 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.service.llm.AiTool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 宽松JSON解析器
+ * 先按标准JSON解析AI响应；失败时（通常是max-tokens导致输出被截断）回退到最后一个完整元素，
+ * 丢弃末尾不完整的部分并补齐未闭合的括号，使已经生成的内容仍然可用
+ */
+@Component
+public class LenientJsonParser {
+
+    private static final Logger logger = LoggerFactory.getLogger(LenientJsonParser.class);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final Map<AiTool, LongAdder> parsed = new ConcurrentHashMap<>();
+    private final Map<AiTool, LongAdder> salvaged = new ConcurrentHashMap<>();
+    private final Map<AiTool, LongAdder> failed = new ConcurrentHashMap<>();
+
+    /**
+     * 解析结果
+     *
+     * @param value 解析出的JSON对象，无法解析时为null
+     * @param truncated 是否经过截断修复
+     */
+    public record Result(Map<String, Object> value, boolean truncated) {
+    }
+
+    /**
+     * 解析AI响应，不限制保留的嵌套深度
+     */
+    public Result parse(AiTool tool, String response) {
+        return parse(tool, response, Integer.MAX_VALUE);
+    }
+
+    /**
+     * 解析AI响应
+     *
+     * @param tool 产生响应的工具，用于统计
+     * @param response AI原始响应
+     * @param keepDepth 截断修复时只在该深度及以内的元素边界回退（根对象深度为1），
+     *                  更深的不完整元素整体丢弃，例如行程传2表示只保留完整的天
+     */
+    public Result parse(AiTool tool, String response, int keepDepth) {
+        String json = clean(response);
+        try {
+            Map<String, Object> value = objectMapper.readValue(json, Map.class);
+            counter(parsed, tool).increment();
+            return new Result(value, false);
+        } catch (Exception e) {
+            logger.debug("标准JSON解析失败，尝试截断修复: {}", e.getMessage());
+        }
+
+        String repaired = salvage(json, keepDepth);
+        if (repaired != null) {
+            try {
+                Map<String, Object> value = objectMapper.readValue(repaired, Map.class);
+                counter(salvaged, tool).increment();
+                logger.warn("⚠️ {}响应不完整，已截断修复: 原始{}字符，保留{}字符",
+                           tool.getToolName(), json.length(), repaired.length());
+                return new Result(value, true);
+            } catch (Exception e) {
+                logger.warn("截断修复后仍无法解析: {}", e.getMessage());
+            }
+        }
+        counter(failed, tool).increment();
+        return new Result(null, false);
+    }
+
+    /**
+     * 获取解析统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (AiTool tool : AiTool.values()) {
+            Map<String, Object> toolStats = new LinkedHashMap<>();
+            toolStats.put("parsed", counter(parsed, tool).sum());
+            toolStats.put("salvaged", counter(salvaged, tool).sum());
+            toolStats.put("failed", counter(failed, tool).sum());
+            result.put(tool.getKey(), toolStats);
+        }
+        return result;
+    }
+
+    /**
+     * 清理AI响应：移除markdown代码块标记，并从第一个左花括号开始截取
+     */
+    String clean(String response) {
+        String text = response.replaceAll("```json", "").replaceAll("```", "").trim();
+        int start = text.indexOf('{');
+        return start > 0 ? text.substring(start) : text;
+    }
+
+    /**
+     * 回退到最后一个安全位置并补齐括号
+     *
+     * 安全位置包括：深度不超过keepDepth的容器中元素之间的逗号之前、闭合后深度不超过keepDepth的括号之后、
+     * 深度不超过keepDepth的对象成员值（非数组元素）开始之后
+     *
+     * @return 修复后的JSON文本，找不到安全位置时返回null
+     */
+    String salvage(String json, int keepDepth) {
+        Deque<Character> stack = new ArrayDeque<>();
+        boolean inString = false;
+        boolean escaped = false;
+        int safeEnd = -1;
+        String safeClosers = null;
+
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> {
+                    // 数组中刚开始的元素不完整，不能作为安全位置；对象成员的值可以先以空容器保留
+                    boolean arrayElement = !stack.isEmpty() && stack.peek() == '[';
+                    stack.push(c);
+                    if (!arrayElement && stack.size() <= keepDepth) {
+                        safeEnd = i + 1;
+                        safeClosers = closers(stack);
+                    }
+                }
+                case '}', ']' -> {
+                    if (stack.isEmpty()) {
+                        return null;
+                    }
+                    stack.pop();
+                    if (stack.isEmpty()) {
+                        // 根对象已完整闭合，之后的内容无关
+                        return json.substring(0, i + 1);
+                    }
+                    if (stack.size() <= keepDepth) {
+                        safeEnd = i + 1;
+                        safeClosers = closers(stack);
+                    }
+                }
+                case ',' -> {
+                    if (stack.size() <= keepDepth) {
+                        safeEnd = i;
+                        safeClosers = closers(stack);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return safeEnd < 0 ? null : json.substring(0, safeEnd) + safeClosers;
+    }
+
+    private String closers(Deque<Character> stack) {
+        StringBuilder closers = new StringBuilder();
+        for (char open : stack) {
+            closers.append(open == '{' ? '}' : ']');
+        }
+        return closers.toString();
+    }
+
+    private LongAdder counter(Map<AiTool, LongAdder> counters, AiTool tool) {
+        return counters.computeIfAbsent(tool, k -> new LongAdder());
+    }
+}
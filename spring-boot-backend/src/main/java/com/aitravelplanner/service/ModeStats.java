@@ -0,0 +1,109 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.config.ModeProperties;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 各服务等级的耗时统计
+ * 记录请求数、缓存命中数和端到端耗时，分位数按最近的固定数量样本计算，与档位配置一起输出便于对照
+ */
+public class ModeStats {
+
+    /**
+     * 每个档位保留的最近耗时样本数
+     */
+    private static final int WINDOW = 1024;
+
+    private final Map<String, Tier> tiers = new LinkedHashMap<>();
+
+    public ModeStats() {
+        for (String mode : ModeProperties.MODES) {
+            tiers.put(mode, new Tier());
+        }
+    }
+
+    private static final class Tier {
+        final LongAdder requests = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder totalMillis = new LongAdder();
+        // 环形缓冲区在本对象锁内更新
+        final long[] samples = new long[WINDOW];
+        int next;
+        int size;
+        long maxMillis;
+
+        synchronized void add(long millis) {
+            samples[next] = millis;
+            next = (next + 1) % WINDOW;
+            size = Math.min(size + 1, WINDOW);
+            maxMillis = Math.max(maxMillis, millis);
+        }
+
+        synchronized long[] sorted() {
+            long[] copy = Arrays.copyOf(samples, size);
+            Arrays.sort(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * 记录一次请求
+     *
+     * @param cacheHit 是否由缓存或集群共享结果返回
+     * @param failed 是否失败
+     */
+    public void record(String mode, long millis, boolean cacheHit, boolean failed) {
+        Tier tier = tiers.get(mode);
+        if (tier == null) {
+            return;
+        }
+        tier.requests.increment();
+        if (failed) {
+            tier.failures.increment();
+            return;
+        }
+        if (cacheHit) {
+            tier.cacheHits.increment();
+        }
+        tier.totalMillis.add(millis);
+        tier.add(millis);
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Map<String, Object> snapshot(ModeProperties properties) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("defaultMode", properties.getDefaultMode());
+        tiers.forEach((mode, tier) -> {
+            long requests = tier.requests.sum();
+            long succeeded = requests - tier.failures.sum();
+            long[] sorted = tier.sorted();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("profile", properties.profile(mode).describe());
+            item.put("requests", requests);
+            item.put("failures", tier.failures.sum());
+            item.put("cacheHits", tier.cacheHits.sum());
+            item.put("cacheHitRate", succeeded <= 0 ? 0.0 : (double) tier.cacheHits.sum() / succeeded);
+            item.put("avgMillis", succeeded <= 0 ? 0 : tier.totalMillis.sum() / succeeded);
+            item.put("p50Millis", percentile(sorted, 0.50));
+            item.put("p95Millis", percentile(sorted, 0.95));
+            item.put("p99Millis", percentile(sorted, 0.99));
+            synchronized (tier) {
+                item.put("maxMillis", tier.maxMillis);
+            }
+            result.put(mode, item);
+        });
+        return result;
+    }
+
+    private long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(sorted.length * p) - 1)];
+    }
+}
@@ -0,0 +1,328 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.config.ModeProperties;
+import com.aitravelplanner.model.TripResponse;
+import com.aitravelplanner.service.llm.CallPriority;
+import com.aitravelplanner.service.llm.RequestContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 渐进式行程的逐天补全
+ *
+ * 渐进式生成的行程先只有骨架（每天的标题）和前几天的完整安排，其余天数标记为pending，由这里逐天生成：
+ * - 后台补全：行程保存后依次生成各待补全的天，优先生成用户最近查看的那天之后的天数
+ * - 按需生成：查看某一天时若仍未生成则立即生成并等待，同时预先生成其后的几天
+ *
+ * 同一天只生成一次，后台任务和查看请求共享同一个生成结果；生成期间行程被增量修改时以修改后的内容为准。
+ * 生成失败（AI调用失败、调度器在高负载时拒绝后台调用）时该天保持待补全，不写入默认安排，下次查看时重新生成
+ */
+@Service
+public class ProgressiveDayFiller {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProgressiveDayFiller.class);
+
+    @Autowired
+    private ItineraryPlanningTool itineraryPlanningTool;
+
+    @Autowired
+    private TripPlanStore tripPlanStore;
+
+    @Autowired
+    private ModeProperties modeProperties;
+
+    @Autowired
+    @Qualifier("dayFillExecutor")
+    private Executor dayFillExecutor;
+
+    @Value("${app.workflow.progressive.background-fill:true}")
+    private boolean backgroundFill;
+
+    @Value("${app.workflow.progressive.prefetch-ahead:1}")
+    private int prefetchAhead;
+
+    /**
+     * 各行程的补全状态，与行程存储使用相同的容量上限
+     */
+    private final Map<String, PlanFill> fills;
+
+    private final LongAdder started = new LongAdder();
+    private final LongAdder filledDays = new LongAdder();
+    private final LongAdder backgroundFills = new LongAdder();
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder readsReady = new LongAdder();
+    private final LongAdder readsWaited = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public ProgressiveDayFiller(@Value("${app.plans.max-size:10000}") int maxPlans) {
+        this.fills = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlanFill> eldest) {
+                return size() > maxPlans;
+            }
+        });
+    }
+
+    /**
+     * 单个行程的补全状态
+     */
+    private static final class PlanFill {
+        /** 正在生成的天数，键为天数序号（从1开始） */
+        final Map<Integer, CompletableFuture<Void>> inFlight = new HashMap<>();
+        /** 最近查看的天数，后台补全从其后开始 */
+        volatile int lastRead;
+    }
+
+    /**
+     * 开始补全新保存的渐进式行程
+     */
+    public void start(String planId) {
+        started.increment();
+        PlanFill fill = fills.computeIfAbsent(planId, id -> new PlanFill());
+        if (backgroundFill) {
+            fillNext(planId, fill);
+        }
+    }
+
+    /**
+     * 获取某一天的完整安排，尚未生成时立即生成并等待
+     *
+     * @param day 天数（从1开始）
+     * @throws NoSuchElementException 行程不存在
+     * @throws IllegalArgumentException 天数超出范围
+     */
+    public TripResponse.DayItinerary getDay(String planId, int day) {
+        TripPlanStore.StoredPlan plan = tripPlanStore.get(planId)
+                .orElseThrow(() -> new NoSuchElementException("行程不存在: " + planId));
+        List<Map<String, Object>> days = daysOf(plan);
+        if (day < 1 || day > days.size()) {
+            throw new IllegalArgumentException("天数超出范围: " + day);
+        }
+        if (!isPending(days.get(day - 1))) {
+            // 已生成的天同样代表阅读位置，补全尚未结束时据此调整后台顺序并预取后续几天
+            PlanFill active = fills.get(planId);
+            if (active != null) {
+                active.lastRead = day;
+                prefetch(planId, active, day);
+            }
+            readsReady.increment();
+            return TripOrchestratorService.toDayItinerary(day, days.get(day - 1));
+        }
+
+        PlanFill fill = fills.computeIfAbsent(planId, id -> new PlanFill());
+        fill.lastRead = day;
+        long start = System.currentTimeMillis();
+        CompletableFuture<Void> future = fillDay(planId, fill, day, true);
+        prefetch(planId, fill, day);
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            logger.warn("⚠️ 第{}天生成失败，返回待补全状态: planId={}, {}", day, planId, e.getMessage());
+        }
+        readsWaited.increment();
+        waitMillis.add(System.currentTimeMillis() - start);
+        return TripOrchestratorService.toDayItinerary(day, daysOf(plan).get(day - 1));
+    }
+
+    /**
+     * 获取逐天补全统计
+     */
+    public Map<String, Object> getStats() {
+        long waited = readsWaited.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("plans", started.sum());
+        result.put("filledDays", filledDays.sum());
+        result.put("backgroundFills", backgroundFills.sum());
+        result.put("prefetched", prefetched.sum());
+        result.put("readsReady", readsReady.sum());
+        result.put("readsWaited", waited);
+        result.put("avgWaitMillis", waited == 0 ? 0 : waitMillis.sum() / waited);
+        result.put("failures", failures.sum());
+        result.put("activePlans", fills.size());
+        return result;
+    }
+
+    /**
+     * 后台补全：生成下一个待补全的天，完成后继续下一个，全部完成后清理补全状态
+     */
+    private void fillNext(String planId, PlanFill fill) {
+        Optional<TripPlanStore.StoredPlan> plan = tripPlanStore.get(planId);
+        int next = plan.map(p -> nextPending(daysOf(p), fill.lastRead)).orElse(0);
+        if (next == 0) {
+            fills.remove(planId);
+            logger.info("✅ 渐进式行程补全完成: planId={}", planId);
+            return;
+        }
+        backgroundFills.increment();
+        fillDay(planId, fill, next, false).whenComplete((ignored, error) -> {
+            if (error != null) {
+                logger.warn("⚠️ 后台补全暂停，其余天数在查看时生成: planId={}, {}", planId, error.getMessage());
+                return;
+            }
+            fillNext(planId, fill);
+        });
+    }
+
+    /**
+     * 预先生成所查看天数之后的几天
+     */
+    private void prefetch(String planId, PlanFill fill, int day) {
+        tripPlanStore.get(planId).ifPresent(plan -> {
+            List<Map<String, Object>> days = daysOf(plan);
+            for (int next = day + 1; next <= Math.min(day + prefetchAhead, days.size()); next++) {
+                if (isPending(days.get(next - 1))) {
+                    prefetched.increment();
+                    fillDay(planId, fill, next, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 生成某一天，该天正在生成时返回已有的结果
+     *
+     * 查看请求触发的生成按交互请求调度，后台补全和预取按后台任务调度
+     *
+     * @param inline 是否为用户正在等待的查看请求；线程池已满时在当前线程生成，否则放弃
+     */
+    private CompletableFuture<Void> fillDay(String planId, PlanFill fill, int day, boolean inline) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (fill.inFlight) {
+            CompletableFuture<Void> existing = fill.inFlight.putIfAbsent(day, future);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        // 查看请求和后台线程都不带原规划请求的上下文，按行程的服务等级重新创建
+        String mode = tripPlanStore.get(planId).map(plan -> plan.getRequest().getMode()).orElse(null);
+        RequestContext context = RequestContext.forMode(modeProperties, mode,
+                inline ? CallPriority.INTERACTIVE : CallPriority.BATCH);
+        Runnable task = () -> {
+            try {
+                RequestContext.callWith(context, () -> {
+                    generateDay(planId, day);
+                    return null;
+                });
+                complete(fill, day, future, null);
+            } catch (Exception e) {
+                failures.increment();
+                logger.error("❌ 第{}天补全失败: planId={}, {}", day, planId, e.getMessage(), e);
+                complete(fill, day, future, e);
+            }
+        };
+        try {
+            dayFillExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (inline) {
+                task.run();
+            } else {
+                complete(fill, day, future, e);
+            }
+        }
+        return future;
+    }
+
+    private void complete(PlanFill fill, int day, CompletableFuture<Void> future, Exception error) {
+        synchronized (fill.inFlight) {
+            fill.inFlight.remove(day, future);
+        }
+        if (error == null) {
+            future.complete(null);
+        } else {
+            future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * 按骨架中的标题生成某一天的活动，携带前后两天作为上下文
+     *
+     * @throws IllegalStateException 生成失败，该天保持待补全
+     */
+    private void generateDay(String planId, int day) {
+        TripPlanStore.StoredPlan plan = tripPlanStore.get(planId)
+                .orElseThrow(() -> new NoSuchElementException("行程不存在: " + planId));
+        List<Map<String, Object>> days = daysOf(plan);
+        if (day > days.size() || !isPending(days.get(day - 1))) {
+            return;
+        }
+        Map<String, Object> skeleton = days.get(day - 1);
+        String date = (String) skeleton.get("date");
+        String title = (String) skeleton.get("title");
+        String destination = skeleton.get("destination") instanceof String city
+                ? city : plan.getRequest().getDestination();
+
+        List<Map<String, Object>> context = new ArrayList<>();
+        for (int neighbour : new int[]{day - 1, day + 1}) {
+            if (neighbour >= 1 && neighbour <= days.size() && !isPending(days.get(neighbour - 1))) {
+                context.add(days.get(neighbour - 1));
+            }
+        }
+        SortedMap<Integer, String> target = new TreeMap<>(Map.of(day, date));
+        Map<String, Object> generated = itineraryPlanningTool.planDays(
+            destination, plan.getRequest().getPreferences(), skeleton.get("dailyBudget"), days.size(),
+            target, context, "按行程骨架安排第" + day + "天，当天主题为“" + title + "”").get(0);
+        // 生成成功的天保留骨架中的标题和城市，与已返回给用户的内容一致
+        generated.put("title", title);
+        if (skeleton.containsKey("destination")) {
+            generated.put("destination", destination);
+        }
+
+        synchronized (plan) {
+            List<Map<String, Object>> current = new ArrayList<>(daysOf(plan));
+            if (day > current.size() || !isPending(current.get(day - 1))
+                    || !date.equals(current.get(day - 1).get("date"))) {
+                logger.info("ℹ️ 第{}天在补全期间已被修改，丢弃补全结果: planId={}", day, planId);
+                return;
+            }
+            current.set(day - 1, generated);
+            Map<String, Object> itineraryResult = new HashMap<>(plan.getItineraryResult());
+            itineraryResult.put("days", current);
+            if (current.stream().noneMatch(ProgressiveDayFiller::isPending)) {
+                itineraryResult.remove("progressive");
+            }
+            TripResponse response = plan.getResponse();
+            List<TripResponse.DayItinerary> responseDays = new ArrayList<>(response.getDays());
+            responseDays.set(day - 1, TripOrchestratorService.toDayItinerary(day, generated));
+            response.setDays(responseDays);
+            plan.update(plan.getRequest(), itineraryResult, response);
+        }
+        filledDays.increment();
+        logger.info("🧩 第{}天补全完成: planId={}", day, planId);
+    }
+
+    /**
+     * 从指定天数之后开始查找下一个待补全的天，找不到时回到开头
+     *
+     * @return 天数（从1开始），没有待补全的天时为0
+     */
+    private static int nextPending(List<Map<String, Object>> days, int after) {
+        for (int i = 0; i < days.size(); i++) {
+            int day = (after + i) % days.size() + 1;
+            if (isPending(days.get(day - 1))) {
+                return day;
+            }
+        }
+        return 0;
+    }
+
+    private static List<Map<String, Object>> daysOf(TripPlanStore.StoredPlan plan) {
+        return (List<Map<String, Object>>) plan.getItineraryResult().get("days");
+    }
+
+    static boolean isPending(Map<String, Object> day) {
+        return Boolean.TRUE.equals(day.get("pending"));
+    }
+}
@@ -1,30 +1,98 @@
 package com.aitravelplanner.service;
 
-import org.springframework.ai.chat.ChatClient;
+import com.aitravelplanner.config.PoiProperties;
+import com.aitravelplanner.service.llm.AiTool;
+import com.aitravelplanner.service.llm.LlmRouter;
+import com.aitravelplanner.service.llm.PromptBudgeter;
+import com.aitravelplanner.service.llm.PromptTemplate;
+import com.aitravelplanner.service.poi.CityGuide;
+import com.aitravelplanner.service.poi.PoiCatalog;
+import com.aitravelplanner.service.poi.PointOfInterest;
 import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 推荐提取工具
- * 使用Spring AI从行程中提取餐厅推荐和实用贴士
+ * 目的地在本地景点目录中时，按偏好和行程地点直接从目录生成餐厅、景点推荐，AI只作为可选的补充；
+ * 否则使用Spring AI从行程中提取餐厅推荐和实用贴士
  */
 @Service
 public class RecommendationExtractionTool {
     
     private static final Logger logger = LoggerFactory.getLogger(RecommendationExtractionTool.class);
     
+    /**
+     * 系统消息：角色、输出格式和要求，所有请求逐字节相同，可命中提供商的前缀缓存
+     */
+    private static final String SYSTEM_PROMPT = """
+        你是一个专业的旅行顾问。请基于用户提供的旅行信息为旅行者提供个性化的推荐内容。
+        
+        请按照以下格式返回JSON格式的推荐内容：
+        {
+            "restaurants": [
+                "餐厅名称1 - 特色菜和推荐理由",
+                "餐厅名称2 - 特色菜和推荐理由",
+                "餐厅名称3 - 特色菜和推荐理由"
+            ],
+            "attractions": [
+                "景点名称1 - 游览亮点和最佳时间",
+                "景点名称2 - 游览亮点和最佳时间",
+                "景点名称3 - 游览亮点和最佳时间"
+            ],
+            "tips": [
+                "实用贴士1 - 具体建议和注意事项",
+                "实用贴士2 - 具体建议和注意事项",
+                "实用贴士3 - 具体建议和注意事项"
+            ],
+            "localInsights": [
+                "当地文化洞察1",
+                "当地文化洞察2",
+                "当地文化洞察3"
+            ]
+        }
+        
+        要求：
+        1. 餐厅推荐要结合用户偏好，包含具体名称、特色菜和推荐理由
+        2. 景点推荐要包含游览亮点、最佳游览时间和实用信息
+        3. 实用贴士要具体可操作，包含交通、语言、文化、安全等方面
+        4. 当地文化洞察要深入，帮助旅行者更好地融入当地文化
+        5. 所有推荐都要与目的地和用户偏好高度匹配
+        6. 提供3-5个高质量的推荐项目
+        """;
+    
+    private static final PromptTemplate USER_PROMPT = PromptTemplate.compile("""
+        旅行信息：
+        - 目的地：{destination}
+        - 用户偏好：{preferences}
+        - 行程安排：{summary}
+        """);
+    
+    @Autowired
+    private LlmRouter llmRouter;
+    
     @Autowired
-    private ChatClient chatClient;
+    private LenientJsonParser lenientJsonParser;
     
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private PromptBudgeter promptBudgeter;
+    
+    @Autowired
+    private PoiCatalog poiCatalog;
+    
+    @Autowired
+    private PoiProperties poiProperties;
+    
+    private final LongAdder localAnswers = new LongAdder();
+    private final LongAdder llmAnswers = new LongAdder();
+    private final LongAdder enrichments = new LongAdder();
+    private final LongAdder localNanos = new LongAdder();
     
     /**
      * 提取推荐内容
@@ -38,18 +106,163 @@ public class RecommendationExtractionTool {
                                                     Map<String, Object> itineraryResult) {
         logger.info("💡 开始提取推荐内容: 目的地={}, 偏好={}", destination, preferences);
         
+        Optional<Map<String, Object>> local = recommendLocally(destination, preferences, itineraryResult);
+        if (local.isPresent()) {
+            return poiProperties.isLlmEnrich() ? enrich(local.get(), destination, preferences, itineraryResult)
+                                               : local.get();
+        }
+        
+        llmAnswers.increment();
+        return extractWithAi(destination, preferences, itineraryResult);
+    }
+    
+    /**
+     * 不调用AI的推荐：目的地在本地目录中时使用目录推荐，否则使用默认推荐
+     */
+    public Map<String, Object> extractLocally(String destination, String preferences,
+                                            Map<String, Object> itineraryResult) {
+        return recommendLocally(destination, preferences, itineraryResult)
+                .orElseGet(() -> getDefaultRecommendations(destination));
+    }
+    
+    /**
+     * 获取推荐来源统计
+     */
+    public Map<String, Object> getStats() {
+        long local = localAnswers.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("localAnswers", local);
+        result.put("llmAnswers", llmAnswers.sum());
+        result.put("enrichments", enrichments.sum());
+        result.put("avgLocalMicros", local == 0 ? 0 : localNanos.sum() / local / 1000);
+        return result;
+    }
+    
+    /**
+     * 使用本地目录生成推荐
+     * 
+     * 以行程中提到的地点为锚点，优先推荐周边且匹配偏好的餐厅和景点；目录中没有该城市或餐厅不足时返回空
+     */
+    private Optional<Map<String, Object>> recommendLocally(String destination, String preferences,
+                                                        Map<String, Object> itineraryResult) {
+        if (!poiProperties.isEnabled()) {
+            return Optional.empty();
+        }
+        Optional<CityGuide> city = poiCatalog.findCity(destination);
+        if (city.isEmpty()) {
+            return Optional.empty();
+        }
+        
+        long start = System.nanoTime();
+        CityGuide guide = city.get();
+        List<PointOfInterest> anchors = guide.findMentioned(itineraryTexts(itineraryResult));
+        int maxPriceLevel = maxPriceLevel(itineraryResult);
+        List<PointOfInterest> restaurants = guide.recommend(PointOfInterest.RESTAURANT, preferences, anchors,
+            maxPriceLevel, poiProperties.getRadiusKm(), poiProperties.getLimit());
+        if (restaurants.size() < poiProperties.getMinResults()) {
+            return Optional.empty();
+        }
+        List<PointOfInterest> attractions = guide.recommend(PointOfInterest.ATTRACTION, preferences, anchors,
+            maxPriceLevel, poiProperties.getRadiusKm(), poiProperties.getLimit());
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("restaurants", restaurants.stream().map(PointOfInterest::toRecommendation).toList());
+        result.put("attractions", attractions.stream().map(PointOfInterest::toRecommendation).toList());
+        result.put("tips", guide.getTips());
+        result.put("localInsights", guide.getInsights());
+        result.put("source", "catalog");
+        
+        long elapsed = System.nanoTime() - start;
+        localAnswers.increment();
+        localNanos.add(elapsed);
+        logger.info("✅ 本地目录推荐完成: 城市={}, 行程锚点{}个, 餐厅{}个, 景点{}个, 耗时{}微秒",
+                   guide.getName(), anchors.size(), restaurants.size(), attractions.size(), elapsed / 1000);
+        return Optional.of(result);
+    }
+    
+    /**
+     * 调用AI补充贴士和文化洞察，餐厅和景点保留本地推荐；AI失败时直接使用本地结果
+     */
+    private Map<String, Object> enrich(Map<String, Object> local, String destination, String preferences,
+                                       Map<String, Object> itineraryResult) {
+        Map<String, Object> ai = extractWithAi(destination, preferences, itineraryResult);
+        if (Boolean.TRUE.equals(ai.get("fallback"))) {
+            return local;
+        }
+        Map<String, Object> result = new HashMap<>(local);
+        if (ai.get("tips") instanceof List<?> tips && !tips.isEmpty()) {
+            result.put("tips", tips);
+        }
+        if (ai.get("localInsights") instanceof List<?> insights && !insights.isEmpty()) {
+            result.put("localInsights", insights);
+        }
+        result.put("source", "catalog+llm");
+        enrichments.increment();
+        return result;
+    }
+    
+    /**
+     * 行程中可能提到地点的文本：每日标题、活动名称、描述和地点
+     */
+    private List<String> itineraryTexts(Map<String, Object> itineraryResult) {
+        List<String> texts = new ArrayList<>();
+        if (!(itineraryResult.get("days") instanceof List<?> days)) {
+            return texts;
+        }
+        for (Object day : days) {
+            if (!(day instanceof Map<?, ?> dayData)) {
+                continue;
+            }
+            texts.add(String.valueOf(dayData.get("title")));
+            if (dayData.get("activities") instanceof List<?> activities) {
+                for (Object activity : activities) {
+                    if (activity instanceof Map<?, ?> activityData) {
+                        texts.add(String.valueOf(activityData.get("activity")));
+                        texts.add(String.valueOf(activityData.get("desc")));
+                        texts.add(String.valueOf(activityData.get("location")));
+                    }
+                }
+            }
+        }
+        return texts;
+    }
+    
+    /**
+     * 按行程平均每日预算估算可接受的消费水平
+     */
+    private int maxPriceLevel(Map<String, Object> itineraryResult) {
+        int total = 0;
+        int count = 0;
+        if (itineraryResult.get("days") instanceof List<?> days) {
+            for (Object day : days) {
+                if (day instanceof Map<?, ?> dayData && dayData.get("dailyBudget") instanceof Number budget) {
+                    total += budget.intValue();
+                    count++;
+                }
+            }
+        }
+        if (count == 0) {
+            return 4;
+        }
+        int average = total / count;
+        return average < 400 ? 2 : average < 1000 ? 3 : 4;
+    }
+    
+    /**
+     * 调用AI提取推荐内容
+     */
+    private Map<String, Object> extractWithAi(String destination, String preferences,
+                                             Map<String, Object> itineraryResult) {
         try {
             // 构建推荐提取提示词
-            String prompt = buildRecommendationPrompt(destination, preferences, itineraryResult);
-            logger.info("📝 推荐提取提示词长度: {} 字符", prompt.length());
+            Prompt prompt = buildRecommendationPrompt(destination, preferences, itineraryResult);
             
             // 调用AI提取推荐
-            ChatResponse response = chatClient.call(new Prompt(new UserMessage(prompt)));
+            ChatResponse response = llmRouter.call(AiTool.RECOMMENDATION, prompt);
             String aiResponse = response.getResult().getOutput().getContent();
-            logger.info("🤖 AI推荐提取响应长度: {} 字符", aiResponse.length());
             
             // 解析AI响应
-            Map<String, Object> recommendationResult = parseRecommendationResponse(aiResponse);
+            Map<String, Object> recommendationResult = parseRecommendationResponse(aiResponse, destination);
             logger.info("✅ 推荐提取完成: 餐厅{}个, 贴士{}个", 
                 ((List<?>) recommendationResult.get("restaurants")).size(),
                 ((List<?>) recommendationResult.get("tips")).size());
@@ -65,87 +278,44 @@ public class RecommendationExtractionTool {
     
     /**
      * 构建推荐提取提示词
+     * 
+     * 行程概述只作参考，是提示词中最长的可变部分，超出上限时优先裁剪
      */
-    private String buildRecommendationPrompt(String destination, String preferences,
+    private Prompt buildRecommendationPrompt(String destination, String preferences,
                                           Map<String, Object> itineraryResult) {
-        return String.format("""
-            你是一个专业的旅行顾问。请基于以下信息为旅行者提供个性化的推荐内容：
-            
-            旅行信息：
-            - 目的地：%s
-            - 用户偏好：%s
-            - 行程安排：%s
-            
-            请按照以下格式返回JSON格式的推荐内容：
-            {
-                "restaurants": [
-                    "餐厅名称1 - 特色菜和推荐理由",
-                    "餐厅名称2 - 特色菜和推荐理由",
-                    "餐厅名称3 - 特色菜和推荐理由"
-                ],
-                "attractions": [
-                    "景点名称1 - 游览亮点和最佳时间",
-                    "景点名称2 - 游览亮点和最佳时间",
-                    "景点名称3 - 游览亮点和最佳时间"
-                ],
-                "tips": [
-                    "实用贴士1 - 具体建议和注意事项",
-                    "实用贴士2 - 具体建议和注意事项",
-                    "实用贴士3 - 具体建议和注意事项"
-                ],
-                "localInsights": [
-                    "当地文化洞察1",
-                    "当地文化洞察2",
-                    "当地文化洞察3"
-                ]
-            }
-            
-            要求：
-            1. 餐厅推荐要结合用户偏好，包含具体名称、特色菜和推荐理由
-            2. 景点推荐要包含游览亮点、最佳游览时间和实用信息
-            3. 实用贴士要具体可操作，包含交通、语言、文化、安全等方面
-            4. 当地文化洞察要深入，帮助旅行者更好地融入当地文化
-            5. 所有推荐都要与目的地和用户偏好高度匹配
-            6. 提供3-5个高质量的推荐项目
-            """, destination, preferences, itineraryResult.get("summary"));
+        Map<String, Object> values = new HashMap<>();
+        values.put("destination", destination);
+        values.put("preferences", preferences);
+        values.put("summary", itineraryResult.get("summary"));
+        return promptBudgeter.build(AiTool.RECOMMENDATION, SYSTEM_PROMPT, USER_PROMPT, values,
+                                    "summary", "preferences");
     }
     
     /**
      * 解析AI推荐响应
      */
-    private Map<String, Object> parseRecommendationResponse(String aiResponse) {
-        try {
-            // 清理AI响应
-            String cleanResponse = cleanAIResponse(aiResponse);
-            
-            // 尝试解析JSON响应
-            Map<String, Object> result = objectMapper.readValue(cleanResponse, Map.class);
-            
-            // 验证必要字段
-            if (!result.containsKey("restaurants")) {
-                result.put("restaurants", Arrays.asList("当地特色餐厅"));
-            }
-            if (!result.containsKey("tips")) {
-                result.put("tips", Arrays.asList("提前了解当地文化和习俗"));
-            }
-            
-            return result;
-            
-        } catch (Exception e) {
-            logger.warn("AI推荐响应解析失败，使用默认推荐: {}", e.getMessage());
-            return getDefaultRecommendations("未知目的地");
+    private Map<String, Object> parseRecommendationResponse(String aiResponse, String destination) {
+        // 宽松解析，被截断的响应保留已完整生成的推荐项
+        LenientJsonParser.Result parsed = lenientJsonParser.parse(AiTool.RECOMMENDATION, aiResponse);
+        if (parsed.value() == null) {
+            logger.warn("AI推荐响应解析失败，使用默认推荐");
+            return getDefaultRecommendations(destination);
         }
-    }
-    
-    /**
-     * 清理AI响应
-     */
-    private String cleanAIResponse(String response) {
-        // 移除markdown代码块标记
-        response = response.replaceAll("```json", "").replaceAll("```", "");
-        // 移除可能的换行符和多余空格
-        response = response.trim();
-        return response;
+        
+        Map<String, Object> result = parsed.value();
+        
+        // 验证必要字段
+        if (!result.containsKey("restaurants")) {
+            result.put("restaurants", Arrays.asList("当地特色餐厅"));
+        }
+        if (!result.containsKey("tips")) {
+            result.put("tips", Arrays.asList("提前了解当地文化和习俗"));
+        }
+        if (parsed.truncated()) {
+            result.put("truncated", true);
+        }
+        
+        return result;
     }
     
     /**
@@ -153,6 +323,7 @@ public class RecommendationExtractionTool {
      */
     private Map<String, Object> getDefaultRecommendations(String destination) {
         Map<String, Object> result = new HashMap<>();
+        result.put("fallback", true);
         
         result.put("restaurants", Arrays.asList(
             destination + "当地特色餐厅 - 品尝地道美食",
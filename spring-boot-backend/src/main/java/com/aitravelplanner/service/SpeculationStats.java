@@ -0,0 +1,85 @@
+package com.aitravelplanner.service;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 推测执行统计
+ * 记录推测行程的命中率和预算偏差分布，用于调整容差
+ */
+public class SpeculationStats {
+
+    /**
+     * 偏差分桶上界（百分比），最后一个桶收集超出范围的偏差
+     */
+    private static final int[] DEVIATION_BUCKETS = {2, 5, 10, 15, 20, 30, 50};
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder savedMillis = new LongAdder();
+    private final AtomicLongArray deviationHistogram = new AtomicLongArray(DEVIATION_BUCKETS.length + 1);
+
+    /**
+     * 记录一次推测结果
+     *
+     * @param deviation 实际每日预算相对本地估算的偏差比例
+     * @param accepted 推测行程是否被采用
+     * @param savedMillis 采用推测行程时节省的关键路径耗时
+     */
+    public void record(double deviation, boolean accepted, long savedMillis) {
+        attempts.increment();
+        if (accepted) {
+            hits.increment();
+            this.savedMillis.add(Math.max(0, savedMillis));
+        } else {
+            misses.increment();
+        }
+        deviationHistogram.incrementAndGet(bucketOf(deviation * 100));
+    }
+
+    /**
+     * 记录推测调用本身失败（已回退到顺序执行）
+     */
+    public void recordFailure() {
+        attempts.increment();
+        failures.increment();
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Map<String, Object> snapshot() {
+        long total = attempts.sum();
+        long hitCount = hits.sum();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("attempts", total);
+        result.put("hits", hitCount);
+        result.put("misses", misses.sum());
+        result.put("failures", failures.sum());
+        result.put("hitRate", total == 0 ? 0.0 : (double) hitCount / total);
+        result.put("savedMillis", savedMillis.sum());
+
+        // 偏差分布：可据此估算不同容差下的命中率
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < DEVIATION_BUCKETS.length; i++) {
+            histogram.put("<=" + DEVIATION_BUCKETS[i] + "%", deviationHistogram.get(i));
+        }
+        histogram.put(">" + DEVIATION_BUCKETS[DEVIATION_BUCKETS.length - 1] + "%",
+                deviationHistogram.get(DEVIATION_BUCKETS.length));
+        result.put("deviationHistogram", histogram);
+        return result;
+    }
+
+    private int bucketOf(double percent) {
+        for (int i = 0; i < DEVIATION_BUCKETS.length; i++) {
+            if (percent <= DEVIATION_BUCKETS[i]) {
+                return i;
+            }
+        }
+        return DEVIATION_BUCKETS.length;
+    }
+}
@@ -0,0 +1,287 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.model.TripLeg;
+import com.aitravelplanner.model.TripRequest;
+import com.aitravelplanner.model.TripResponse;
+import com.aitravelplanner.service.cache.PlanCache;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 多城市行程的分段与合并
+ *
+ * 每段按自己的日期和分到的预算独立规划，相邻两段之间插入一个本地生成的中转日；
+ * 总预算按天数在各段和中转日之间分配
+ */
+final class TripLegs {
+
+    private static final Pattern DAY_PREFIX = Pattern.compile("^第\\d+天");
+
+    private TripLegs() {
+    }
+
+    /**
+     * 一段行程
+     *
+     * @param request 该段的规划请求，日期已去掉中转日
+     * @param firstDay 该段第一天在合并行程中的序号（从1开始）
+     */
+    record Segment(TripLeg leg, TripRequest request, int days, int firstDay) {
+    }
+
+    /**
+     * 相邻两段之间的中转日
+     */
+    record Transfer(String date, String from, String to, int day) {
+    }
+
+    record Layout(List<Segment> segments, List<Transfer> transfers, int totalDays, int dailyBudget) {
+    }
+
+    /**
+     * 计算各段的日期、天数序号和预算
+     *
+     * @throws IllegalArgumentException 日期无效、顶层日期与各段首尾不一致、各段顺序错误或重叠、间隔超过一天，或某段除去中转日后没有天数
+     */
+    static Layout layout(TripRequest request) {
+        List<TripLeg> legs = request.getLegs();
+        int count = legs.size();
+        LocalDate[] starts = new LocalDate[count];
+        LocalDate[] ends = new LocalDate[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = parse(legs.get(i).getStartDate(), i);
+            ends[i] = parse(legs.get(i).getEndDate(), i);
+            if (ends[i].isBefore(starts[i])) {
+                throw new IllegalArgumentException("第" + (i + 1) + "段的结束日期早于开始日期");
+            }
+        }
+        // 顶层日期用于计算天数、逐天补全和修改行程，必须与各段首尾一致
+        if (!starts[0].toString().equals(request.getStartDate())
+                || !ends[count - 1].toString().equals(request.getEndDate())) {
+            throw new IllegalArgumentException("startDate和endDate须与第1段开始日期" + starts[0]
+                    + "和最后一段结束日期" + ends[count - 1] + "一致，或不填由各段推导");
+        }
+
+        // 确定中转日并从相邻两段中扣除
+        LocalDate[] ownStarts = starts.clone();
+        LocalDate[] ownEnds = ends.clone();
+        LocalDate[] transferDates = new LocalDate[Math.max(count - 1, 0)];
+        for (int i = 0; i + 1 < count; i++) {
+            long gap = ChronoUnit.DAYS.between(ends[i], starts[i + 1]);
+            if (gap == 0) {
+                transferDates[i] = ends[i];
+                ownEnds[i] = ends[i].minusDays(1);
+                ownStarts[i + 1] = starts[i + 1].plusDays(1);
+            } else if (gap == 1) {
+                transferDates[i] = starts[i + 1];
+                ownStarts[i + 1] = starts[i + 1].plusDays(1);
+            } else if (gap == 2) {
+                transferDates[i] = ends[i].plusDays(1);
+            } else {
+                throw new IllegalArgumentException("第" + (i + 2) + "段须在第" + (i + 1)
+                        + "段结束当天、次日或隔一天开始，中间安排一个中转日");
+            }
+        }
+
+        int totalDays = count - 1;
+        int[] ownDays = new int[count];
+        for (int i = 0; i < count; i++) {
+            ownDays[i] = (int) ChronoUnit.DAYS.between(ownStarts[i], ownEnds[i]) + 1;
+            if (ownDays[i] < 1) {
+                throw new IllegalArgumentException("第" + (i + 1) + "段除去中转日后没有可规划的天数");
+            }
+            totalDays += ownDays[i];
+        }
+
+        int dailyBudget = request.getBudget() / totalDays;
+        List<Segment> segments = new ArrayList<>();
+        List<Transfer> transfers = new ArrayList<>();
+        int day = 1;
+        for (int i = 0; i < count; i++) {
+            TripLeg leg = legs.get(i);
+            int legBudget = (int) ((long) request.getBudget() * ownDays[i] / totalDays);
+            String preferences = leg.getPreferences() != null && !leg.getPreferences().isBlank()
+                    ? leg.getPreferences() : request.getPreferences();
+            TripRequest legRequest = new TripRequest(leg.getDestination(), ownStarts[i].toString(),
+                    ownEnds[i].toString(), legBudget, request.getCompanions(), preferences);
+            legRequest.setGeneration(request.getGeneration());
+            legRequest.setProgressive(request.getProgressive());
+            legRequest.setMode(request.getMode());
+            legRequest.setPriority(request.getPriority());
+            segments.add(new Segment(leg, legRequest, ownDays[i], day));
+            day += ownDays[i];
+            if (i + 1 < count) {
+                transfers.add(new Transfer(transferDates[i].toString(), leg.getDestination(),
+                                           legs.get(i + 1).getDestination(), day));
+                day++;
+            }
+        }
+        return new Layout(segments, transfers, totalDays, dailyBudget);
+    }
+
+    /**
+     * 合并各段的工具流结果，中转日按日期顺序插入
+     *
+     * @param plans 与 layout.segments() 一一对应
+     * @return 合并后的预算、行程和推荐结果；餐厅和景点标注所在城市，贴士去重
+     */
+    static PlanCache.CachedPlan merge(TripRequest request, Layout layout, List<PlanCache.CachedPlan> plans) {
+        Map<String, Object> budgetResult = new HashMap<>();
+        Map<String, Object> itineraryResult = new HashMap<>();
+        Map<String, Object> recommendationsResult = new HashMap<>();
+        List<Map<String, Object>> legBudgets = new ArrayList<>();
+        List<Map<String, Object>> days = new ArrayList<>();
+        StringJoiner summary = new StringJoiner("\n");
+
+        for (int i = 0; i < plans.size(); i++) {
+            Segment segment = layout.segments().get(i);
+            PlanCache.CachedPlan plan = plans.get(i);
+            String destination = segment.leg().getDestination();
+
+            Map<String, Object> legBudget = new LinkedHashMap<>();
+            legBudget.put("destination", destination);
+            legBudget.put("budget", segment.request().getBudget());
+            legBudget.put("dailyBudget", plan.budgetResult().get("dailyBudget"));
+            legBudget.put("budgetAllocation", plan.budgetResult().get("budgetAllocation"));
+            legBudgets.add(legBudget);
+
+            int day = segment.firstDay();
+            for (Map<String, Object> legDay : (List<Map<String, Object>>) plan.itineraryResult().get("days")) {
+                // 缓存中的结果会被其他请求共享，复制后再修改
+                Map<String, Object> merged = new HashMap<>(legDay);
+                merged.put("destination", destination);
+                merged.put("title", renumber((String) legDay.get("title"), day, destination));
+                days.add(merged);
+                day++;
+            }
+            if (i < layout.transfers().size()) {
+                days.add(transferDay(layout.transfers().get(i), layout.dailyBudget()));
+            }
+            if (plan.itineraryResult().get("summary") != null) {
+                summary.add(destination + "：" + plan.itineraryResult().get("summary"));
+            }
+
+            for (String key : List.of("restaurants", "attractions")) {
+                appendAll(recommendationsResult, key, plan.recommendationsResult().get(key), destination + " · ");
+            }
+            for (String key : List.of("tips", "localInsights")) {
+                appendAll(recommendationsResult, key, plan.recommendationsResult().get(key), "");
+            }
+
+            for (String flag : List.of("truncated", "fallback", "progressive")) {
+                if (Boolean.TRUE.equals(plan.budgetResult().get(flag))) {
+                    budgetResult.put(flag, true);
+                }
+                if (Boolean.TRUE.equals(plan.itineraryResult().get(flag))) {
+                    itineraryResult.put(flag, true);
+                }
+                if (Boolean.TRUE.equals(plan.recommendationsResult().get(flag))) {
+                    recommendationsResult.put(flag, true);
+                }
+            }
+        }
+
+        budgetResult.put("dailyBudget", layout.dailyBudget());
+        budgetResult.put("legs", legBudgets);
+        itineraryResult.put("summary", summary.toString());
+        itineraryResult.put("days", days);
+        recommendationsResult.replaceAll((key, value) ->
+                value instanceof Collection<?> items ? new ArrayList<>(new LinkedHashSet<>(items)) : value);
+        recommendationsResult.putIfAbsent("restaurants", new ArrayList<>());
+        recommendationsResult.putIfAbsent("tips", new ArrayList<>());
+        return new PlanCache.CachedPlan(request, budgetResult, itineraryResult, recommendationsResult);
+    }
+
+    /**
+     * 各段在响应中的摘要
+     *
+     * @param cacheHits 各段的缓存命中类型，未命中为null
+     */
+    static List<TripResponse.LegSummary> summaries(Layout layout, List<String> cacheHits) {
+        List<TripResponse.LegSummary> result = new ArrayList<>();
+        for (int i = 0; i < layout.segments().size(); i++) {
+            Segment segment = layout.segments().get(i);
+            result.add(new TripResponse.LegSummary(segment.leg().getDestination(), segment.leg().getStartDate(),
+                    segment.leg().getEndDate(), segment.firstDay(), segment.firstDay() + segment.days() - 1,
+                    segment.request().getBudget(), cacheHits.get(i)));
+        }
+        return result;
+    }
+
+    /**
+     * 生成中转日：上午离开、乘车或航班、下午抵达入住，晚上在新城市用餐
+     */
+    static Map<String, Object> transferDay(Transfer transfer, int dailyBudget) {
+        List<Map<String, Object>> activities = new ArrayList<>();
+        activities.add(activity("08:30", "退房出发", "整理行李，从" + transfer.from() + "的住处前往火车站或机场",
+                                transfer.from(), 0, "交通"));
+        activities.add(activity("10:00", transfer.from() + " → " + transfer.to(),
+                                "乘坐高铁或航班前往" + transfer.to() + "，建议提前预订并预留安检时间",
+                                transfer.from() + " → " + transfer.to(), dailyBudget * 6 / 10, "交通"));
+        activities.add(activity("15:00", "抵达" + transfer.to() + "并入住", "办理入住后在住处附近稍作休整",
+                                transfer.to(), 0, "住宿"));
+        activities.add(activity("18:30", "品尝" + transfer.to() + "特色晚餐", "在住处附近体验当地风味",
+                                transfer.to(), dailyBudget * 2 / 10, "餐饮"));
+
+        Map<String, Object> day = new HashMap<>();
+        day.put("date", transfer.date());
+        day.put("title", "第" + transfer.day() + "天：" + transfer.from() + " → " + transfer.to() + " 中转");
+        day.put("dailyBudget", dailyBudget);
+        day.put("destination", transfer.to());
+        day.put("transfer", true);
+        day.put("activities", activities);
+        return day;
+    }
+
+    private static Map<String, Object> activity(String time, String name, String desc, String location,
+                                                int cost, String category) {
+        Map<String, Object> activity = new HashMap<>();
+        activity.put("time", time);
+        activity.put("activity", name);
+        activity.put("desc", desc);
+        activity.put("location", location);
+        activity.put("cost", cost);
+        activity.put("category", category);
+        return activity;
+    }
+
+    /**
+     * 将各段内的“第N天”改为合并行程中的序号，并标注城市
+     */
+    private static String renumber(String title, int day, String destination) {
+        String prefix = "第" + day + "天";
+        if (title == null || title.isBlank()) {
+            return prefix + "：" + destination;
+        }
+        String renumbered = DAY_PREFIX.matcher(title).replaceFirst(prefix);
+        if (!renumbered.startsWith(prefix)) {
+            renumbered = prefix + "：" + renumbered;
+        }
+        return renumbered.contains(destination) ? renumbered
+                : renumbered.replaceFirst("^" + prefix + "[：:]?",
+                                          Matcher.quoteReplacement(prefix + "：" + destination + " · "));
+    }
+
+    private static void appendAll(Map<String, Object> target, String key, Object items, String prefix) {
+        if (!(items instanceof List<?> list)) {
+            return;
+        }
+        List<Object> values = (List<Object>) target.computeIfAbsent(key, k -> new ArrayList<>());
+        for (Object item : list) {
+            values.add(item instanceof String text ? prefix + text : item);
+        }
+    }
+
+    private static LocalDate parse(String date, int index) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException | NullPointerException e) {
+            throw new IllegalArgumentException("第" + (index + 1) + "段的日期格式无效: " + date);
+        }
+    }
+}
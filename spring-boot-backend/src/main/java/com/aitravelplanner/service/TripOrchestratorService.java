@@ -1,12 +1,16 @@
 package com.aitravelplanner.service;
 
+import com.aitravelplanner.config.ModeProperties;
+import com.aitravelplanner.model.PlanChangeRequest;
 import com.aitravelplanner.model.TripRequest;
 import com.aitravelplanner.model.TripResponse;
-import org.springframework.ai.chat.ChatClient;
-import org.springframework.ai.chat.ChatResponse;
-import org.springframework.ai.chat.messages.UserMessage;
-import org.springframework.ai.chat.prompt.Prompt;
+import com.aitravelplanner.service.cache.ClusterPlanCoordinator;
+import com.aitravelplanner.service.cache.PlanCache;
+import com.aitravelplanner.service.llm.CallPriority;
+import com.aitravelplanner.service.llm.RequestContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -15,6 +19,10 @@ import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 旅行规划编排器服务
@@ -25,9 +33,6 @@ public class TripOrchestratorService {
     
     private static final Logger logger = LoggerFactory.getLogger(TripOrchestratorService.class);
     
-    @Autowired
-    private ChatClient chatClient;
-    
     @Autowired
     private BudgetEstimationTool budgetEstimationTool;
     
@@ -37,67 +42,635 @@ public class TripOrchestratorService {
     @Autowired
     private RecommendationExtractionTool recommendationExtractionTool;
     
+    @Autowired
+    private ConsolidatedPlanningTool consolidatedPlanningTool;
+    
+    @Autowired
+    private TripPlanStore tripPlanStore;
+    
+    @Autowired
+    private PlanCache planCache;
+    
+    @Autowired
+    private ClusterPlanCoordinator clusterPlanCoordinator;
+    
+    @Autowired
+    private ProgressiveDayFiller progressiveDayFiller;
+    
+    @Autowired
+    private ModeProperties modeProperties;
+    
+    @Autowired
+    @Qualifier("workflowExecutor")
+    private Executor workflowExecutor;
+    
+    @Autowired
+    @Qualifier("legExecutor")
+    private Executor legExecutor;
+    
+    @Autowired
+    @Qualifier("revalidationExecutor")
+    private Executor revalidationExecutor;
+    
+    @Value("${app.workflow.generation:pipeline}")
+    private String defaultGeneration;
+    
+    @Value("${app.workflow.progressive.enabled:true}")
+    private boolean progressiveEnabled;
+    
+    @Value("${app.workflow.progressive.min-days:6}")
+    private int progressiveMinDays;
+    
+    @Value("${app.workflow.progressive.detailed-days:2}")
+    private int progressiveDetailedDays;
+    
+    @Value("${app.workflow.speculative.enabled:true}")
+    private boolean speculativeEnabled;
+    
+    @Value("${app.workflow.speculative.tolerance:0.15}")
+    private double speculativeTolerance;
+    
+    private final SpeculationStats speculationStats = new SpeculationStats();
+    
+    private final ModeStats modeStats = new ModeStats();
+    
     /**
      * 执行完整的旅行规划工具流
      * 
      * 工具流执行顺序：
      * 1. estimateBudget() - 计算每日预算
-     * 2. planItinerary() - 生成行程安排
+     * 2. planItinerary() - 生成行程安排（推测模式下与步骤1并行）
      * 3. extractRecommendations() - 提取推荐内容
      * 4. 汇总返回结构化数据
+     * 
+     * 多城市行程（legs非空）的各段并行执行上述流程后合并；
+     * 渐进式生成时步骤2只生成行程骨架和前几天的完整安排，其余天数在返回后由 ProgressiveDayFiller 补全
+     * 
+     * 请求的服务等级（mode）决定缓存相似度阈值、是否本地估算预算、生成方式、输出token上限和提示词详细程度，
+     * 优先级（priority）决定AI调用在全局调度器中的排队类别
      */
     public TripResponse executeTripPlanning(TripRequest request) {
-        logger.info("🚀 开始执行旅行规划工具流...");
+        if (request.getMode() == null) {
+            request.setMode(modeProperties.getDefaultMode());
+        }
+        RequestContext context = contextFor(request.getMode(), CallPriority.of(request.getPriority()));
+        logger.info("🚀 开始执行旅行规划工具流: requestId={}", Long.toHexString(context.requestId()));
         logger.info("📋 用户请求: {}", request);
         
+        long start = System.currentTimeMillis();
+        TripResponse response = null;
+        try {
+            response = RequestContext.callWith(context, () -> request.hasLegs()
+                    ? executeMultiLegPlanning(request) : executeSinglePlanning(request));
+            return response;
+        } finally {
+            boolean cacheHit = response != null && (response.getCacheHit() != null || response.getLegs() != null
+                    && response.getLegs().stream().allMatch(leg -> leg.getCacheHit() != null));
+            modeStats.record(request.getMode(), System.currentTimeMillis() - start, cacheHit, response == null);
+        }
+    }
+    
+    /**
+     * 服务等级和优先级对应的AI调用上下文，每次生成新的请求编号
+     */
+    private RequestContext contextFor(String mode, CallPriority priority) {
+        return RequestContext.forMode(modeProperties, mode, priority);
+    }
+    
+    /**
+     * 执行单城市行程规划
+     */
+    private TripResponse executeSinglePlanning(TripRequest request) {
         try {
             // 步骤1: 计算旅行天数
             int days = calculateTripDays(request.getStartDate(), request.getEndDate());
             logger.info("📅 旅行天数: {} 天", days);
             
-            // 步骤2: 调用预算估算工具
+            // 步骤2-4: 查找缓存，其他实例正在生成相同请求时等待共享结果，否则调用各工具生成
+            PlannedTrip planned = obtainPlan(request, days);
+            PlanCache.CachedPlan plan = planned.plan();
+            
+            // 步骤5: 构建最终响应
+            logger.info("📦 步骤4: 构建最终响应");
+            TripResponse response = buildTripResponse(request, plan.budgetResult(), plan.itineraryResult(),
+                                                      plan.recommendationsResult());
+            response.setCacheHit(planned.cacheHit());
+            response.setSimilarity(planned.similarity());
+            response.setStaleMillis(planned.staleMillis());
+            tripPlanStore.save(request, plan.budgetResult(), plan.itineraryResult(),
+                               plan.recommendationsResult(), response);
+            startFilling(response.getPlanId(), plan.itineraryResult());
+            
+            logger.info("✅ 工具流执行完成，返回结构化数据: planId={}", response.getPlanId());
+            return response;
+            
+        } catch (Exception e) {
+            logger.error("❌ 工具流执行失败: {}", e.getMessage(), e);
+            throw new RuntimeException("旅行规划生成失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 执行多城市行程规划
+     * 
+     * 各段的预算估算、行程规划和推荐提取在独立线程上并行执行，总耗时约等于最慢的一段；
+     * 各段分别查找和写入缓存，合并结果与中转日后保存为一个行程
+     * 
+     * @throws IllegalArgumentException 各段日期无效或无法衔接
+     */
+    private TripResponse executeMultiLegPlanning(TripRequest request) {
+        TripLegs.Layout layout = TripLegs.layout(request);
+        logger.info("🧭 多城市行程: {}段, 共{}天, 中转日{}个", layout.segments().size(), layout.totalDays(),
+                   layout.transfers().size());
+        
+        try {
+            List<CompletableFuture<PlannedTrip>> futures = new ArrayList<>();
+            for (TripLegs.Segment segment : layout.segments()) {
+                futures.add(CompletableFuture.supplyAsync(() -> {
+                    logger.info("🧭 开始规划第{}天起的{}段: {}天, 预算{}元", segment.firstDay(),
+                               segment.leg().getDestination(), segment.days(), segment.request().getBudget());
+                    return obtainPlan(segment.request(), segment.days());
+                }, legExecutor));
+            }
+            
+            List<PlanCache.CachedPlan> plans = new ArrayList<>();
+            List<String> cacheHits = new ArrayList<>();
+            Long staleMillis = null;
+            for (CompletableFuture<PlannedTrip> future : futures) {
+                PlannedTrip planned = future.join();
+                plans.add(planned.plan());
+                cacheHits.add(planned.cacheHit());
+                if (planned.staleMillis() != null) {
+                    staleMillis = Math.max(planned.staleMillis(), staleMillis == null ? 0 : staleMillis);
+                }
+            }
+            
+            PlanCache.CachedPlan merged = TripLegs.merge(request, layout, plans);
+            TripResponse response = buildTripResponse(request, merged.budgetResult(), merged.itineraryResult(),
+                                                      merged.recommendationsResult());
+            response.setLegs(TripLegs.summaries(layout, cacheHits));
+            response.setStaleMillis(staleMillis);
+            tripPlanStore.save(request, merged.budgetResult(), merged.itineraryResult(),
+                               merged.recommendationsResult(), response);
+            startFilling(response.getPlanId(), merged.itineraryResult());
+            
+            logger.info("✅ 多城市行程规划完成: planId={}, 共{}天", response.getPlanId(), response.getDays().size());
+            return response;
+            
+        } catch (Exception e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            logger.error("❌ 多城市行程规划失败: {}", cause.getMessage(), cause);
+            throw new RuntimeException("旅行规划生成失败: " + cause.getMessage(), cause);
+        }
+    }
+    
+    /**
+     * 获取工具流结果
+     * 
+     * @param cacheHit 命中缓存的类型（exact / similar / shared），新生成时为null
+     * @param similarity 相似命中时偏好的估算相似度
+     * @param staleMillis 命中已过期的缓存条目时超出有效期的时间
+     */
+    private record PlannedTrip(PlanCache.CachedPlan plan, String cacheHit, Double similarity, Long staleMillis) {
+    }
+    
+    /**
+     * 依次查找本地缓存、等待集群中其他实例的共享结果，都没有时调用各工具生成；
+     * 命中已过期的缓存条目时直接返回，由第一个命中者在后台重新生成
+     */
+    private PlannedTrip obtainPlan(TripRequest request, int days) {
+        Double threshold = modeProperties.profile(request.getMode()).getSimilarityThreshold();
+        Optional<PlanCache.Hit> hit = threshold != null
+                ? planCache.lookup(request, days, threshold) : planCache.lookup(request, days);
+        if (hit.isPresent()) {
+            PlanCache.CachedPlan cached = hit.get().plan();
+            logger.info("♻️ 命中{}缓存: 原请求偏好=\"{}\", 相似度={}, 缓存时长={}秒",
+                       hit.get().exact() ? "精确" : "相似", cached.request().getPreferences(),
+                       String.format("%.2f", hit.get().similarity()), hit.get().ageMillis() / 1000);
+            if (hit.get().revalidate()) {
+                revalidate(cached, days);
+            }
+            return new PlannedTrip(cached, hit.get().exact() ? "exact" : "similar",
+                                   hit.get().exact() ? null : Math.round(hit.get().similarity() * 100) / 100.0,
+                                   hit.get().staleMillis() > 0 ? hit.get().staleMillis() : null);
+        }
+        
+        ClusterPlanCoordinator.Outcome outcome = clusterPlanCoordinator.getOrGenerate(
+            request, days, () -> generatePlan(request, days));
+        PlanCache.CachedPlan plan = outcome.plan();
+        if (outcome.shared()) {
+            logger.info("🌐 复用集群共享结果");
+        }
+        if (plan.reusable()) {
+            planCache.put(request, days, plan);
+        }
+        return new PlannedTrip(plan, outcome.shared() ? "shared" : null, null, null);
+    }
+    
+    /**
+     * 在后台按缓存条目的原请求重新生成，成功后替换该条目
+     * 
+     * 直接调用各工具生成而不经过集群共享结果，以免取回同样过期的结果；重新生成总是完整生成所有天数，按后台任务调度
+     */
+    private void revalidate(PlanCache.CachedPlan stale, int days) {
+        TripRequest original = stale.request();
+        TripRequest request = new TripRequest(original.getDestination(), original.getStartDate(),
+                                              original.getEndDate(), original.getBudget(),
+                                              original.getCompanions(), original.getPreferences());
+        request.setGeneration(original.getGeneration());
+        request.setMode(original.getMode());
+        request.setProgressive(false);
+        try {
+            revalidationExecutor.execute(() -> {
+                logger.info("🔄 后台重新生成过期缓存: 目的地={}, {}天", request.getDestination(), days);
+                PlanCache.CachedPlan fresh = null;
+                try {
+                    PlanCache.CachedPlan plan = RequestContext.callWith(contextFor(request.getMode(), CallPriority.BATCH),
+                                                                        () -> generatePlan(request, days));
+                    if (plan.reusable()) {
+                        fresh = plan;
+                    } else {
+                        logger.warn("⚠️ 重新生成的结果不可复用，继续返回过期缓存: 目的地={}", request.getDestination());
+                    }
+                } catch (Exception e) {
+                    logger.warn("⚠️ 后台重新生成失败，继续返回过期缓存: {}", e.getMessage());
+                }
+                planCache.completeRevalidation(stale, days, fresh);
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("⚠️ 重新生成线程池已满，稍后重试: 目的地={}", request.getDestination());
+            planCache.completeRevalidation(stale, days, null);
+        }
+    }
+    
+    /**
+     * 调用各工具生成行程
+     * 
+     * consolidated方式下一次调用生成全部结果，其余情况依次调用三个工具；生成方式依次取请求、服务等级和全局配置
+     */
+    private PlanCache.CachedPlan generatePlan(TripRequest request, int days) {
+        ModeProperties.Profile profile = modeProperties.profile(request.getMode());
+        String generation = request.getGeneration() != null ? request.getGeneration()
+                : profile.getGeneration() != null ? profile.getGeneration() : defaultGeneration;
+        if ("consolidated".equals(generation)) {
+            return consolidatedPlanningTool.plan(request, days, profile.isLocalBudget());
+        }
+        
+        // 调用预算估算工具和行程规划工具；本地预算档位不调用预算估算工具
+        Map<String, Object> budgetResult = new HashMap<>();
+        Map<String, Object> itineraryResult;
+        if (profile.isLocalBudget()) {
+            budgetResult.putAll(budgetEstimationTool.estimateLocally(request.getBudget(), days));
+            logger.info("💰 步骤1: 本地估算预算，每日预算 {} 元", budgetResult.get("dailyBudget"));
+            itineraryResult = planItinerary(request, budgetResult);
+        } else {
+            itineraryResult = planBudgetAndItinerary(request, days, budgetResult);
+        }
+        
+        // 调用推荐提取工具
+        logger.info("💡 步骤3: 调用推荐提取工具");
+        Map<String, Object> recommendationsResult = recommendationExtractionTool.extractRecommendations(
+            request.getDestination(),
+            request.getPreferences(),
+            itineraryResult
+        );
+        logger.info("✅ 推荐提取完成: 餐厅{}个, 贴士{}个", 
+            recommendationsResult.get("restaurants"), 
+            recommendationsResult.get("tips"));
+        
+        return new PlanCache.CachedPlan(request, budgetResult, itineraryResult, recommendationsResult);
+    }
+    
+    /**
+     * 渐进式行程保存后开始补全其余天数
+     */
+    private void startFilling(String planId, Map<String, Object> itineraryResult) {
+        if (Boolean.TRUE.equals(itineraryResult.get("progressive"))) {
+            progressiveDayFiller.start(planId);
+        }
+    }
+    
+    /**
+     * 获取已生成的行程
+     */
+    public Optional<TripResponse> getTripPlan(String planId) {
+        return tripPlanStore.get(planId).map(TripPlanStore.StoredPlan::getResponse);
+    }
+    
+    /**
+     * 获取行程中某一天的完整安排，渐进式行程中该天尚未生成时立即生成
+     * 
+     * @param day 天数（从1开始）
+     */
+    public TripResponse.DayItinerary getTripDay(String planId, int day) {
+        return progressiveDayFiller.getDay(planId, day);
+    }
+    
+    /**
+     * 增量修改已有行程
+     * 
+     * 只重新生成受影响的每日行程，预算和推荐内容直接复用：
+     * - editDay: 重新生成第N天，携带前后两天作为上下文
+     * - changeDates: 缩短时截断并重新生成新的最后一天；延长时生成新增天数和原最后一天；每日预算按新的天数重新分配
+     * - swapActivity: 只替换单个活动
+     * 
+     * @param planId 行程ID
+     * @param change 修改内容
+     * @return 修改后的行程
+     * @throws IllegalStateException 重新生成失败，已保存的行程保持不变
+     */
+    public TripResponse replanTrip(String planId, PlanChangeRequest change) {
+        TripPlanStore.StoredPlan plan = tripPlanStore.get(planId)
+                .orElseThrow(() -> new NoSuchElementException("行程不存在: " + planId));
+        logger.info("✏️ 开始增量修改行程: planId={}, 修改={}", planId, change);
+        
+        // 重新生成的天数按原行程的服务等级控制详略和输出上限
+        return RequestContext.callWith(contextFor(plan.getRequest().getMode(), CallPriority.INTERACTIVE),
+                                       () -> applyChange(planId, plan, change));
+    }
+    
+    private TripResponse applyChange(String planId, TripPlanStore.StoredPlan plan, PlanChangeRequest change) {
+        synchronized (plan) {
+            TripRequest request = plan.getRequest();
+            List<Map<String, Object>> days = new ArrayList<>(
+                    (List<Map<String, Object>>) plan.getItineraryResult().get("days"));
+            Map<String, Object> budgetResult = plan.getBudgetResult();
+            Object dailyBudget = budgetResult.get("dailyBudget");
+            
+            switch (change.getType()) {
+                case "editDay" -> {
+                    int day = requireDay(change.getDay(), days.size());
+                    String preferences = change.getPreferences() != null ? change.getPreferences() : request.getPreferences();
+                    String destination = destinationOf(days.get(day - 1), request);
+                    List<Map<String, Object>> regenerated = itineraryPlanningTool.planDays(
+                        destination, preferences, dailyBudget, days.size(),
+                        targetDates(request, day, day), neighbours(days, day - 1, day + 1),
+                        "第" + day + "天按新的偏好重新安排：" + preferences);
+                    days.set(day - 1, withDestination(regenerated.get(0), destination, request));
+                }
+                case "changeDates" -> {
+                    if (change.getEndDate() == null) {
+                        throw new IllegalArgumentException("changeDates需要提供endDate");
+                    }
+                    request = withEndDate(request, change.getEndDate());
+                    int newDays = calculateTripDays(request.getStartDate(), request.getEndDate());
+                    if (newDays < 1) {
+                        throw new IllegalArgumentException("结束日期不能早于开始日期");
+                    }
+                    int oldDays = days.size();
+                    if (newDays != oldDays) {
+                        // 总预算不变，按新的天数重新分配，保留的天同步新的每日预算
+                        budgetResult = new HashMap<>(budgetResult);
+                        budgetResult.putAll(budgetEstimationTool.estimateLocally(request.getBudget(), newDays));
+                        dailyBudget = budgetResult.get("dailyBudget");
+                        days = withDailyBudget(days, dailyBudget);
+                    }
+                    if (newDays < oldDays) {
+                        days = new ArrayList<>(days.subList(0, newDays));
+                        String destination = destinationOf(days.get(newDays - 1), request);
+                        List<Map<String, Object>> regenerated = itineraryPlanningTool.planDays(
+                            destination, request.getPreferences(), dailyBudget, newDays,
+                            targetDates(request, newDays, newDays), neighbours(days, newDays - 1),
+                            "行程缩短为" + newDays + "天，第" + newDays + "天改为返程日");
+                        days.set(newDays - 1, withDestination(regenerated.get(0), destination, request));
+                    } else if (newDays > oldDays) {
+                        String destination = destinationOf(days.get(oldDays - 1), request);
+                        List<Map<String, Object>> regenerated = itineraryPlanningTool.planDays(
+                            destination, request.getPreferences(), dailyBudget, newDays,
+                            targetDates(request, oldDays, newDays), neighbours(days, oldDays - 1),
+                            "行程延长为" + newDays + "天，原第" + oldDays + "天不再是返程日");
+                        days = new ArrayList<>(days.subList(0, oldDays - 1));
+                        for (Map<String, Object> regeneratedDay : regenerated) {
+                            days.add(withDestination(regeneratedDay, destination, request));
+                        }
+                    }
+                }
+                case "swapActivity" -> {
+                    int day = requireDay(change.getDay(), days.size());
+                    Map<String, Object> dayData = new HashMap<>(days.get(day - 1));
+                    List<Map<String, Object>> activities = new ArrayList<>(
+                            (List<Map<String, Object>>) dayData.get("activities"));
+                    if (change.getActivityIndex() == null || change.getActivityIndex() > activities.size()) {
+                        throw new IllegalArgumentException("活动序号超出范围: " + change.getActivityIndex());
+                    }
+                    int index = change.getActivityIndex() - 1;
+                    activities.set(index, itineraryPlanningTool.planActivity(
+                        destinationOf(dayData, request), request.getPreferences(), dayData, index, change.getHint()));
+                    dayData.put("activities", activities);
+                    days.set(day - 1, dayData);
+                }
+                default -> throw new IllegalArgumentException("不支持的修改类型: " + change.getType());
+            }
+            
+            Map<String, Object> itineraryResult = new HashMap<>(plan.getItineraryResult());
+            itineraryResult.put("days", days);
+            TripResponse response = buildTripResponse(request, budgetResult, itineraryResult,
+                                                      plan.getRecommendationsResult());
+            response.setPlanId(planId);
+            plan.update(request, budgetResult, itineraryResult, response);
+            
+            logger.info("✅ 行程增量修改完成: planId={}, 共{}天", planId, days.size());
+            return response;
+        }
+    }
+    
+    /**
+     * 某一天所在的城市：多城市行程的每天记录了所在城市，单城市行程即请求的目的地
+     */
+    private String destinationOf(Map<String, Object> day, TripRequest request) {
+        return day.get("destination") instanceof String destination ? destination : request.getDestination();
+    }
+    
+    private Map<String, Object> withDestination(Map<String, Object> day, String destination, TripRequest request) {
+        if (request.hasLegs()) {
+            day.put("destination", destination);
+        }
+        return day;
+    }
+    
+    private int requireDay(Integer day, int totalDays) {
+        if (day == null || day < 1 || day > totalDays) {
+            throw new IllegalArgumentException("天数超出范围: " + day);
+        }
+        return day;
+    }
+    
+    /**
+     * 计算第from到第to天（含）的日期
+     */
+    private SortedMap<Integer, String> targetDates(TripRequest request, int from, int to) {
+        SortedMap<Integer, String> dates = new TreeMap<>();
+        LocalDate start = LocalDate.parse(request.getStartDate());
+        for (int day = from; day <= to; day++) {
+            dates.put(day, start.plusDays(day - 1).toString());
+        }
+        return dates;
+    }
+    
+    /**
+     * 获取指定天数（从1开始，越界的忽略）的现有安排，作为增量规划的上下文
+     */
+    private List<Map<String, Object>> neighbours(List<Map<String, Object>> days, int... dayNumbers) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (int day : dayNumbers) {
+            if (day >= 1 && day <= days.size()) {
+                result.add(days.get(day - 1));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * 复制各天并替换每日预算，原有的天可能与缓存共享，不原地修改
+     */
+    private List<Map<String, Object>> withDailyBudget(List<Map<String, Object>> days, Object dailyBudget) {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Map<String, Object> day : days) {
+            Map<String, Object> copy = new HashMap<>(day);
+            copy.put("dailyBudget", ItineraryValidator.toInteger(dailyBudget));
+            result.add(copy);
+        }
+        return result;
+    }
+    
+    private TripRequest withEndDate(TripRequest request, String endDate) {
+        TripRequest changed = new TripRequest(request.getDestination(), request.getStartDate(), endDate,
+                                              request.getBudget(), request.getCompanions(), request.getPreferences());
+        changed.setLegs(request.getLegs());
+        changed.setGeneration(request.getGeneration());
+        changed.setProgressive(request.getProgressive());
+        changed.setMode(request.getMode());
+        changed.setPriority(request.getPriority());
+        return changed;
+    }
+    
+    /**
+     * 获取各服务等级的耗时统计
+     */
+    public Map<String, Object> getModeStats() {
+        return modeStats.snapshot(modeProperties);
+    }
+    
+    /**
+     * 获取推测执行统计
+     */
+    public Map<String, Object> getSpeculationStats() {
+        return speculationStats.snapshot();
+    }
+    
+    /**
+     * 执行预算估算和行程规划
+     * 
+     * 推测模式下，行程规划使用本地估算的每日预算（总预算/天数）与预算估算并行执行；
+     * 实际每日预算返回后，若偏差在容差内则直接采用推测行程，否则使用实际预算重新规划。
+     * 
+     * @param budgetResult 用于回传预算估算结果
+     * @return 行程规划结果
+     */
+    private Map<String, Object> planBudgetAndItinerary(TripRequest request, int days,
+                                                     Map<String, Object> budgetResult) {
+        if (!speculativeEnabled) {
             logger.info("💰 步骤1: 调用预算估算工具");
-            Map<String, Object> budgetResult = budgetEstimationTool.estimateBudget(
-                request.getBudget(), 
-                days, 
-                request.getCompanions(), 
-                request.getDestination()
-            );
+            budgetResult.putAll(estimateBudget(request, days));
             logger.info("✅ 预算估算完成: {}", budgetResult);
             
-            // 步骤3: 调用行程规划工具
             logger.info("🗺️ 步骤2: 调用行程规划工具");
-            Map<String, Object> itineraryResult = itineraryPlanningTool.planItinerary(
+            Map<String, Object> itineraryResult = planItinerary(request, budgetResult);
+            logger.info("✅ 行程规划完成: {} 天行程", itineraryResult.get("days"));
+            return itineraryResult;
+        }
+        
+        // 本地估算每日预算，立即启动推测行程规划
+        int estimatedDailyBudget = request.getBudget() / Math.max(days, 1);
+        Map<String, Object> estimatedBudget = new HashMap<>();
+        estimatedBudget.put("dailyBudget", estimatedDailyBudget);
+        logger.info("⚡ 推测模式: 使用本地估算每日预算 {} 元并行规划行程", estimatedDailyBudget);
+        
+        long[] itineraryElapsed = new long[1];
+        CompletableFuture<Map<String, Object>> speculativeItinerary;
+        try {
+            speculativeItinerary = CompletableFuture.supplyAsync(() -> {
+                long start = System.currentTimeMillis();
+                Map<String, Object> result = planItinerary(request, estimatedBudget);
+                itineraryElapsed[0] = System.currentTimeMillis() - start;
+                return result;
+            }, workflowExecutor);
+        } catch (RejectedExecutionException e) {
+            logger.warn("⚠️ 工具流线程池已满，回退为顺序执行");
+            speculationStats.recordFailure();
+            budgetResult.putAll(estimateBudget(request, days));
+            return planItinerary(request, budgetResult);
+        }
+        
+        logger.info("💰 步骤1: 调用预算估算工具（与行程规划并行）");
+        long budgetStart = System.currentTimeMillis();
+        budgetResult.putAll(estimateBudget(request, days));
+        long budgetElapsed = System.currentTimeMillis() - budgetStart;
+        logger.info("✅ 预算估算完成: {}", budgetResult);
+        
+        Map<String, Object> itineraryResult;
+        try {
+            itineraryResult = speculativeItinerary.join();
+        } catch (CompletionException e) {
+            logger.warn("⚠️ 推测行程规划失败，使用实际预算重新规划: {}", e.getMessage());
+            speculationStats.recordFailure();
+            return planItinerary(request, budgetResult);
+        }
+        
+        Integer actualDailyBudget = ItineraryValidator.toInteger(budgetResult.get("dailyBudget"));
+        double deviation = actualDailyBudget == null || estimatedDailyBudget == 0
+                ? 1.0
+                : Math.abs(actualDailyBudget - estimatedDailyBudget) / (double) estimatedDailyBudget;
+        boolean accepted = deviation <= speculativeTolerance;
+        speculationStats.record(deviation, accepted, Math.min(budgetElapsed, itineraryElapsed[0]));
+        
+        if (accepted) {
+            logger.info("✅ 推测命中: 实际每日预算={}, 偏差={}%, 采用推测行程",
+                       actualDailyBudget, Math.round(deviation * 100));
+            return itineraryResult;
+        }
+        
+        logger.info("🔁 推测未命中: 实际每日预算={}, 偏差={}% 超出容差{}%, 重新规划行程",
+                   actualDailyBudget, Math.round(deviation * 100), Math.round(speculativeTolerance * 100));
+        itineraryResult = planItinerary(request, budgetResult);
+        logger.info("✅ 行程规划完成: {} 天行程", itineraryResult.get("days"));
+        return itineraryResult;
+    }
+    
+    private Map<String, Object> estimateBudget(TripRequest request, int days) {
+        return budgetEstimationTool.estimateBudget(
+            request.getBudget(), 
+            days, 
+            request.getCompanions(), 
+            request.getDestination()
+        );
+    }
+    
+    /**
+     * 调用行程规划工具；渐进式生成时只生成骨架和前几天的完整安排
+     */
+    private Map<String, Object> planItinerary(TripRequest request, Map<String, Object> budgetResult) {
+        int days = calculateTripDays(request.getStartDate(), request.getEndDate());
+        boolean progressive = request.getProgressive() != null
+                ? request.getProgressive()
+                : progressiveEnabled && days >= progressiveMinDays;
+        if (progressive && days > progressiveDetailedDays) {
+            return itineraryPlanningTool.planSkeleton(
                 request.getDestination(),
                 request.getStartDate(),
                 request.getEndDate(),
                 budgetResult,
-                request.getPreferences()
-            );
-            logger.info("✅ 行程规划完成: {} 天行程", itineraryResult.get("days"));
-            
-            // 步骤4: 调用推荐提取工具
-            logger.info("💡 步骤3: 调用推荐提取工具");
-            Map<String, Object> recommendationsResult = recommendationExtractionTool.extractRecommendations(
-                request.getDestination(),
                 request.getPreferences(),
-                itineraryResult
+                progressiveDetailedDays
             );
-            logger.info("✅ 推荐提取完成: 餐厅{}个, 贴士{}个", 
-                recommendationsResult.get("restaurants"), 
-                recommendationsResult.get("tips"));
-            
-            // 步骤5: 构建最终响应
-            logger.info("📦 步骤4: 构建最终响应");
-            TripResponse response = buildTripResponse(request, budgetResult, itineraryResult, recommendationsResult);
-            
-            logger.info("✅ 工具流执行完成，返回结构化数据");
-            return response;
-            
-        } catch (Exception e) {
-            logger.error("❌ 工具流执行失败: {}", e.getMessage(), e);
-            throw new RuntimeException("旅行规划生成失败: " + e.getMessage(), e);
         }
+        return itineraryPlanningTool.planItinerary(
+            request.getDestination(),
+            request.getStartDate(),
+            request.getEndDate(),
+            budgetResult,
+            request.getPreferences()
+        );
     }
     
     /**
@@ -117,7 +690,7 @@ public class TripOrchestratorService {
     /**
      * 构建最终响应
      */
-    private TripResponse buildTripResponse(TripRequest request, 
+    TripResponse buildTripResponse(TripRequest request, 
                                         Map<String, Object> budgetResult,
                                         Map<String, Object> itineraryResult,
                                         Map<String, Object> recommendationsResult) {
@@ -127,25 +700,7 @@ public class TripOrchestratorService {
         List<Map<String, Object>> itineraryDays = (List<Map<String, Object>>) itineraryResult.get("days");
         
         for (int i = 0; i < itineraryDays.size(); i++) {
-            Map<String, Object> dayData = itineraryDays.get(i);
-            
-            List<TripResponse.Activity> activities = new ArrayList<>();
-            List<Map<String, Object>> dayActivities = (List<Map<String, Object>>) dayData.get("activities");
-            
-            for (Map<String, Object> activityData : dayActivities) {
-                activities.add(new TripResponse.Activity(
-                    (String) activityData.get("time"),
-                    (String) activityData.get("activity"),
-                    (String) activityData.get("desc")
-                ));
-            }
-            
-            days.add(new TripResponse.DayItinerary(
-                i + 1,
-                (String) dayData.get("title"),
-                (Integer) dayData.get("dailyBudget"),
-                activities
-            ));
+            days.add(toDayItinerary(i + 1, itineraryDays.get(i)));
         }
         
         // 构建推荐
@@ -154,10 +709,45 @@ public class TripOrchestratorService {
             (List<String>) recommendationsResult.get("tips")
         );
         
-        return new TripResponse(
+        TripResponse response = new TripResponse(
             request.getBudget(),
             days,
             recommendations
         );
+        
+        // 任一工具的输出被截断修复时标记
+        if (Boolean.TRUE.equals(budgetResult.get("truncated"))
+                || Boolean.TRUE.equals(itineraryResult.get("truncated"))
+                || Boolean.TRUE.equals(recommendationsResult.get("truncated"))) {
+            response.setTruncated(true);
+        }
+        return response;
+    }
+    
+    /**
+     * 将工具流输出的一天转换为响应模型
+     */
+    static TripResponse.DayItinerary toDayItinerary(int dayNumber, Map<String, Object> dayData) {
+        List<TripResponse.Activity> activities = new ArrayList<>();
+        List<Map<String, Object>> dayActivities = (List<Map<String, Object>>) dayData.get("activities");
+        
+        for (Map<String, Object> activityData : dayActivities) {
+            activities.add(new TripResponse.Activity(
+                (String) activityData.get("time"),
+                (String) activityData.get("activity"),
+                (String) activityData.get("desc")
+            ));
+        }
+        
+        TripResponse.DayItinerary day = new TripResponse.DayItinerary(
+            dayNumber,
+            (String) dayData.get("title"),
+            (Integer) dayData.get("dailyBudget"),
+            activities
+        );
+        if (Boolean.TRUE.equals(dayData.get("pending"))) {
+            day.setPending(true);
+        }
+        return day;
     }
 }
@@ -0,0 +1,111 @@
+package com.aitravelplanner.service;
+
+import com.aitravelplanner.model.TripRequest;
+import com.aitravelplanner.model.TripResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * 行程存储
+ * 按planId保存已生成行程及各工具的中间结果，供增量修改复用；超出容量时淘汰最久未访问的行程
+ */
+@Component
+public class TripPlanStore {
+
+    private final Map<String, StoredPlan> plans;
+
+    public TripPlanStore(@Value("${app.plans.max-size:10000}") int maxSize) {
+        this.plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StoredPlan> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * 保存新生成的行程
+     *
+     * @return 行程ID
+     */
+    public String save(TripRequest request, Map<String, Object> budgetResult,
+                       Map<String, Object> itineraryResult, Map<String, Object> recommendationsResult,
+                       TripResponse response) {
+        String planId = UUID.randomUUID().toString().replace("-", "");
+        response.setPlanId(planId);
+        plans.put(planId, new StoredPlan(planId, request, budgetResult, itineraryResult,
+                                         recommendationsResult, response));
+        return planId;
+    }
+
+    public Optional<StoredPlan> get(String planId) {
+        return Optional.ofNullable(plans.get(planId));
+    }
+
+    /**
+     * 已保存的行程；修改时需在该对象上同步
+     */
+    public static class StoredPlan {
+        private final String planId;
+        private volatile TripRequest request;
+        private volatile Map<String, Object> budgetResult;
+        private volatile Map<String, Object> itineraryResult;
+        private final Map<String, Object> recommendationsResult;
+        private volatile TripResponse response;
+
+        StoredPlan(String planId, TripRequest request, Map<String, Object> budgetResult,
+                   Map<String, Object> itineraryResult, Map<String, Object> recommendationsResult,
+                   TripResponse response) {
+            this.planId = planId;
+            this.request = request;
+            this.budgetResult = budgetResult;
+            this.itineraryResult = itineraryResult;
+            this.recommendationsResult = recommendationsResult;
+            this.response = response;
+        }
+
+        public String getPlanId() {
+            return planId;
+        }
+
+        public TripRequest getRequest() {
+            return request;
+        }
+
+        public Map<String, Object> getBudgetResult() {
+            return budgetResult;
+        }
+
+        public Map<String, Object> getItineraryResult() {
+            return itineraryResult;
+        }
+
+        public Map<String, Object> getRecommendationsResult() {
+            return recommendationsResult;
+        }
+
+        public TripResponse getResponse() {
+            return response;
+        }
+
+        /**
+         * 更新修改后的请求、行程和响应
+         */
+        public void update(TripRequest request, Map<String, Object> itineraryResult, TripResponse response) {
+            update(request, budgetResult, itineraryResult, response);
+        }
+
+        /**
+         * 更新修改后的请求、预算、行程和响应
+         */
+        public void update(TripRequest request, Map<String, Object> budgetResult,
+                           Map<String, Object> itineraryResult, TripResponse response) {
+            this.request = request;
+            this.budgetResult = budgetResult;
+            this.itineraryResult = itineraryResult;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.aitravelplanner.service.cache;
+
+import com.aitravelplanner.config.ClusterProperties;
+import com.aitravelplanner.model.PlanLease;
+import com.aitravelplanner.model.SharedPlanResult;
+import com.aitravelplanner.model.TripRequest;
+import com.aitravelplanner.repository.PlanLeaseRepository;
+import com.aitravelplanner.repository.SharedPlanResultRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 集群行程去重协调器
+ *
+ * 通过共享数据库让多个实例对同一规范化请求只生成一次：
+ * 1. 先查共享结果表，命中且未过期直接复用
+ * 2. 未命中时争抢租约，抢到的实例调用AI生成并写入共享结果表，生成期间定期续约
+ * 3. 未抢到的实例轮询共享结果表等待；持有者崩溃导致租约过期时由等待者接管
+ *
+ * 共享库不可用时直接在本实例生成，不影响正常服务
+ */
+@Component
+public class ClusterPlanCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterPlanCoordinator.class);
+
+    @Autowired
+    private ClusterProperties properties;
+
+    @Autowired
+    private PlanLeaseRepository leaseRepository;
+
+    @Autowired
+    private SharedPlanResultRepository resultRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ScheduledExecutorService scheduler;
+    private String nodeId;
+
+    private final LongAdder sharedHits = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder leasesAcquired = new LongAdder();
+    private final LongAdder leasesTakenOver = new LongAdder();
+    private final LongAdder leasesLost = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final LongAdder waitTimeouts = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder storeErrors = new LongAdder();
+    private final LongAdder expiredRemoved = new LongAdder();
+
+    /**
+     * 协调结果
+     *
+     * @param shared 是否复用了其他实例（或之前）生成的结果
+     */
+    public record Outcome(PlanCache.CachedPlan plan, boolean shared) {
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        nodeId = properties.getNodeId() != null && !properties.getNodeId().isBlank()
+                ? properties.getNodeId() : ManagementFactory.getRuntimeMXBean().getName();
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-lease");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::removeExpired, properties.getCleanupIntervalMs(),
+                                         properties.getCleanupIntervalMs(), TimeUnit.MILLISECONDS);
+        logger.info("🌐 集群去重已启用: 实例={}, 租约有效期={}ms", nodeId, properties.getLeaseTtlMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 获取共享结果，或在持有租约的情况下生成
+     *
+     * @param generator 实际调用AI生成行程
+     */
+    public Outcome getOrGenerate(TripRequest request, int days, Supplier<PlanCache.CachedPlan> generator) {
+        if (!properties.isEnabled()) {
+            return new Outcome(generator.get(), false);
+        }
+        String key = hash(PlanCache.exactKey(request, days));
+        long waitStart = System.currentTimeMillis();
+        boolean waiting = false;
+
+        while (true) {
+            String token;
+            try {
+                Optional<PlanCache.CachedPlan> shared = read(key);
+                if (shared.isPresent()) {
+                    return shared(shared.get(), waiting, waitStart);
+                }
+                token = tryAcquire(key);
+            } catch (DataAccessException e) {
+                storeErrors.increment();
+                logger.warn("⚠️ 共享库访问失败，本实例直接生成: {}", e.getMessage());
+                return new Outcome(generator.get(), false);
+            }
+            if (token != null) {
+                if (waiting) {
+                    waitMillis.add(System.currentTimeMillis() - waitStart);
+                }
+                return generateUnderLease(key, token, generator);
+            }
+
+            if (!waiting) {
+                waiting = true;
+                waits.increment();
+                logger.info("⏳ 其他实例正在生成相同请求，等待共享结果: key={}", key);
+            }
+            if (System.currentTimeMillis() - waitStart > properties.getMaxWaitMs()) {
+                waitTimeouts.increment();
+                waitMillis.add(System.currentTimeMillis() - waitStart);
+                logger.warn("⚠️ 等待共享结果超时，本实例直接生成: key={}", key);
+                return new Outcome(generator.get(), false);
+            }
+            try {
+                Thread.sleep(properties.getPollIntervalMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return new Outcome(generator.get(), false);
+            }
+        }
+    }
+
+    /**
+     * 获取集群去重统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("nodeId", nodeId);
+        result.put("sharedHits", sharedHits.sum());
+        result.put("generated", generated.sum());
+        result.put("leasesAcquired", leasesAcquired.sum());
+        result.put("leasesTakenOver", leasesTakenOver.sum());
+        result.put("leasesLost", leasesLost.sum());
+        result.put("waits", waits.sum());
+        result.put("avgWaitMillis", waits.sum() == 0 ? 0 : waitMillis.sum() / waits.sum());
+        result.put("waitTimeouts", waitTimeouts.sum());
+        result.put("published", published.sum());
+        result.put("storeErrors", storeErrors.sum());
+        result.put("expiredRemoved", expiredRemoved.sum());
+        return result;
+    }
+
+    private Outcome shared(PlanCache.CachedPlan plan, boolean waited, long waitStart) {
+        sharedHits.increment();
+        if (waited) {
+            waitMillis.add(System.currentTimeMillis() - waitStart);
+        }
+        return new Outcome(plan, true);
+    }
+
+    /**
+     * 持有租约生成行程：生成期间定期续约，完成后写入共享结果并释放租约
+     *
+     * 租约在生成期间被其他实例接管时不写入共享结果，由接管者写入，避免两份结果互相覆盖
+     */
+    private Outcome generateUnderLease(String key, String token, Supplier<PlanCache.CachedPlan> generator) {
+        try {
+            // 上一个持有者可能在本次查询和抢到租约之间刚写入结果
+            Optional<PlanCache.CachedPlan> shared = read(key);
+            if (shared.isPresent()) {
+                release(key, token);
+                return shared(shared.get(), false, 0);
+            }
+        } catch (DataAccessException e) {
+            storeErrors.increment();
+        }
+
+        long renewInterval = Math.max(properties.getLeaseTtlMs() / 3, 1);
+        AtomicBoolean lost = new AtomicBoolean();
+        ScheduledFuture<?> renewal = scheduler.scheduleAtFixedRate(() -> {
+            if (!lost.get() && !renew(key, token)) {
+                lost.set(true);
+            }
+        }, renewInterval, renewInterval, TimeUnit.MILLISECONDS);
+        try {
+            PlanCache.CachedPlan plan = generator.get();
+            generated.increment();
+            renewal.cancel(false);
+            // 最后一次续约确认写入前仍持有租约
+            if (plan.reusable() && !lost.get() && renew(key, token)) {
+                publish(key, plan);
+            }
+            return new Outcome(plan, false);
+        } finally {
+            renewal.cancel(false);
+            release(key, token);
+        }
+    }
+
+    /**
+     * 尝试获取租约：没有租约时插入，租约已过期时接管
+     *
+     * 先查询再插入，避免等待期间每次轮询都触发主键冲突；查询与插入之间的竞争仍由主键约束兜底
+     *
+     * @return 获取成功时返回令牌，否则返回null
+     */
+    private String tryAcquire(String key) {
+        String token = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        long expiresAt = now + properties.getLeaseTtlMs();
+        Optional<PlanLease> existing = leaseRepository.findById(key);
+        if (existing.isEmpty()) {
+            try {
+                leaseRepository.insert(key, nodeId, token, now, expiresAt);
+                leasesAcquired.increment();
+                return token;
+            } catch (DataIntegrityViolationException e) {
+                return null;
+            }
+        }
+        if (existing.get().getExpiresAt() < now
+                && leaseRepository.takeOver(key, nodeId, token, now, expiresAt) == 1) {
+            leasesTakenOver.increment();
+            logger.warn("♻️ 接管过期租约，原持有者可能已崩溃: key={}", key);
+            return token;
+        }
+        return null;
+    }
+
+    /**
+     * 续约
+     *
+     * @return 租约已被其他实例接管时返回false；共享库暂时不可用时无法判断，返回true
+     */
+    private boolean renew(String key, String token) {
+        try {
+            if (leaseRepository.renew(key, token, System.currentTimeMillis() + properties.getLeaseTtlMs()) == 0) {
+                leasesLost.increment();
+                logger.warn("⚠️ 租约已被其他实例接管，不再写入共享结果: key={}", key);
+                return false;
+            }
+        } catch (DataAccessException e) {
+            storeErrors.increment();
+            logger.warn("⚠️ 租约续约失败: {}", e.getMessage());
+        }
+        return true;
+    }
+
+    private void release(String key, String token) {
+        try {
+            leaseRepository.release(key, token);
+        } catch (DataAccessException e) {
+            // 释放失败时租约会自然过期
+            storeErrors.increment();
+        }
+    }
+
+    private Optional<PlanCache.CachedPlan> read(String key) {
+        Optional<SharedPlanResult> result = resultRepository.findLive(key, System.currentTimeMillis());
+        if (result.isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(result.get().getPayload(), PlanCache.CachedPlan.class));
+        } catch (Exception e) {
+            logger.warn("⚠️ 共享结果反序列化失败，忽略该结果: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void publish(String key, PlanCache.CachedPlan plan) {
+        long now = System.currentTimeMillis();
+        try {
+            resultRepository.save(new SharedPlanResult(key, objectMapper.writeValueAsString(plan), nodeId,
+                                                       now, now + properties.getResultTtl() * 1000));
+            published.increment();
+        } catch (DataAccessException e) {
+            storeErrors.increment();
+            logger.warn("⚠️ 共享结果写入失败: {}", e.getMessage());
+        } catch (Exception e) {
+            logger.warn("⚠️ 共享结果序列化失败: {}", e.getMessage());
+        }
+    }
+
+    private void removeExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            int removed = leaseRepository.deleteExpired(now) + resultRepository.deleteExpired(now);
+            expiredRemoved.add(removed);
+            if (removed > 0) {
+                logger.debug("清理过期租约和共享结果: {}条", removed);
+            }
+        } catch (DataAccessException e) {
+            storeErrors.increment();
+            logger.warn("⚠️ 清理过期租约失败: {}", e.getMessage());
+        }
+    }
+
+    private String hash(String key) {
+        try {
+            return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.aitravelplanner.service.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * 偏好文本的MinHash签名
+ * 按连接词和标点切分偏好，去掉"体验""之旅"等修饰词后取中文字符二元组，
+ * 使"美食, 文化"和"文化和美食体验"得到相同的词元集合
+ */
+public class MinHasher {
+
+    private static final Pattern FILLER = Pattern.compile("体验|之旅|旅游|旅行|游玩|喜欢|想要|希望|一些|主要|为主|的|等");
+    private static final Pattern SEPARATOR = Pattern.compile("(?:[\\s\\p{Punct}，。、；：！？（）【】“”‘’和与及跟或]|还有|以及)+");
+    private static final String EMPTY_TOKEN = "<none>";
+
+    private final long[] seeds;
+
+    /**
+     * @param numHashes 签名长度
+     */
+    public MinHasher(int numHashes) {
+        this.seeds = new long[numHashes];
+        SplittableRandom random = new SplittableRandom(0x5EED_2025L);
+        for (int i = 0; i < numHashes; i++) {
+            seeds[i] = random.nextLong() | 1L;
+        }
+    }
+
+    public int getNumHashes() {
+        return seeds.length;
+    }
+
+    /**
+     * 将偏好文本切分为词元集合
+     */
+    public Set<String> tokenize(String preferences) {
+        Set<String> tokens = new TreeSet<>();
+        if (preferences != null) {
+            String text = Normalizer.normalize(preferences, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+            text = FILLER.matcher(text).replaceAll(" ");
+            for (String segment : SEPARATOR.split(text)) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (segment.length() <= 2 || segment.chars().allMatch(c -> c < 128)) {
+                    tokens.add(segment);
+                } else {
+                    for (int i = 0; i + 2 <= segment.length(); i++) {
+                        tokens.add(segment.substring(i, i + 2));
+                    }
+                }
+            }
+        }
+        if (tokens.isEmpty()) {
+            tokens.add(EMPTY_TOKEN);
+        }
+        return tokens;
+    }
+
+    /**
+     * 计算偏好文本的MinHash签名
+     */
+    public int[] signature(String preferences) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String token : tokenize(preferences)) {
+            long base = fnv1a(token);
+            for (int i = 0; i < seeds.length; i++) {
+                int h = (int) (mix(base * seeds[i]) >>> 33);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 由两个签名估算Jaccard相似度
+     */
+    public static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / a.length;
+    }
+
+    private static long fnv1a(String token) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : token.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,427 @@
+package com.aitravelplanner.service.cache;
+
+import com.aitravelplanner.config.CacheProperties;
+import com.aitravelplanner.config.ModeProperties;
+import com.aitravelplanner.model.TripRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 行程缓存
+ *
+ * 两层查找：
+ * 1. 精确键：目的地、天数、人数、预算、偏好和服务等级完全一致
+ * 2. 相似匹配：目的地、天数和人数一致、预算在容差内，偏好按MinHash签名做LSH分桶，候选条目再按估算的Jaccard相似度确认；
+ *    服务等级不低于请求的条目都可以命中，较快的档位可以复用较详细的结果
+ *
+ * 查找只访问固定数量的桶和有限的候选条目，耗时与缓存规模无关。
+ *
+ * 过期后的宽限期内（stale-while-revalidate）条目仍可命中并立即返回，同时由第一个命中者在后台重新生成；
+ * 重新生成失败时条目在更长的 stale-if-error 窗口内继续返回，并按间隔重试
+ */
+@Component
+public class PlanCache {
+
+    @Autowired
+    private CacheProperties properties;
+
+    private MinHasher minHasher;
+
+    /** 按编号排列，编号递增分配，最前面的即最早写入的条目，淘汰和过期清理都从这里开始 */
+    private final ConcurrentSkipListMap<Long, Entry> entries = new ConcurrentSkipListMap<>();
+    /** 条目数；跳表的size()需要遍历，写入时不直接调用 */
+    private final AtomicInteger size = new AtomicInteger();
+    private final Map<String, Long> exactIndex = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder exactHits = new LongAdder();
+    private final LongAdder similarHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder staleIfErrorHits = new LongAdder();
+    private final LongAdder revalidations = new LongAdder();
+    private final LongAdder revalidationFailures = new LongAdder();
+    private final LongAdder lookupNanos = new LongAdder();
+    private final LongAccumulator maxLookupNanos = new LongAccumulator(Math::max, 0);
+
+    /**
+     * 缓存的工具流中间结果
+     *
+     * 命中后按新请求重建响应并另存为新行程；这些Map在写入缓存后不再被原地修改，可安全共享
+     */
+    public record CachedPlan(TripRequest request, Map<String, Object> budgetResult,
+                             Map<String, Object> itineraryResult, Map<String, Object> recommendationsResult) {
+
+        /**
+         * 任一工具的输出经过截断修复时为true，这样的结果不应被复用
+         */
+        public boolean truncated() {
+            return Boolean.TRUE.equals(budgetResult.get("truncated"))
+                    || Boolean.TRUE.equals(itineraryResult.get("truncated"))
+                    || Boolean.TRUE.equals(recommendationsResult.get("truncated"));
+        }
+
+        /**
+         * 是否可以复用给其他请求：截断修复、使用了兜底结果（AI失败、隔离舱拒绝）或尚有天数待补全的行程不复用
+         */
+        public boolean reusable() {
+            return !truncated()
+                    && !Boolean.TRUE.equals(itineraryResult.get("progressive"))
+                    && !Boolean.TRUE.equals(budgetResult.get("fallback"))
+                    && !Boolean.TRUE.equals(itineraryResult.get("fallback"))
+                    && !Boolean.TRUE.equals(recommendationsResult.get("fallback"));
+        }
+    }
+
+    /**
+     * 缓存命中
+     *
+     * @param exact 是否精确命中
+     * @param similarity 偏好的估算相似度，精确命中时为1
+     * @param ageMillis 条目写入至今的时间
+     * @param staleMillis 超出有效期的时间，未过期时为0
+     * @param revalidate 调用方需在后台重新生成该条目，完成后调用 {@link #completeRevalidation}
+     */
+    public record Hit(CachedPlan plan, boolean exact, double similarity, long ageMillis, long staleMillis,
+                      boolean revalidate) {
+    }
+
+    private static final class Entry {
+        final long id;
+        final String exactKey;
+        final String destination;
+        final int days;
+        final int companions;
+        final int budget;
+        final int[] signature;
+        final long[] bucketKeys;
+        final CachedPlan plan;
+        final long createdAt;
+        /** 是否有后台重新生成正在进行 */
+        final AtomicBoolean revalidating = new AtomicBoolean();
+        /** 最近一次重新生成失败的时间，0表示没有失败过 */
+        volatile long failedAt;
+
+        Entry(long id, String exactKey, String destination, int days, int companions, int budget, int[] signature,
+              long[] bucketKeys, CachedPlan plan) {
+            this.id = id;
+            this.exactKey = exactKey;
+            this.destination = destination;
+            this.days = days;
+            this.companions = companions;
+            this.budget = budget;
+            this.signature = signature;
+            this.bucketKeys = bucketKeys;
+            this.plan = plan;
+            this.createdAt = System.currentTimeMillis();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        CacheProperties.Similarity similarity = properties.getSimilarity();
+        minHasher = new MinHasher(similarity.getBands() * similarity.getRows());
+    }
+
+    /**
+     * 查找可复用的行程
+     *
+     * @param request 旅行规划请求
+     * @param days 旅行天数
+     */
+    public Optional<Hit> lookup(TripRequest request, int days) {
+        return lookup(request, days, properties.getSimilarity().getThreshold());
+    }
+
+    /**
+     * 按指定的相似度阈值查找可复用的行程
+     *
+     * @param threshold 相似命中的最低偏好相似度
+     */
+    public Optional<Hit> lookup(TripRequest request, int days, double threshold) {
+        if (!properties.isEnabled()) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        lookups.increment();
+        try {
+            Entry exact = live(exactIndex.get(exactKey(request, days)));
+            if (exact != null) {
+                exactHits.increment();
+                return Optional.of(hit(exact, true, 1.0));
+            }
+
+            Optional<Hit> similar = properties.getSimilarity().isEnabled()
+                    ? findSimilar(request, days, threshold) : Optional.empty();
+            (similar.isPresent() ? similarHits : misses).increment();
+            return similar;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            lookupNanos.add(elapsed);
+            maxLookupNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * 写入新生成的行程
+     */
+    public void put(TripRequest request, int days, CachedPlan plan) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        String destination = normalize(request.getDestination());
+        int companions = companionsOf(request);
+        int budget = request.getBudget();
+        int[] signature = minHasher.signature(request.getPreferences());
+
+        long id = ids.incrementAndGet();
+        Entry entry = new Entry(id, exactKey(request, days), destination, days, companions, budget, signature,
+                                bucketKeys(destination, days, companions, budgetBand(budget), signature), plan);
+        entries.put(id, entry);
+        size.incrementAndGet();
+        Long replaced = exactIndex.put(entry.exactKey, id);
+        if (replaced != null) {
+            remove(entries.get(replaced));
+        }
+        for (long key : entry.bucketKeys) {
+            buckets.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+        purgeExpired();
+        evict();
+    }
+
+    /**
+     * 结束后台重新生成
+     *
+     * @param stale 命中时返回的过期行程
+     * @param fresh 重新生成的行程，失败或结果不可复用时为null，此时过期条目继续在 stale-if-error 窗口内返回
+     */
+    public void completeRevalidation(CachedPlan stale, int days, CachedPlan fresh) {
+        if (fresh != null) {
+            put(stale.request(), days, fresh);
+            return;
+        }
+        revalidationFailures.increment();
+        Long id = exactIndex.get(exactKey(stale.request(), days));
+        Entry entry = id == null ? null : entries.get(id);
+        if (entry != null && entry.plan == stale) {
+            entry.failedAt = System.currentTimeMillis();
+            entry.revalidating.set(false);
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     */
+    public Map<String, Object> getStats() {
+        long total = lookups.sum();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("entries", size.get());
+        result.put("buckets", buckets.size());
+        result.put("lookups", total);
+        result.put("exactHits", exactHits.sum());
+        result.put("similarHits", similarHits.sum());
+        result.put("misses", misses.sum());
+        result.put("staleHits", staleHits.sum());
+        result.put("staleIfErrorHits", staleIfErrorHits.sum());
+        result.put("revalidations", revalidations.sum());
+        result.put("revalidationFailures", revalidationFailures.sum());
+        result.put("hitRate", total == 0 ? 0.0 : (double) (exactHits.sum() + similarHits.sum()) / total);
+        result.put("avgLookupMicros", total == 0 ? 0 : lookupNanos.sum() / total / 1000);
+        result.put("maxLookupMicros", maxLookupNanos.get() / 1000);
+        return result;
+    }
+
+    private Optional<Hit> findSimilar(TripRequest request, int days, double threshold) {
+        CacheProperties.Similarity config = properties.getSimilarity();
+        String destination = normalize(request.getDestination());
+        int companions = companionsOf(request);
+        int budget = request.getBudget();
+        int[] signature = minHasher.signature(request.getPreferences());
+        int band = budgetBand(budget);
+        int rank = ModeProperties.rank(request.getMode());
+
+        Entry best = null;
+        double bestSimilarity = threshold;
+        Set<Long> seen = new HashSet<>();
+        // 预算容差可能跨越相邻的预算区间，三个区间都要查
+        for (int candidateBand = band - 1; candidateBand <= band + 1; candidateBand++) {
+            for (long key : bucketKeys(destination, days, companions, candidateBand, signature)) {
+                Set<Long> bucket = buckets.get(key);
+                if (bucket == null) {
+                    continue;
+                }
+                for (Long id : bucket) {
+                    if (seen.size() >= config.getMaxCandidates()) {
+                        break;
+                    }
+                    if (!seen.add(id)) {
+                        continue;
+                    }
+                    Entry candidate = live(id);
+                    if (candidate == null || candidate.days != days || candidate.companions != companions
+                            || !candidate.destination.equals(destination)
+                            || !withinBudget(candidate.budget, budget, config.getBudgetTolerance())
+                            || ModeProperties.rank(candidate.plan.request().getMode()) < rank) {
+                        continue;
+                    }
+                    double similarity = MinHasher.similarity(signature, candidate.signature);
+                    if (similarity >= bestSimilarity) {
+                        best = candidate;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+        }
+        return best == null ? Optional.empty()
+                : Optional.of(hit(best, false, bestSimilarity));
+    }
+
+    /**
+     * 计算条目所在的LSH桶：每段签名与目的地、天数、人数和预算区间一起哈希
+     */
+    private long[] bucketKeys(String destination, int days, int companions, int budgetBand, int[] signature) {
+        CacheProperties.Similarity config = properties.getSimilarity();
+        long partition = destination.hashCode() * 0x9E3779B97F4A7C15L + days * 31L + companions * 961L + budgetBand;
+        long[] keys = new long[config.getBands()];
+        for (int band = 0; band < config.getBands(); band++) {
+            long hash = partition * 0x100000001B3L + band;
+            for (int row = 0; row < config.getRows(); row++) {
+                hash = hash * 0x9E3779B97F4A7C15L + signature[band * config.getRows() + row];
+                hash ^= hash >>> 29;
+            }
+            keys[band] = hash;
+        }
+        return keys;
+    }
+
+    /**
+     * 预算按容差宽度取对数区间
+     */
+    private int budgetBand(int budget) {
+        return (int) Math.floor(Math.log(Math.max(budget, 1))
+                / Math.log(1 + properties.getSimilarity().getBudgetTolerance()));
+    }
+
+    /**
+     * 同行人数，未填写时按1人
+     */
+    private static int companionsOf(TripRequest request) {
+        return request.getCompanions() == null ? 1 : request.getCompanions();
+    }
+
+    private boolean withinBudget(int a, int b, double tolerance) {
+        return Math.abs(a - b) <= tolerance * Math.max(a, b);
+    }
+
+    /**
+     * 构建命中结果；过期条目由第一个命中者负责重新生成，失败后按重试间隔再次尝试
+     */
+    private Hit hit(Entry entry, boolean exact, double similarity) {
+        long age = age(entry);
+        long stale = Math.max(0, age - properties.getTtl() * 1000);
+        boolean revalidate = false;
+        if (stale > 0) {
+            staleHits.increment();
+            if (stale > properties.getStaleWhileRevalidate() * 1000) {
+                staleIfErrorHits.increment();
+            }
+            revalidate = System.currentTimeMillis() - entry.failedAt >= properties.getRevalidateRetryInterval() * 1000
+                    && entry.revalidating.compareAndSet(false, true);
+            if (revalidate) {
+                revalidations.increment();
+            }
+        }
+        return new Hit(entry.plan, exact, similarity, age, stale, revalidate);
+    }
+
+    /**
+     * 获取仍可返回的条目：未过期、在 stale-while-revalidate 宽限期内，或重新生成失败后在 stale-if-error 窗口内；
+     * 超出的条目顺便移除
+     */
+    private Entry live(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Entry entry = entries.get(id);
+        if (entry == null) {
+            return null;
+        }
+        long grace = entry.failedAt > 0
+                ? Math.max(properties.getStaleWhileRevalidate(), properties.getStaleIfError())
+                : properties.getStaleWhileRevalidate();
+        if (age(entry) > (properties.getTtl() + grace) * 1000) {
+            remove(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * 从最早的条目开始移除超出可返回窗口的条目，不必等到再次被查到；
+     * 条目按写入顺序排列，遇到仍在 stale-while-revalidate 宽限期内的条目即停止
+     */
+    private void purgeExpired() {
+        long windowMillis = (properties.getTtl() + properties.getStaleWhileRevalidate()) * 1000;
+        for (Entry entry : entries.values()) {
+            if (age(entry) <= windowMillis) {
+                return;
+            }
+            live(entry.id);
+        }
+    }
+
+    private void evict() {
+        while (size.get() > properties.getMaxEntries()) {
+            Map.Entry<Long, Entry> oldest = entries.firstEntry();
+            if (oldest == null) {
+                return;
+            }
+            remove(oldest.getValue());
+        }
+    }
+
+    private void remove(Entry entry) {
+        if (entry == null || entries.remove(entry.id) == null) {
+            return;
+        }
+        size.decrementAndGet();
+        exactIndex.remove(entry.exactKey, entry.id);
+        for (long key : entry.bucketKeys) {
+            buckets.computeIfPresent(key, (k, bucket) -> {
+                bucket.remove(entry.id);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    private long age(Entry entry) {
+        return System.currentTimeMillis() - entry.createdAt;
+    }
+
+    /**
+     * 请求的规范化键：目的地、天数、人数、预算、偏好和服务等级完全一致的请求键相同
+     */
+    public static String exactKey(TripRequest request, int days) {
+        return normalize(request.getDestination()) + "|" + days + "|" + request.getCompanions() + "|"
+                + request.getBudget() + "|" + (request.getPreferences() == null ? "" : request.getPreferences().trim())
+                + (request.getMode() == null ? "" : "|" + request.getMode());
+    }
+
+    private static String normalize(String destination) {
+        return destination == null ? "" : destination.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,302 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.JournalProperties;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * AI调用日志
+ *
+ * 由 app.ai.enable-logging 开启。每次后端调用在调用线程上只计算大小、哈希和token估算并放入有界队列，
+ * 由单独的写入线程编码后追加到分段文件，文件写满后滚动并删除最旧的分段；
+ * 队列已满或正文占用超出上限时丢弃记录（或只丢弃正文），不阻塞AI调用。
+ * 文件格式见 {@link AiCallRecord}，可用 {@link AiCallJournalReader} 离线读取
+ */
+@Component
+public class AiCallJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(AiCallJournal.class);
+
+    private static final String SEGMENT_PREFIX = "ai-journal-";
+    private static final String SEGMENT_SUFFIX = ".bin";
+    private static final DateTimeFormatter SEGMENT_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private JournalProperties properties;
+
+    @Value("${app.ai.enable-logging:false}")
+    private boolean enabled;
+
+    private BlockingQueue<AiCallRecord> queue;
+    private final AtomicLong queuedBodyChars = new AtomicLong();
+    private Thread writer;
+    private volatile boolean running;
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder bodiesDropped = new LongAdder();
+    private final LongAdder writeErrors = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private volatile String currentSegment;
+
+    // 以下状态只在写入线程中访问
+    private Path directory;
+    private DataOutputStream out;
+    private long segmentBytes;
+    private int segmentSequence;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        directory = Paths.get(properties.getDirectory());
+        queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        running = true;
+        writer = new Thread(this::drain, "ai-journal");
+        writer.setDaemon(true);
+        writer.start();
+        logger.info("🧾 AI调用日志: 目录={}, 分段上限={}MB x {}, 记录正文={}", directory.toAbsolutePath(),
+                   properties.getSegmentMaxBytes() / 1024 / 1024, properties.getMaxSegments(),
+                   properties.isIncludeBodies());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (writer == null) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(properties.getFlushIntervalMs() + 5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次后端调用，不阻塞
+     *
+     * @param response 响应正文，失败时为空
+     * @param error 失败原因，成功时为空
+     */
+    public void record(AiTool tool, String backend, Prompt prompt, String response, long latencyMillis,
+                       AiCallRecord.Outcome outcome, Throwable error) {
+        if (!enabled) {
+            return;
+        }
+        recorded.increment();
+        if (queue.remainingCapacity() == 0) {
+            dropped.increment();
+            return;
+        }
+
+        long promptHash = AiCallRecord.HASH_SEED;
+        int promptChars = 0;
+        int promptTokens = 0;
+        List<String> contents = new ArrayList<>(2);
+        for (Message message : prompt.getInstructions()) {
+            String content = Objects.toString(message.getContent(), "");
+            promptHash = AiCallRecord.hash(promptHash, content);
+            promptChars += content.length();
+            promptTokens += PromptBudgeter.estimateTokens(content);
+            contents.add(content);
+        }
+        int responseChars = response != null ? response.length() : 0;
+
+        String promptBody = null;
+        String responseBody = null;
+        long bodyChars = 0;
+        if (properties.isIncludeBodies()) {
+            bodyChars = promptChars + responseChars;
+            if (queuedBodyChars.addAndGet(bodyChars) <= properties.getMaxQueuedBodyChars()) {
+                promptBody = String.join("\n\n", contents);
+                responseBody = response;
+            } else {
+                queuedBodyChars.addAndGet(-bodyChars);
+                bodyChars = 0;
+                bodiesDropped.increment();
+            }
+        }
+
+        RequestContext context = RequestContext.current();
+        CallPriority priority = context.priority() != null ? context.priority() : CallPriority.INTERACTIVE;
+        String errorText = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null;
+        AiCallRecord record = new AiCallRecord(System.currentTimeMillis(), context.requestId(), tool.getKey(),
+                backend, context.mode(), priority, promptHash, promptChars, responseChars, promptTokens,
+                PromptBudgeter.estimateTokens(response), (int) latencyMillis, outcome, errorText,
+                promptBody, responseBody);
+        if (!queue.offer(record)) {
+            dropped.increment();
+            queuedBodyChars.addAndGet(-bodyChars);
+        }
+    }
+
+    /**
+     * 获取日志统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        if (!enabled) {
+            return result;
+        }
+        result.put("includeBodies", properties.isIncludeBodies());
+        result.put("recorded", recorded.sum());
+        result.put("written", written.sum());
+        result.put("dropped", dropped.sum());
+        result.put("bodiesDropped", bodiesDropped.sum());
+        result.put("writeErrors", writeErrors.sum());
+        result.put("bytesWritten", bytesWritten.sum());
+        result.put("queued", queue.size());
+        result.put("currentSegment", currentSegment);
+        return result;
+    }
+
+    /**
+     * 写入线程：逐条写入，空闲时刷新缓冲区，停止时写完队列中剩余的记录
+     */
+    private void drain() {
+        try {
+            while (running || !queue.isEmpty()) {
+                AiCallRecord record;
+                try {
+                    record = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    running = false;
+                    continue;
+                }
+                if (record == null) {
+                    flush();
+                } else {
+                    write(record);
+                }
+            }
+        } finally {
+            closeSegment();
+        }
+    }
+
+    private void write(AiCallRecord record) {
+        try {
+            if (out == null || segmentBytes >= properties.getSegmentMaxBytes()) {
+                rollSegment();
+            }
+            byte[] payload = record.encode();
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            out.writeInt(payload.length);
+            out.write(payload);
+            out.writeInt((int) crc.getValue());
+            segmentBytes += payload.length + 8;
+            bytesWritten.add(payload.length + 8);
+            written.increment();
+        } catch (IOException e) {
+            writeErrors.increment();
+            logger.warn("⚠️ AI调用日志写入失败，丢弃记录并在下一条记录时重新打开分段: {}", e.getMessage());
+            closeSegment();
+        } finally {
+            if (record.prompt() != null) {
+                queuedBodyChars.addAndGet(-(record.promptChars() + record.responseChars()));
+            }
+        }
+    }
+
+    private void flush() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.flush();
+        } catch (IOException e) {
+            writeErrors.increment();
+            logger.warn("⚠️ AI调用日志刷新失败: {}", e.getMessage());
+            closeSegment();
+        }
+    }
+
+    /**
+     * 关闭当前分段，创建新分段并写入文件头，然后删除超出保留数的旧分段
+     */
+    private void rollSegment() throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        String timestamp = LocalDateTime.now().format(SEGMENT_TIME);
+        Path path;
+        OutputStream file;
+        while (true) {
+            path = directory.resolve(String.format("%s%s-%04d%s", SEGMENT_PREFIX, timestamp,
+                                                   ++segmentSequence % 10000, SEGMENT_SUFFIX));
+            try {
+                file = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException e) {
+                // 同一秒内重启或滚动，换下一个序号
+            }
+        }
+        out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+        out.writeInt(AiCallRecord.MAGIC);
+        out.writeShort(AiCallRecord.VERSION);
+        out.writeLong(System.currentTimeMillis());
+        segmentBytes = 14;
+        currentSegment = path.getFileName().toString();
+        deleteOldSegments();
+    }
+
+    private void closeSegment() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            logger.warn("⚠️ AI调用日志分段关闭失败: {}", e.getMessage());
+        }
+        out = null;
+    }
+
+    private void deleteOldSegments() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> segments = files.filter(AiCallJournal::isSegment).sorted().toList();
+            for (int i = 0; i < segments.size() - properties.getMaxSegments(); i++) {
+                Files.deleteIfExists(segments.get(i));
+                logger.debug("🗑️ 删除旧的AI调用日志分段: {}", segments.get(i).getFileName());
+            }
+        } catch (IOException e) {
+            logger.warn("⚠️ 清理旧的AI调用日志分段失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 是否为日志分段文件；文件名以创建时间开头，按名称排序即按时间排序
+     */
+    static boolean isSegment(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+}
@@ -0,0 +1,195 @@
+package com.aitravelplanner.service.llm;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * AI调用日志的离线读取工具
+ *
+ * 用法: java -cp target/classes com.aitravelplanner.service.llm.AiCallJournalReader &lt;目录或分段文件&gt;
+ *       [--request 请求编号] [--tool 工具] [--bodies] [--summary]
+ *
+ * 逐条输出记录（制表符分隔），最后按工具汇总调用数、失败率、延迟分位数、token估算和重复提示词比例；
+ * --summary 只输出汇总，--bodies 同时输出记录的提示词和响应正文
+ */
+public class AiCallJournalReader {
+
+    private static final DateTimeFormatter TIME =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("用法: AiCallJournalReader <目录或分段文件> [--request 请求编号] [--tool 工具] [--bodies] [--summary]");
+            System.exit(1);
+        }
+        Path input = Paths.get(args[0]);
+        String request = null;
+        String tool = null;
+        boolean bodies = false;
+        boolean summaryOnly = false;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--request" -> request = args[++i];
+                case "--tool" -> tool = args[++i];
+                case "--bodies" -> bodies = true;
+                case "--summary" -> summaryOnly = true;
+                default -> throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+
+        Map<String, Summary> summaries = new TreeMap<>();
+        if (!summaryOnly) {
+            System.out.println("time\trequestId\ttool\tbackend\tmode\tpriority\toutcome\tlatencyMs"
+                               + "\tpromptChars\tpromptTokens\tresponseChars\tcompletionTokens\tpromptHash\terror");
+        }
+        for (Path segment : segments(input)) {
+            for (AiCallRecord record : read(segment)) {
+                if (request != null && !Long.toHexString(record.requestId()).equals(request)
+                        || tool != null && !record.tool().equals(tool)) {
+                    continue;
+                }
+                summaries.computeIfAbsent(record.tool(), key -> new Summary()).add(record);
+                if (!summaryOnly) {
+                    print(record, bodies);
+                }
+            }
+        }
+
+        System.out.println();
+        System.out.println("tool\tcalls\tfailures\trateLimited\tavgMs\tp50Ms\tp95Ms\tmaxMs"
+                           + "\tavgPromptTokens\tavgCompletionTokens\trepeatedPrompts");
+        summaries.forEach((key, summary) -> System.out.println(key + "\t" + summary));
+    }
+
+    /**
+     * 读取一个分段文件中的全部完整记录；文件末尾不完整或校验失败的记录被忽略
+     */
+    public static List<AiCallRecord> read(Path segment) throws IOException {
+        List<AiCallRecord> records = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+            if (in.readInt() != AiCallRecord.MAGIC) {
+                throw new IOException("不是AI调用日志分段: " + segment);
+            }
+            short version = in.readShort();
+            if (version != AiCallRecord.VERSION) {
+                throw new IOException("不支持的日志格式版本 " + version + ": " + segment);
+            }
+            in.readLong();
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                CRC32 crc = new CRC32();
+                try {
+                    in.readFully(payload);
+                    crc.update(payload);
+                    if ((int) crc.getValue() != in.readInt()) {
+                        System.err.println("⚠️ " + segment.getFileName() + " 第" + (records.size() + 1) + "条记录校验失败，停止读取该分段");
+                        break;
+                    }
+                } catch (EOFException e) {
+                    System.err.println("⚠️ " + segment.getFileName() + " 末尾的记录不完整，已忽略");
+                    break;
+                }
+                records.add(AiCallRecord.decode(payload));
+            }
+        }
+        return records;
+    }
+
+    private static List<Path> segments(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        try (Stream<Path> files = Files.list(input)) {
+            return files.filter(AiCallJournal::isSegment).sorted().toList();
+        }
+    }
+
+    private static void print(AiCallRecord record, boolean bodies) {
+        System.out.println(String.join("\t",
+            TIME.format(Instant.ofEpochMilli(record.timestamp())),
+            Long.toHexString(record.requestId()),
+            record.tool(),
+            record.backend(),
+            String.valueOf(record.mode()),
+            record.priority().getKey(),
+            record.outcome().name(),
+            String.valueOf(record.latencyMillis()),
+            String.valueOf(record.promptChars()),
+            String.valueOf(record.promptTokens()),
+            String.valueOf(record.responseChars()),
+            String.valueOf(record.completionTokens()),
+            Long.toHexString(record.promptHash()),
+            record.error() != null ? record.error().replace('\t', ' ').replace('\n', ' ') : ""));
+        if (bodies && record.prompt() != null) {
+            System.out.println("--- prompt ---");
+            System.out.println(record.prompt());
+            System.out.println("--- response ---");
+            System.out.println(record.response());
+            System.out.println("---");
+        }
+    }
+
+    /**
+     * 单个工具的汇总
+     */
+    private static final class Summary {
+        final List<Integer> latencies = new ArrayList<>();
+        final Set<Long> promptHashes = new HashSet<>();
+        int calls;
+        int failures;
+        int rateLimited;
+        long promptTokens;
+        long completionTokens;
+
+        void add(AiCallRecord record) {
+            calls++;
+            promptHashes.add(record.promptHash());
+            promptTokens += record.promptTokens();
+            completionTokens += record.completionTokens();
+            if (record.outcome() == AiCallRecord.Outcome.SUCCESS) {
+                latencies.add(record.latencyMillis());
+            } else {
+                failures++;
+                if (record.outcome() == AiCallRecord.Outcome.RATE_LIMITED) {
+                    rateLimited++;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            Collections.sort(latencies);
+            long total = latencies.stream().mapToLong(Integer::longValue).sum();
+            return String.join("\t",
+                String.valueOf(calls),
+                String.valueOf(failures),
+                String.valueOf(rateLimited),
+                String.valueOf(latencies.isEmpty() ? 0 : total / latencies.size()),
+                String.valueOf(percentile(0.50)),
+                String.valueOf(percentile(0.95)),
+                String.valueOf(latencies.isEmpty() ? 0 : latencies.get(latencies.size() - 1)),
+                String.valueOf(promptTokens / calls),
+                String.valueOf(completionTokens / calls),
+                String.format("%.1f%%", 100.0 * (calls - promptHashes.size()) / calls));
+        }
+
+        private int percentile(double p) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            return latencies.get(Math.min(latencies.size() - 1, (int) Math.ceil(latencies.size() * p) - 1));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.aitravelplanner.service.llm;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * AI调用日志中的一条记录，以及它在日志文件中的二进制格式
+ *
+ * 分段文件以文件头（魔数、格式版本、创建时间）开始，之后依次是记录：
+ * 负载长度(int) + 负载 + 负载的CRC32(int)；负载按字段顺序用 DataOutput 写入，正文用Deflate压缩，
+ * 没有正文时长度为-1。进程异常退出时文件末尾可能有不完整的记录，读取时以长度和校验值识别并忽略
+ *
+ * @param timestamp 调用结束时间（毫秒）
+ * @param requestId 规划请求编号，没有请求上下文时为0
+ * @param promptHash 提示词的64位FNV-1a哈希，用于统计重复的提示词
+ * @param promptTokens 按 {@link PromptBudgeter#estimateTokens} 估算的提示词token数
+ * @param completionTokens 按同样方式估算的响应token数
+ * @param error 失败时的异常信息，成功时为空
+ * @param prompt 提示词正文，未记录正文时为空
+ * @param response 响应正文，未记录正文时为空
+ */
+public record AiCallRecord(long timestamp, long requestId, String tool, String backend, String mode,
+                           CallPriority priority, long promptHash, int promptChars, int responseChars,
+                           int promptTokens, int completionTokens, int latencyMillis, Outcome outcome,
+                           String error, String prompt, String response) {
+
+    /** 分段文件头的魔数 "AIJ1" */
+    public static final int MAGIC = 0x41494A31;
+
+    public static final short VERSION = 1;
+
+    /** 提示词哈希（FNV-1a）的初始值 */
+    public static final long HASH_SEED = 0xcbf29ce484222325L;
+
+    /**
+     * 调用结果
+     */
+    public enum Outcome {
+        SUCCESS,
+        ERROR,
+        /** 提供商返回限流错误（429） */
+        RATE_LIMITED
+    }
+
+    /**
+     * 编码为负载字节，不含长度和校验值
+     */
+    public byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(timestamp);
+        out.writeLong(requestId);
+        out.writeUTF(tool);
+        out.writeUTF(backend);
+        out.writeUTF(mode != null ? mode : "");
+        out.writeByte(priority.ordinal());
+        out.writeLong(promptHash);
+        out.writeInt(promptChars);
+        out.writeInt(responseChars);
+        out.writeInt(promptTokens);
+        out.writeInt(completionTokens);
+        out.writeInt(latencyMillis);
+        out.writeByte(outcome.ordinal());
+        out.writeUTF(error != null ? truncate(error, 500) : "");
+        writeBody(out, prompt);
+        writeBody(out, response);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 从负载字节解码
+     */
+    public static AiCallRecord decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long timestamp = in.readLong();
+        long requestId = in.readLong();
+        String tool = in.readUTF();
+        String backend = in.readUTF();
+        String mode = in.readUTF();
+        CallPriority priority = CallPriority.values()[in.readByte()];
+        long promptHash = in.readLong();
+        int promptChars = in.readInt();
+        int responseChars = in.readInt();
+        int promptTokens = in.readInt();
+        int completionTokens = in.readInt();
+        int latencyMillis = in.readInt();
+        Outcome outcome = Outcome.values()[in.readByte()];
+        String error = in.readUTF();
+        String prompt = readBody(in);
+        String response = readBody(in);
+        return new AiCallRecord(timestamp, requestId, tool, backend, mode.isEmpty() ? null : mode, priority,
+                                promptHash, promptChars, responseChars, promptTokens, completionTokens,
+                                latencyMillis, outcome, error.isEmpty() ? null : error, prompt, response);
+    }
+
+    /**
+     * 64位FNV-1a哈希，逐个字符累加，可以分多段调用
+     */
+    public static long hash(long hash, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void writeBody(DataOutputStream out, String body) throws IOException {
+        if (body == null) {
+            out.writeInt(-1);
+            return;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(body.getBytes(StandardCharsets.UTF_8));
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length() / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                compressed.write(buffer, 0, deflater.deflate(buffer));
+            }
+            out.writeInt(compressed.size());
+            compressed.writeTo(out);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String readBody(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] compressed = new byte[length];
+        in.readFully(compressed);
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(length * 3);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && inflater.needsInput()) {
+                    throw new EOFException("正文压缩数据不完整");
+                }
+                body.write(buffer, 0, count);
+            }
+            return body.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IOException("正文压缩数据损坏", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static String truncate(String text, int maxChars) {
+        return text.length() <= maxChars ? text : text.substring(0, maxChars);
+    }
+}
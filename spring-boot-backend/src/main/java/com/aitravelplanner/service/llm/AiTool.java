@@ -0,0 +1,31 @@
+package com.aitravelplanner.service.llm;
+
+/**
+ * 工具流中调用大模型的工具
+ */
+public enum AiTool {
+
+    BUDGET("budget", "BudgetEstimationTool"),
+    ITINERARY("itinerary", "ItineraryPlanningTool"),
+    RECOMMENDATION("recommendation", "RecommendationExtractionTool"),
+    CONSOLIDATED("consolidated", "ConsolidatedPlanningTool");
+
+    private final String key;
+    private final String toolName;
+
+    AiTool(String key, String toolName) {
+        this.key = key;
+        this.toolName = toolName;
+    }
+
+    /**
+     * 配置文件中使用的键名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    public String getToolName() {
+        return toolName;
+    }
+}
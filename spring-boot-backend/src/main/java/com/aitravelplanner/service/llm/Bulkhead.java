@@ -0,0 +1,123 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.metrics.LatencyRecorder;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 隔离舱
+ * 独立的固定大小线程池加有界队列，满载时立即拒绝而不是让调用方等待；
+ * 调用方最多等待timeoutMs（包括在队列中的时间），超时后取消调用
+ */
+class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int queueSize;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final long createdAt = System.nanoTime();
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAccumulator peakActive = new LongAccumulator(Math::max, 0);
+    private final LongAccumulator peakQueued = new LongAccumulator(Math::max, 0);
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder busyNanos = new LongAdder();
+    private final LatencyRecorder queueWait = new LatencyRecorder();
+
+    Bulkhead(String name, int maxConcurrent, int queueSize, long timeoutMs) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.queueSize = queueSize;
+        this.timeoutMs = timeoutMs;
+        AtomicInteger threadNumber = new AtomicInteger();
+        BlockingQueue<Runnable> queue = queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>();
+        this.executor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 60, TimeUnit.SECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "bulkhead-" + name + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 在隔离舱中执行调用，调用方等待结果
+     *
+     * @throws BulkheadFullException 并发和队列都已满
+     * @throws IllegalStateException 超时未完成，调用已被取消
+     */
+    <T> T execute(Callable<T> task) {
+        long submittedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long start = System.nanoTime();
+                queueWait.record((start - submittedAt) / 1_000_000);
+                peakActive.accumulate(active.incrementAndGet());
+                try {
+                    return task.call();
+                } finally {
+                    active.decrementAndGet();
+                    busyNanos.add(System.nanoTime() - start);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BulkheadFullException(name);
+        }
+        peakQueued.accumulate(executor.getQueue().size());
+
+        try {
+            T result = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+            completed.increment();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.increment();
+            throw new IllegalStateException("AI调用超过" + timeoutMs + "ms未完成，已取消: " + name, e);
+        } catch (ExecutionException e) {
+            failed.increment();
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待AI调用时被中断", e);
+        }
+    }
+
+    /**
+     * 获取统计快照
+     *
+     * utilization为当前占用比例，avgUtilization为启动以来线程忙碌时间占总容量的比例
+     */
+    Map<String, Object> snapshot() {
+        long elapsed = Math.max(System.nanoTime() - createdAt, 1);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("maxConcurrent", maxConcurrent);
+        result.put("queueSize", queueSize);
+        result.put("active", active.get());
+        result.put("queued", executor.getQueue().size());
+        result.put("utilization", (double) active.get() / maxConcurrent);
+        result.put("avgUtilization", (double) busyNanos.sum() / elapsed / maxConcurrent);
+        result.put("peakActive", peakActive.get());
+        result.put("peakQueued", peakQueued.get());
+        result.put("completed", completed.sum());
+        result.put("failed", failed.sum());
+        result.put("rejected", rejected.sum());
+        result.put("timedOut", timedOut.sum());
+        result.put("queueWait", queueWait.snapshot());
+        return result;
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package com.aitravelplanner.service.llm;
+
+/**
+ * 隔离舱已满：并发和排队都达到上限，调用被立即拒绝
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String bulkhead) {
+        super("隔离舱已满: " + bulkhead);
+    }
+}
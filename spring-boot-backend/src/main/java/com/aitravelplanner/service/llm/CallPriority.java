@@ -0,0 +1,42 @@
+package com.aitravelplanner.service.llm;
+
+import java.util.*;
+
+/**
+ * AI调用的优先级类别，按重要程度从高到低排列
+ */
+public enum CallPriority {
+
+    /** 用户正在等待的请求：规划、查看未补全的天、增量修改 */
+    INTERACTIVE("interactive"),
+    /** 后台任务：渐进式行程的后台补全和预取、过期缓存的重新生成、批量规划 */
+    BATCH("batch"),
+    /** 预热任务：提前生成热门目的地等，可以随时让路 */
+    PREWARM("prewarm");
+
+    private final String key;
+
+    CallPriority(String key) {
+        this.key = key;
+    }
+
+    /**
+     * 配置文件和请求中使用的键名
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * 按键名查找，为空时返回 {@link #INTERACTIVE}
+     *
+     * @throws IllegalArgumentException 未知的键名
+     */
+    public static CallPriority of(String key) {
+        if (key == null) {
+            return INTERACTIVE;
+        }
+        return Arrays.stream(values()).filter(priority -> priority.key.equals(key)).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("未知的优先级: " + key));
+    }
+}
@@ -0,0 +1,11 @@
+package com.aitravelplanner.service.llm;
+
+/**
+ * 调度器拒绝AI调用：该优先级类别的排队已满或等待超时
+ */
+public class CallRejectedException extends RuntimeException {
+
+    public CallRejectedException(CallPriority priority, String reason) {
+        super("AI调用被调度器拒绝(" + priority.getKey() + "): " + reason);
+    }
+}
@@ -0,0 +1,27 @@
+package com.aitravelplanner.service.llm;
+
+/**
+ * AI调用生成内容的范围
+ *
+ * 同一工具生成整个行程和只生成其中几天的耗时相差数倍，调度器按工具和范围分别维护耗时基线
+ */
+public enum CallScope {
+
+    /** 生成工具的完整结果，例如整个行程 */
+    FULL(""),
+    /** 只生成结果的一部分：增量修改、修复和逐天补全的几天，或单个活动 */
+    PARTIAL(".partial");
+
+    private final String suffix;
+
+    CallScope(String suffix) {
+        this.suffix = suffix;
+    }
+
+    /**
+     * 耗时基线的键名，完整结果沿用工具键名
+     */
+    public String baselineKey(AiTool tool) {
+        return tool.getKey() + suffix;
+    }
+}
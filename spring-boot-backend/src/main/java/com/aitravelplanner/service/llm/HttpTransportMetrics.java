@@ -0,0 +1,91 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.metrics.LatencyRecorder;
+import org.apache.hc.core5.pool.ConnPoolControl;
+import org.apache.hc.core5.pool.PoolStats;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * HTTP传输指标
+ * 记录建连耗时、首字节时间和连接池使用情况
+ */
+@Component
+public class HttpTransportMetrics {
+
+    private final LatencyRecorder connectTime = new LatencyRecorder();
+    private final LatencyRecorder timeToFirstByte = new LatencyRecorder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder requestFailures = new LongAdder();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile String transport = "default";
+    private volatile ConnPoolControl<?> pool;
+
+    /**
+     * 登记当前使用的传输实现及其连接池
+     */
+    public void register(String transport, ConnPoolControl<?> pool) {
+        this.transport = transport;
+        this.pool = pool;
+    }
+
+    /**
+     * 记录一次新建连接（含TLS握手）的耗时
+     */
+    public void recordConnect(long millis) {
+        connectTime.record(millis);
+    }
+
+    public void requestStarted() {
+        requests.increment();
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * 记录一次请求收到响应头的耗时
+     */
+    public void requestFinished(long millis, boolean success) {
+        inFlight.decrementAndGet();
+        if (success) {
+            timeToFirstByte.record(millis);
+        } else {
+            requestFailures.increment();
+        }
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("transport", transport);
+        result.put("requests", requests.sum());
+        result.put("failures", requestFailures.sum());
+        result.put("inFlight", inFlight.get());
+        result.put("timeToFirstByte", timeToFirstByte.snapshot());
+
+        // 建连耗时和连接池状态仅连接池传输可观测
+        ConnPoolControl<?> current = pool;
+        if (current != null) {
+            result.put("connectTime", connectTime.snapshot());
+
+            // 新建连接数与请求数之比越低，连接复用越充分
+            long total = requests.sum();
+            result.put("newConnectionRatio", total == 0 ? 0.0 : (double) connectTime.getCount() / total);
+
+            PoolStats stats = current.getTotalStats();
+            Map<String, Object> poolStats = new LinkedHashMap<>();
+            poolStats.put("leased", stats.getLeased());
+            poolStats.put("available", stats.getAvailable());
+            poolStats.put("pending", stats.getPending());
+            poolStats.put("max", stats.getMax());
+            poolStats.put("utilization", stats.getMax() == 0 ? 0.0 : (double) stats.getLeased() / stats.getMax());
+            result.put("pool", poolStats);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,145 @@
+package com.aitravelplanner.service.llm;
+
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * 路由后端
+ * 封装一个提供商/模型组合，并维护其实时延迟、错误率和限流余量
+ */
+public class LlmBackend {
+
+    private final String name;
+    private final String model;
+    private final ChatClient chatClient;
+    private final BiFunction<Prompt, Integer, Prompt> promptCustomizer;
+    private final int requestsPerMinute;
+    private final double expectedLatencyMs;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+
+    // 以下状态在本对象锁内更新
+    private double ewmaLatencyMs;
+    private double ewmaErrorRate;
+    private long lastCallAt;
+    private long cooldownUntil;
+    private final Deque<Long> recentCalls = new ArrayDeque<>();
+
+    /**
+     * @param promptCustomizer 按后端调整提示词选项，第二个参数为本次调用的输出token上限（可能为空）
+     */
+    public LlmBackend(String name, String model, ChatClient chatClient,
+                      BiFunction<Prompt, Integer, Prompt> promptCustomizer,
+                      int requestsPerMinute, long expectedLatencyMs) {
+        this.name = name;
+        this.model = model;
+        this.chatClient = chatClient;
+        this.promptCustomizer = promptCustomizer;
+        this.requestsPerMinute = requestsPerMinute;
+        this.expectedLatencyMs = expectedLatencyMs;
+        this.ewmaLatencyMs = expectedLatencyMs;
+    }
+
+    /**
+     * 调用后端模型
+     *
+     * @param maxTokens 输出token上限，为空时使用后端默认值
+     */
+    public ChatResponse call(Prompt prompt, Integer maxTokens) {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            recentCalls.addLast(now);
+            lastCallAt = now;
+        }
+        calls.increment();
+        return chatClient.call(promptCustomizer.apply(prompt, maxTokens));
+    }
+
+    /**
+     * 记录一次成功调用
+     */
+    public synchronized void recordSuccess(long latencyMs, double alpha) {
+        ewmaLatencyMs = alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+        ewmaErrorRate = (1 - alpha) * ewmaErrorRate;
+    }
+
+    /**
+     * 记录一次失败调用；限流错误会让后端进入冷却
+     */
+    public synchronized void recordFailure(long latencyMs, boolean rateLimitError, double alpha, long cooldownMs) {
+        failures.increment();
+        ewmaLatencyMs = alpha * latencyMs + (1 - alpha) * ewmaLatencyMs;
+        ewmaErrorRate = alpha + (1 - alpha) * ewmaErrorRate;
+        if (rateLimitError) {
+            rateLimited.increment();
+            cooldownUntil = System.currentTimeMillis() + cooldownMs;
+        } else if (ewmaErrorRate > 0.5) {
+            // 错误率过高时暂时摘除
+            cooldownUntil = System.currentTimeMillis() + cooldownMs;
+        }
+    }
+
+    /**
+     * 当前是否可以接收请求
+     */
+    public synchronized boolean isAvailable() {
+        return System.currentTimeMillis() >= cooldownUntil && headroom() > 0;
+    }
+
+    /**
+     * 路由评分，越小越好：延迟估计按错误率放大，再按限流余量缩放
+     */
+    public synchronized double score(long probeIntervalMs) {
+        double latency = ewmaLatencyMs;
+        if (lastCallAt > 0 && System.currentTimeMillis() - lastCallAt > probeIntervalMs) {
+            // 长时间未使用的后端回落到先验值，给它重新被探测的机会
+            latency = Math.min(latency, expectedLatencyMs);
+        }
+        return latency * (1 + 4 * ewmaErrorRate) / Math.max(headroom(), 0.05);
+    }
+
+    /**
+     * 剩余限流余量，取值0到1
+     */
+    private double headroom() {
+        if (requestsPerMinute <= 0) {
+            return 1.0;
+        }
+        long windowStart = System.currentTimeMillis() - 60_000;
+        while (!recentCalls.isEmpty() && recentCalls.peekFirst() < windowStart) {
+            recentCalls.pollFirst();
+        }
+        return Math.max(0.0, 1.0 - (double) recentCalls.size() / requestsPerMinute);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    /**
+     * 获取统计快照
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("model", model);
+        result.put("calls", calls.sum());
+        result.put("failures", failures.sum());
+        result.put("rateLimited", rateLimited.sum());
+        result.put("ewmaLatencyMs", Math.round(ewmaLatencyMs));
+        result.put("errorRate", Math.round(ewmaErrorRate * 1000) / 1000.0);
+        result.put("headroom", Math.round(headroom() * 100) / 100.0);
+        result.put("coolingDown", System.currentTimeMillis() < cooldownUntil);
+        return result;
+    }
+}
@@ -0,0 +1,262 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.ModeProperties;
+import com.aitravelplanner.config.RoutingProperties;
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptionsBuilder;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Service;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+
+/**
+ * 大模型路由器
+ * 为每个工具、每次调用选择提供商/模型后端，依据实时EWMA延迟、错误率和限流余量评分，失败时自动切换到下一个候选
+ */
+@Service
+public class LlmRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmRouter.class);
+
+    private static final String DEFAULT_BACKEND = "default";
+
+    @Autowired
+    private RoutingProperties properties;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired
+    private ObjectProvider<ChatClient> chatClientProvider;
+
+    @Autowired
+    private ToolBulkheads toolBulkheads;
+
+    @Autowired
+    private PromptBudgeter promptBudgeter;
+
+    @Autowired
+    private LlmScheduler llmScheduler;
+
+    @Autowired
+    private AiCallJournal aiCallJournal;
+
+    @Autowired
+    private ModeProperties modeProperties;
+
+    private final Map<String, LlmBackend> backends = new LinkedHashMap<>();
+    private final Map<AiTool, List<LlmBackend>> candidates = new EnumMap<>(AiTool.class);
+    private final Map<String, LongAdder> selections = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        if (properties.isEnabled()) {
+            for (RoutingProperties.Backend config : properties.getBackends()) {
+                backends.put(config.getName(), createBackend(config));
+            }
+        }
+        if (backends.isEmpty()) {
+            backends.put(DEFAULT_BACKEND, new LlmBackend(DEFAULT_BACKEND, "default",
+                    resolveClient(properties.getDefaultClient()), LlmRouter::withMaxTokens, 0, 3000));
+        }
+        warnIfOutputUncapped();
+
+        for (AiTool tool : AiTool.values()) {
+            List<String> names = properties.getTools().get(tool.getKey());
+            List<LlmBackend> toolBackends = new ArrayList<>();
+            if (names == null || names.isEmpty()) {
+                toolBackends.addAll(backends.values());
+            } else {
+                for (String name : names) {
+                    LlmBackend backend = backends.get(name);
+                    if (backend == null) {
+                        throw new IllegalStateException("工具 " + tool.getKey() + " 引用了未注册的后端: " + name);
+                    }
+                    toolBackends.add(backend);
+                }
+            }
+            candidates.put(tool, toolBackends);
+            logger.info("🔀 工具 {} 的候选后端: {}", tool.getToolName(),
+                       toolBackends.stream().map(LlmBackend::getName).toList());
+        }
+    }
+
+    /**
+     * 为指定工具调用大模型
+     *
+     * 先按调用线程 {@link RequestContext} 中的优先级在全局调度器中排队，再进入工具隔离舱；
+     * 上下文随调用带到隔离舱线程，路由时从中读取输出token上限
+     *
+     * @param tool 发起调用的工具
+     * @param prompt 提示词
+     * @return 模型响应
+     * @throws CallRejectedException 调度器排队已满或等待超时
+     * @throws BulkheadFullException 该工具的隔离舱已满
+     */
+    public ChatResponse call(AiTool tool, Prompt prompt) {
+        return call(tool, CallScope.FULL, prompt);
+    }
+
+    /**
+     * 为指定工具调用大模型，只生成结果的一部分时使用，调度器为其单独维护耗时基线
+     *
+     * @param scope 生成内容的范围
+     * @see #call(AiTool, Prompt)
+     */
+    public ChatResponse call(AiTool tool, CallScope scope, Prompt prompt) {
+        RequestContext context = RequestContext.current();
+        return llmScheduler.execute(tool, scope, context.priority(), timer -> toolBulkheads.execute(tool, () -> {
+            timer.start();
+            return RequestContext.callWith(context, () -> route(tool, prompt));
+        }));
+    }
+
+    /**
+     * 按评分依次尝试候选后端
+     */
+    private ChatResponse route(AiTool tool, Prompt prompt) {
+        Integer maxTokens = RequestContext.current().maxTokens();
+        RuntimeException lastError = null;
+        for (LlmBackend backend : rank(tool)) {
+            long start = System.currentTimeMillis();
+            try {
+                ChatResponse response = backend.call(prompt, maxTokens);
+                long latency = System.currentTimeMillis() - start;
+                backend.recordSuccess(latency, properties.getEwmaAlpha());
+                selections.computeIfAbsent(tool.getKey() + "->" + backend.getName(), k -> new LongAdder()).increment();
+                promptBudgeter.recordCall(tool, backend.getName(), prompt);
+                aiCallJournal.record(tool, backend.getName(), prompt, contentOf(response), latency,
+                                     AiCallRecord.Outcome.SUCCESS, null);
+                return response;
+            } catch (RuntimeException e) {
+                long latency = System.currentTimeMillis() - start;
+                boolean rateLimitError = isRateLimitError(e);
+                backend.recordFailure(latency, rateLimitError, properties.getEwmaAlpha(), properties.getCooldownMs());
+                if (rateLimitError) {
+                    llmScheduler.recordRateLimited();
+                }
+                aiCallJournal.record(tool, backend.getName(), prompt, null, latency,
+                                     rateLimitError ? AiCallRecord.Outcome.RATE_LIMITED : AiCallRecord.Outcome.ERROR, e);
+                logger.warn("⚠️ 后端 {} 调用失败{}，尝试切换: {}", backend.getName(),
+                           rateLimitError ? "（限流）" : "", e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new IllegalStateException("没有可用的模型后端: " + tool.getKey());
+    }
+
+    /**
+     * 获取路由统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> backendStats = new LinkedHashMap<>();
+        backends.forEach((name, backend) -> backendStats.put(name, backend.snapshot()));
+
+        Map<String, Long> selectionStats = new TreeMap<>();
+        selections.forEach((key, count) -> selectionStats.put(key, count.sum()));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        result.put("backends", backendStats);
+        result.put("selections", selectionStats);
+        return result;
+    }
+
+    /**
+     * 按评分排序候选后端；可用后端在前，冷却中或无余量的后端作为最后兜底
+     */
+    private List<LlmBackend> rank(AiTool tool) {
+        List<LlmBackend> available = new ArrayList<>();
+        List<LlmBackend> unavailable = new ArrayList<>();
+        for (LlmBackend backend : candidates.get(tool)) {
+            (backend.isAvailable() ? available : unavailable).add(backend);
+        }
+        Comparator<LlmBackend> byScore = Comparator.comparingDouble(b -> b.score(properties.getProbeIntervalMs()));
+        available.sort(byScore);
+        unavailable.sort(byScore);
+        available.addAll(unavailable);
+        return available;
+    }
+
+    private LlmBackend createBackend(RoutingProperties.Backend config) {
+        String type = config.getType();
+        if ("stub".equals(type)) {
+            return new LlmBackend(config.getName(), "stub",
+                    new StubChatClient(config.getStubLatencyMs(), config.getStubErrorRate()),
+                    (prompt, maxTokens) -> prompt, config.getRequestsPerMinute(), config.getExpectedLatencyMs());
+        }
+
+        ChatClient client = resolveClient(config.getClientBean());
+        // chat-client类型使用ChatClient Bean的默认模型，输出上限通过通用选项传入
+        BiFunction<Prompt, Integer, Prompt> customizer = LlmRouter::withMaxTokens;
+        if ("openai".equals(type) && config.getModel() != null) {
+            OpenAiChatOptions options = OpenAiChatOptions.builder().withModel(config.getModel()).build();
+            customizer = (prompt, maxTokens) -> new Prompt(prompt.getInstructions(), maxTokens == null ? options
+                    : OpenAiChatOptions.builder().withModel(config.getModel()).withMaxTokens(maxTokens).build());
+        } else if (!"chat-client".equals(type) && !"openai".equals(type)) {
+            throw new IllegalStateException("不支持的后端类型: " + type);
+        }
+        return new LlmBackend(config.getName(), config.getModel(), client, customizer,
+                config.getRequestsPerMinute(), config.getExpectedLatencyMs());
+    }
+
+    /**
+     * 以通用选项设置输出token上限，各提供商的ChatClient将其合并到自身的默认选项中
+     */
+    private static Prompt withMaxTokens(Prompt prompt, Integer maxTokens) {
+        return maxTokens == null ? prompt
+                : new Prompt(prompt.getInstructions(), ChatOptionsBuilder.builder().withMaxTokens(maxTokens).build());
+    }
+
+    /**
+     * 服务等级配置了输出token上限而存在不支持上限的后端（本地桩）时，启动时提示一次
+     */
+    private void warnIfOutputUncapped() {
+        List<String> capped = ModeProperties.MODES.stream()
+                .filter(mode -> modeProperties.profile(mode).getMaxTokens() != null).toList();
+        List<String> uncapped = backends.values().stream()
+                .filter(backend -> "stub".equals(backend.getModel())).map(LlmBackend::getName).toList();
+        if (!capped.isEmpty() && !uncapped.isEmpty()) {
+            logger.warn("⚠️ 后端 {} 不支持输出token上限，服务等级 {} 的max-tokens对这些后端不生效", uncapped, capped);
+        }
+    }
+
+    private ChatClient resolveClient(String beanName) {
+        if (beanName != null && !beanName.isBlank()) {
+            return applicationContext.getBean(beanName, ChatClient.class);
+        }
+        ChatClient client = chatClientProvider.getIfUnique();
+        if (client == null) {
+            throw new IllegalStateException("存在多个或不存在ChatClient，请配置 app.ai.routing.default-client");
+        }
+        return client;
+    }
+
+    private String contentOf(ChatResponse response) {
+        if (!aiCallJournal.isEnabled() || response == null || response.getResult() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getContent();
+    }
+
+    private boolean isRateLimitError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            String message = String.valueOf(t.getMessage());
+            if (message.contains("429") || t.getClass().getSimpleName().contains("TooManyRequests")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
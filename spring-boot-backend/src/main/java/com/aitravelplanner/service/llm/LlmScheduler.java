@@ -0,0 +1,326 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.SchedulerProperties;
+import com.aitravelplanner.metrics.LatencyRecorder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 全局AI调用调度器
+ *
+ * 所有工具的AI调用共用一个并发上限，超出上限的调用按优先级类别排队：
+ * - 加权公平排队：每个类别按权重分得放行份额，交互请求优先但后台任务不会被饿死；
+ *   各类别还有最多占用的并发比例，为交互请求预留额度
+ * - 自适应并发（AIMD）：调用耗时保持在各工具基线附近且并发被用满时缓慢提高上限，
+ *   收到限流错误（429）或耗时明显超过基线时按比例降低，使调用量保持在提供商限额之下；
+ *   完整结果和只生成一部分的调用耗时相差数倍，分别维护基线
+ *
+ * 调度在进入工具隔离舱之前进行，排队的调用占用调用方线程而不占用隔离舱线程
+ */
+@Component
+public class LlmScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmScheduler.class);
+
+    @Autowired
+    private SchedulerProperties properties;
+
+    private final Map<CallPriority, ClassState> classes = new EnumMap<>(CallPriority.class);
+
+    private final LongAdder increases = new LongAdder();
+    private final LongAdder decreases = new LongAdder();
+    private final LongAdder rateLimitSignals = new LongAdder();
+    private final LongAdder latencySignals = new LongAdder();
+
+    // 以下状态在lock内更新
+    private final ReentrantLock lock = new ReentrantLock();
+    /** 键为 {@link CallScope#baselineKey} */
+    private final Map<String, Double> baselines = new TreeMap<>();
+    private double limit;
+    private int inFlight;
+    private double virtualTime;
+    private long lastDecreaseAt;
+
+    /**
+     * 单个优先级类别的排队状态
+     */
+    private static final class ClassState {
+        final CallPriority priority;
+        final SchedulerProperties.PriorityClass config;
+        final Deque<Waiter> waiting = new ArrayDeque<>();
+        final LatencyRecorder queueWait = new LatencyRecorder();
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder timedOut = new LongAdder();
+        int inFlight;
+        /** 该类别最近一个排队调用的虚拟完成时间 */
+        double lastFinish;
+
+        ClassState(CallPriority priority, SchedulerProperties.PriorityClass config) {
+            this.priority = priority;
+            this.config = config;
+        }
+    }
+
+    /**
+     * 排队中的调用
+     */
+    private static final class Waiter {
+        final double finish;
+        final Condition signal;
+        boolean admitted;
+
+        Waiter(double finish, Condition signal) {
+            this.finish = finish;
+            this.signal = signal;
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), properties.getInitialLimit()));
+        for (CallPriority priority : CallPriority.values()) {
+            SchedulerProperties.PriorityClass config = properties.getClasses()
+                    .getOrDefault(priority.getKey(), new SchedulerProperties.PriorityClass());
+            classes.put(priority, new ClassState(priority, config));
+        }
+        if (properties.isEnabled()) {
+            logger.info("🚦 AI调用调度器: 初始并发上限={}, 范围=[{}, {}]", limit,
+                       properties.getMinLimit(), properties.getMaxLimit());
+        }
+    }
+
+    /**
+     * 调用的执行计时
+     *
+     * 调用在隔离舱线程中真正开始时标记，此前在隔离舱队列中的等待不计入提供商耗时；未标记时从放行时开始计算
+     */
+    public static final class CallTimer {
+        private volatile long startedAt;
+
+        public void start() {
+            startedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 按优先级排队后执行一次AI调用
+     *
+     * @param tool 发起调用的工具，与scope一起确定耗时基线
+     * @param scope 生成内容的范围
+     * @param priority 优先级类别，为空时按交互请求处理
+     * @param call 调用，开始执行时调用 {@link CallTimer#start()}
+     * @throws CallRejectedException 排队已满或等待超时
+     */
+    public <T> T execute(AiTool tool, CallScope scope, CallPriority priority, Function<CallTimer, T> call) {
+        CallTimer timer = new CallTimer();
+        if (!properties.isEnabled()) {
+            return call.apply(timer);
+        }
+        ClassState state = classes.get(priority != null ? priority : CallPriority.INTERACTIVE);
+        acquire(state);
+        long admittedAt = System.currentTimeMillis();
+        boolean succeeded = false;
+        try {
+            T result = call.apply(timer);
+            succeeded = true;
+            return result;
+        } finally {
+            long start = timer.startedAt > 0 ? timer.startedAt : admittedAt;
+            release(state, scope.baselineKey(tool), succeeded ? System.currentTimeMillis() - start : -1);
+        }
+    }
+
+    /**
+     * 记录一次提供商限流错误，降低并发上限
+     */
+    public void recordRateLimited() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        rateLimitSignals.increment();
+        lock.lock();
+        try {
+            decrease(properties.getRateLimitBackoff(), "限流");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取调度统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        lock.lock();
+        try {
+            result.put("limit", Math.round(limit * 100) / 100.0);
+            result.put("inFlight", inFlight);
+            Map<String, Object> baselineStats = new LinkedHashMap<>();
+            baselines.forEach((key, baseline) -> baselineStats.put(key, Math.round(baseline)));
+            result.put("baselineMillis", baselineStats);
+            Map<String, Object> classStats = new LinkedHashMap<>();
+            for (ClassState state : classes.values()) {
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("weight", state.config.getWeight());
+                item.put("maxConcurrent", capOf(state));
+                item.put("inFlight", state.inFlight);
+                item.put("queued", state.waiting.size());
+                item.put("admitted", state.admitted.sum());
+                item.put("rejected", state.rejected.sum());
+                item.put("timedOut", state.timedOut.sum());
+                item.put("queueWait", state.queueWait.snapshot());
+                classStats.put(state.priority.getKey(), item);
+            }
+            result.put("classes", classStats);
+        } finally {
+            lock.unlock();
+        }
+        result.put("increases", increases.sum());
+        result.put("decreases", decreases.sum());
+        result.put("rateLimitSignals", rateLimitSignals.sum());
+        result.put("latencySignals", latencySignals.sum());
+        return result;
+    }
+
+    /**
+     * 排队直到被放行
+     */
+    private void acquire(ClassState state) {
+        long enqueuedAt = System.nanoTime();
+        lock.lock();
+        try {
+            if (state.waiting.size() >= state.config.getMaxQueued()) {
+                state.rejected.increment();
+                throw new CallRejectedException(state.priority, "排队已满");
+            }
+            // 虚拟完成时间 = 开始时间 + 1/权重，权重越大的类别排得越靠前
+            Waiter waiter = new Waiter(Math.max(virtualTime, state.lastFinish) + 1.0 / state.config.getWeight(),
+                                       lock.newCondition());
+            state.lastFinish = waiter.finish;
+            state.waiting.addLast(waiter);
+            dispatch();
+
+            long remaining = TimeUnit.MILLISECONDS.toNanos(state.config.getMaxWaitMs());
+            while (!waiter.admitted) {
+                if (remaining <= 0) {
+                    state.waiting.remove(waiter);
+                    state.timedOut.increment();
+                    logger.warn("⏳ {}类AI调用排队超时: 并发上限={}, 排队={}", state.priority.getKey(),
+                               permits(), state.waiting.size());
+                    throw new CallRejectedException(state.priority, "排队超时");
+                }
+                try {
+                    remaining = waiter.signal.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        inFlight--;
+                        state.inFlight--;
+                        dispatch();
+                    } else {
+                        state.waiting.remove(waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待AI调用时被中断", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        state.admitted.increment();
+        state.queueWait.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt));
+    }
+
+    /**
+     * 调用结束，按耗时调整并发上限并放行下一个排队的调用
+     *
+     * @param latencyMs 调用耗时，失败时为-1
+     */
+    private void release(ClassState state, String baselineKey, long latencyMs) {
+        lock.lock();
+        try {
+            // 本次调用结束前的并发数，用于判断上限是否被用满
+            int busy = inFlight;
+            inFlight--;
+            state.inFlight--;
+            if (latencyMs >= 0) {
+                adjust(baselineKey, latencyMs, busy);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按虚拟完成时间从小到大放行，直到并发上限用满或没有可放行的类别
+     */
+    private void dispatch() {
+        while (inFlight < permits()) {
+            ClassState next = null;
+            for (ClassState state : classes.values()) {
+                if (!state.waiting.isEmpty() && state.inFlight < capOf(state)
+                        && (next == null || state.waiting.peekFirst().finish < next.waiting.peekFirst().finish)) {
+                    next = state;
+                }
+            }
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = next.waiting.pollFirst();
+            waiter.admitted = true;
+            inFlight++;
+            next.inFlight++;
+            virtualTime = Math.max(virtualTime, waiter.finish);
+            waiter.signal.signal();
+        }
+    }
+
+    /**
+     * AIMD：耗时明显超过基线时按比例降低上限；否则在并发被用到一半以上时每个上限周期提高1
+     */
+    private void adjust(String baselineKey, long latencyMs, int busy) {
+        Double baseline = baselines.get(baselineKey);
+        if (baseline != null && latencyMs > baseline * properties.getLatencyTolerance()) {
+            latencySignals.increment();
+            decrease(properties.getLatencyBackoff(), "耗时" + latencyMs + "ms超过基线" + Math.round(baseline) + "ms");
+        } else if (busy >= permits() / 2.0 && limit < properties.getMaxLimit()) {
+            limit = Math.min(properties.getMaxLimit(), limit + 1.0 / limit);
+            increases.increment();
+        }
+        double alpha = properties.getBaselineAlpha();
+        baselines.put(baselineKey, baseline == null ? latencyMs : alpha * latencyMs + (1 - alpha) * baseline);
+    }
+
+    private void decrease(double factor, String reason) {
+        long now = System.currentTimeMillis();
+        if (now - lastDecreaseAt < properties.getDecreaseIntervalMs()) {
+            return;
+        }
+        lastDecreaseAt = now;
+        double previous = limit;
+        limit = Math.max(properties.getMinLimit(), limit * factor);
+        decreases.increment();
+        logger.info("📉 AI调用并发上限 {} -> {}（{}）", Math.round(previous * 10) / 10.0,
+                   Math.round(limit * 10) / 10.0, reason);
+    }
+
+    private int permits() {
+        return Math.max(1, (int) limit);
+    }
+
+    private int capOf(ClassState state) {
+        return Math.max(1, (int) (permits() * state.config.getMaxShare()));
+    }
+}
@@ -0,0 +1,231 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.PromptProperties;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 提示词预算器
+ *
+ * 提示词由固定的系统消息和较小的用户消息组成：系统消息对同一工具逐字节不变，可命中提供商的前缀缓存；
+ * 用户消息由预编译模板渲染，其中的自由文本字段按token上限裁剪，整条消息超出工具上限时依次压缩这些字段。
+ *
+ * token数按字符估算（汉字约1个token，其余约4个字符1个token），偏保守，只用于限额和统计
+ */
+@Component
+public class PromptBudgeter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromptBudgeter.class);
+
+    private static final String ELLIPSIS = "…";
+
+    @Autowired
+    private PromptProperties properties;
+
+    private final Map<AiTool, Stats> stats = new EnumMap<>(AiTool.class);
+    private final Map<String, Long> lastSent = new ConcurrentHashMap<>();
+    private final Map<String, Integer> systemTokens = new ConcurrentHashMap<>();
+
+    public PromptBudgeter() {
+        for (AiTool tool : AiTool.values()) {
+            stats.put(tool, new Stats());
+        }
+    }
+
+    private static final class Stats {
+        final LongAdder prompts = new LongAdder();
+        final LongAdder systemTokens = new LongAdder();
+        final LongAdder userTokens = new LongAdder();
+        final LongAccumulator maxPromptTokens = new LongAccumulator(Math::max, 0);
+        final LongAdder trimmedPrompts = new LongAdder();
+        final LongAdder trimmedTokens = new LongAdder();
+        final LongAdder calls = new LongAdder();
+        final LongAdder prefixHits = new LongAdder();
+        final LongAdder cachedPrefixTokens = new LongAdder();
+    }
+
+    /**
+     * 构建提示词
+     *
+     * @param tool 发起调用的工具
+     * @param system 固定的系统消息，应为常量，不包含任何请求相关的内容
+     * @param template 用户消息模板
+     * @param values 模板变量
+     * @param freeText 可裁剪的自由文本字段，整条消息超出上限时按列出的顺序压缩
+     */
+    public Prompt build(AiTool tool, String system, PromptTemplate template, Map<String, ?> values,
+                        String... freeText) {
+        Map<String, Object> fitted = new HashMap<>(values);
+        long trimmed = 0;
+        for (String field : freeText) {
+            trimmed += fitField(fitted, field, properties.getFieldMaxTokens());
+        }
+
+        String user = template.render(fitted);
+        int userTokens = estimateTokens(user);
+        Integer limit = properties.getMaxUserTokens().get(tool.getKey());
+        for (int i = 0; limit != null && userTokens > limit && i < freeText.length; i++) {
+            int fieldTokens = estimateTokens(String.valueOf(fitted.get(freeText[i])));
+            trimmed += fitField(fitted, freeText[i], Math.max(0, fieldTokens - (userTokens - limit)));
+            user = template.render(fitted);
+            userTokens = estimateTokens(user);
+        }
+        if (limit != null && userTokens > limit) {
+            logger.warn("⚠️ 工具 {} 的提示词裁剪后仍超出上限: {} > {} tokens", tool.getToolName(), userTokens, limit);
+        }
+
+        int sysTokens = systemTokens.computeIfAbsent(system, PromptBudgeter::estimateTokens);
+        Stats toolStats = stats.get(tool);
+        toolStats.prompts.increment();
+        toolStats.systemTokens.add(sysTokens);
+        toolStats.userTokens.add(userTokens);
+        toolStats.maxPromptTokens.accumulate(sysTokens + userTokens);
+        if (trimmed > 0) {
+            toolStats.trimmedPrompts.increment();
+            toolStats.trimmedTokens.add(trimmed);
+        }
+        return new Prompt(List.of(new SystemMessage(system), new UserMessage(user)));
+    }
+
+    /**
+     * 记录一次成功发送的调用，并判断系统消息是否可能命中该后端的前缀缓存
+     *
+     * 提供商的缓存按模型隔离，并在一段时间无请求后失效，这里按后端和系统消息记录最近发送时间来估算
+     */
+    public void recordCall(AiTool tool, String backend, Prompt prompt) {
+        List<Message> messages = prompt.getInstructions();
+        if (messages.isEmpty() || !(messages.get(0) instanceof SystemMessage system)) {
+            return;
+        }
+        Stats toolStats = stats.get(tool);
+        toolStats.calls.increment();
+
+        String text = system.getContent();
+        int prefixTokens = systemTokens.computeIfAbsent(text, PromptBudgeter::estimateTokens);
+        long now = System.currentTimeMillis();
+        Long previous = lastSent.put(backend + '\n' + text, now);
+        boolean hit = previous != null && now - previous <= properties.getPrefixCacheTtlMs()
+                && prefixTokens >= properties.getPrefixCacheMinTokens();
+        if (hit) {
+            toolStats.prefixHits.increment();
+            toolStats.cachedPrefixTokens.add(prefixTokens);
+        }
+        logger.debug("🧮 {} -> {}: 提示词约{} tokens（系统{}，{}）", tool.getKey(), backend,
+                    prefixTokens + estimateTokens(messages.get(messages.size() - 1).getContent()),
+                    prefixTokens, hit ? "前缀命中" : "前缀未命中");
+    }
+
+    /**
+     * 获取提示词统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> tools = new LinkedHashMap<>();
+        stats.forEach((tool, s) -> {
+            long prompts = s.prompts.sum();
+            long calls = s.calls.sum();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("prompts", prompts);
+            item.put("avgSystemTokens", prompts == 0 ? 0 : s.systemTokens.sum() / prompts);
+            item.put("avgUserTokens", prompts == 0 ? 0 : s.userTokens.sum() / prompts);
+            item.put("maxPromptTokens", s.maxPromptTokens.get());
+            item.put("maxUserTokens", properties.getMaxUserTokens().get(tool.getKey()));
+            item.put("trimmedPrompts", s.trimmedPrompts.sum());
+            item.put("trimmedTokens", s.trimmedTokens.sum());
+            item.put("calls", calls);
+            item.put("prefixHits", s.prefixHits.sum());
+            item.put("prefixHitRate", calls == 0 ? 0.0 : (double) s.prefixHits.sum() / calls);
+            item.put("cachedPrefixTokens", s.cachedPrefixTokens.sum());
+            tools.put(tool.getKey(), item);
+        });
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("fieldMaxTokens", properties.getFieldMaxTokens());
+        result.put("prefixCacheMinTokens", properties.getPrefixCacheMinTokens());
+        result.put("tools", tools);
+        return result;
+    }
+
+    /**
+     * 将字段裁剪到指定token数
+     *
+     * @return 裁掉的token数
+     */
+    private long fitField(Map<String, Object> values, String field, int maxTokens) {
+        Object value = values.get(field);
+        if (value == null) {
+            return 0;
+        }
+        String text = value.toString();
+        int tokens = estimateTokens(text);
+        if (tokens <= maxTokens) {
+            return 0;
+        }
+        String fitted = truncate(text, maxTokens);
+        values.put(field, fitted);
+        return tokens - estimateTokens(fitted);
+    }
+
+    /**
+     * 估算文本的token数
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int narrow = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isWide(codePoint)) {
+                wide++;
+            } else {
+                narrow++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return wide + (narrow + 3) / 4;
+    }
+
+    /**
+     * 截取不超过指定token数的前缀，被截断时以省略号结尾
+     */
+    static String truncate(String text, int maxTokens) {
+        if (maxTokens <= 1) {
+            return maxTokens == 1 ? ELLIPSIS : "";
+        }
+        int budget = maxTokens - 1;
+        int wide = 0;
+        int narrow = 0;
+        int end = 0;
+        while (end < text.length()) {
+            int codePoint = text.codePointAt(end);
+            int nextWide = wide + (isWide(codePoint) ? 1 : 0);
+            int nextNarrow = narrow + (isWide(codePoint) ? 0 : 1);
+            if (nextWide + (nextNarrow + 3) / 4 > budget) {
+                break;
+            }
+            wide = nextWide;
+            narrow = nextNarrow;
+            end += Character.charCount(codePoint);
+        }
+        return end >= text.length() ? text : text.substring(0, end) + ELLIPSIS;
+    }
+
+    /**
+     * CJK文字、全角符号等宽字符，每个约占1个token
+     */
+    private static boolean isWide(int codePoint) {
+        return codePoint >= 0x2E80;
+    }
+}
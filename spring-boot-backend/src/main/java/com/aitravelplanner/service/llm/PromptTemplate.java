@@ -0,0 +1,82 @@
+package com.aitravelplanner.service.llm;
+
+import java.util.*;
+
+/**
+ * 预编译的提示词模板
+ *
+ * 模板中的 {name} 占位符在编译时拆分为固定片段和变量，渲染时只按顺序拼接，不再逐字符扫描整段模板
+ */
+public final class PromptTemplate {
+
+    private final String[] literals;
+    private final String[] names;
+    private final int literalLength;
+
+    private PromptTemplate(String[] literals, String[] names) {
+        this.literals = literals;
+        this.names = names;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板，占位符格式为 {name}，name 只包含字母和数字
+     */
+    public static PromptTemplate compile(String template) {
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int last = 0;
+        int index = 0;
+        while ((index = template.indexOf('{', index)) >= 0) {
+            int end = template.indexOf('}', index);
+            if (end < 0) {
+                break;
+            }
+            String name = template.substring(index + 1, end);
+            if (name.isEmpty() || !name.chars().allMatch(Character::isLetterOrDigit)) {
+                index++;
+                continue;
+            }
+            literals.add(template.substring(last, index));
+            names.add(name);
+            last = end + 1;
+            index = last;
+        }
+        literals.add(template.substring(last));
+        return new PromptTemplate(literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    /**
+     * 模板中出现的变量名，按出现顺序去重
+     */
+    public Set<String> getNames() {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    /**
+     * 渲染模板
+     *
+     * @param values 变量值，null渲染为空字符串
+     * @throws IllegalArgumentException 缺少模板中的变量
+     */
+    public String render(Map<String, ?> values) {
+        int capacity = literalLength;
+        for (String name : names) {
+            capacity += String.valueOf(values.get(name)).length();
+        }
+        StringBuilder text = new StringBuilder(capacity);
+        for (int i = 0; i < names.length; i++) {
+            text.append(literals[i]);
+            if (!values.containsKey(names[i])) {
+                throw new IllegalArgumentException("提示词模板缺少变量: " + names[i]);
+            }
+            Object value = values.get(names[i]);
+            text.append(value == null ? "" : value);
+        }
+        return text.append(literals[names.length]).toString();
+    }
+}
@@ -0,0 +1,86 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.ModeProperties;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * 请求级的AI调用上下文
+ *
+ * 由编排器按请求的服务等级设置，工具在构建提示词、路由器和调度器在发送请求时读取，不必在每个工具方法上逐层传递；
+ * 工具流线程池通过任务装饰器、路由器在进入隔离舱时把提交者的上下文带到工作线程
+ *
+ * @param requestId 规划请求的编号，写入AI调用日志以关联同一请求的多次调用；未设置上下文时为0
+ * @param mode 服务等级档位
+ * @param maxTokens 每次AI调用的输出token上限，为空时使用后端默认值
+ * @param detail 写入行程提示词的详细程度要求
+ * @param priority AI调用在全局调度器中的优先级类别
+ */
+public record RequestContext(long requestId, String mode, Integer maxTokens, String detail, CallPriority priority) {
+
+    /**
+     * 未设置上下文时使用：不限制输出，按最详细的要求生成，按交互请求调度
+     */
+    public static final RequestContext DEFAULT =
+            new RequestContext(0, null, null, "每天3-5个主要活动，描述具体详细并包含实用信息", CallPriority.INTERACTIVE);
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 当前线程的上下文，未设置时为 {@link #DEFAULT}
+     */
+    public static RequestContext current() {
+        RequestContext context = CURRENT.get();
+        return context != null ? context : DEFAULT;
+    }
+
+    /**
+     * 按服务等级档位和优先级创建上下文，每次生成新的请求编号
+     *
+     * @param mode 档位名称，为空时使用默认档位
+     */
+    public static RequestContext forMode(ModeProperties modes, String mode, CallPriority priority) {
+        ModeProperties.Profile profile = modes.profile(mode);
+        long requestId = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+        return new RequestContext(requestId, mode, profile.getMaxTokens(), profile.getDetail(), priority);
+    }
+
+    /**
+     * 复制上下文并替换优先级
+     */
+    public RequestContext withPriority(CallPriority priority) {
+        return new RequestContext(requestId, mode, maxTokens, detail, priority);
+    }
+
+    /**
+     * 在指定上下文中执行，结束后恢复原上下文
+     */
+    public static <T> T callWith(RequestContext context, Supplier<T> action) {
+        RequestContext previous = CURRENT.get();
+        CURRENT.set(context);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * 包装任务，使其在提交者的上下文中执行；用作线程池的任务装饰器
+     */
+    public static Runnable wrap(Runnable task) {
+        RequestContext context = CURRENT.get();
+        if (context == null) {
+            return task;
+        }
+        return () -> callWith(context, () -> {
+            task.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,150 @@
+package com.aitravelplanner.service.llm;
+
+import org.springframework.ai.chat.ChatClient;
+import org.springframework.ai.chat.ChatResponse;
+import org.springframework.ai.chat.Generation;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地桩模型
+ * 不访问网络，按提示词内容返回固定结构的JSON，用于离线测试路由和压测工具流
+ */
+public class StubChatClient implements ChatClient {
+
+    private static final Pattern DAYS = Pattern.compile("旅行天数：(\\d+)天");
+    private static final Pattern START_DATE = Pattern.compile("出发日期：(\\d{4}-\\d{2}-\\d{2})");
+    private static final Pattern TOTAL_BUDGET = Pattern.compile("总预算：(\\d+)元");
+    private static final Pattern DAILY_BUDGET = Pattern.compile("每日预算：(\\d+)");
+    private static final Pattern DETAILED_DAYS = Pattern.compile("只详细安排前(\\d+)天");
+
+    private final long latencyMs;
+    private final double errorRate;
+
+    public StubChatClient(long latencyMs, double errorRate) {
+        this.latencyMs = latencyMs;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        if (latencyMs > 0) {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("桩模型调用被中断", e);
+            }
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            throw new IllegalStateException("桩模型模拟调用失败");
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Message message : prompt.getInstructions()) {
+            text.append(message.getContent()).append('\n');
+        }
+        return new ChatResponse(List.of(new Generation(respond(text.toString()))));
+    }
+
+    private String respond(String prompt) {
+        if (prompt.contains("\"itinerary\"")) {
+            // 合并生成：预算、推荐和行程放在同一个响应中
+            int days = intOf(DAYS, prompt, 3);
+            return "{\"budget\": " + budget(prompt) + ", \"recommendations\": " + recommendations()
+                    + ", \"itinerary\": " + itinerary(days, dateOf(prompt), intOf(TOTAL_BUDGET, prompt, 3000) / days, days) + "}";
+        }
+        if (prompt.contains("budgetAllocation")) {
+            return budget(prompt);
+        }
+        if (prompt.contains("\"days\"")) {
+            int days = intOf(DAYS, prompt, 3);
+            if (prompt.contains("\"a\": [")) {
+                return compactItinerary(days, intOf(DAILY_BUDGET, prompt, 1000), intOf(DETAILED_DAYS, prompt, days));
+            }
+            return itinerary(days, dateOf(prompt), intOf(DAILY_BUDGET, prompt, 1000), intOf(DETAILED_DAYS, prompt, days));
+        }
+        return recommendations();
+    }
+
+    private String budget(String prompt) {
+        int days = intOf(DAYS, prompt, 3);
+        int total = intOf(TOTAL_BUDGET, prompt, 3000);
+        return """
+            {"dailyBudget": %d, "budgetAllocation": {"transportation": "30%%", "accommodation": "30%%",
+             "dining": "25%%", "attractions": "10%%", "shopping": "5%%"},
+             "recommendations": "提前预订住宿和交通"}
+            """.formatted(total / Math.max(days, 1));
+    }
+
+    private String recommendations() {
+        return """
+            {"restaurants": ["本地老字号 - 招牌菜", "夜市小吃 - 地道风味", "景观餐厅 - 适合晚餐"],
+             "attractions": ["城市地标 - 上午人少", "历史博物馆 - 周一闭馆"],
+             "tips": ["提前预约热门景点", "高峰期避开地铁换乘站", "随身携带身份证件"],
+             "localInsights": ["尊重当地习俗"]}
+            """;
+    }
+
+    private String itinerary(int days, LocalDate start, int dailyBudget, int detailedDays) {
+        StringBuilder json = new StringBuilder("{\"summary\": \"桩模型生成的行程\", \"days\": [");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            if (i >= detailedDays) {
+                // 行程骨架：后面的天只有标题
+                json.append("""
+                    {"date": "%s", "title": "第%d天：城市漫步", "dailyBudget": %d, "activities": []}"""
+                        .formatted(start.plusDays(i), i + 1, dailyBudget));
+                continue;
+            }
+            json.append("""
+                {"date": "%s", "title": "第%d天：城市漫步", "dailyBudget": %d, "activities": [
+                  {"time": "09:00", "activity": "地标游览", "desc": "参观城市地标", "location": "市中心", "cost": 100, "category": "景点"},
+                  {"time": "12:00", "activity": "午餐", "desc": "品尝当地美食", "location": "美食街", "cost": 80, "category": "餐饮"},
+                  {"time": "15:00", "activity": "博物馆", "desc": "了解当地历史", "location": "博物馆", "cost": 60, "category": "文化"}
+                ]}""".formatted(start.plusDays(i), i + 1, dailyBudget));
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * 紧凑输出格式的行程，内容与 itinerary 相同
+     */
+    private String compactItinerary(int days, int dailyBudget, int detailedDays) {
+        StringBuilder json = new StringBuilder("{\"summary\": \"桩模型生成的行程\", \"days\": [");
+        for (int i = 0; i < days; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("""
+                {"d": %d, "t": "第%d天：城市漫步", "b": %d, "a": [""".formatted(i + 1, i + 1, dailyBudget));
+            if (i < detailedDays) {
+                json.append("""
+                  ["09:00", "地标游览", "参观城市地标", "市中心", 100, 1],
+                  ["12:00", "午餐", "品尝当地美食", "美食街", 80, 2],
+                  ["15:00", "博物馆", "了解当地历史", "博物馆", 60, 3]
+                """);
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private int intOf(Pattern pattern, String text, int defaultValue) {
+        Matcher matcher = pattern.matcher(text);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : defaultValue;
+    }
+
+    private LocalDate dateOf(String text) {
+        Matcher matcher = START_DATE.matcher(text);
+        return matcher.find() ? LocalDate.parse(matcher.group(1)) : LocalDate.now();
+    }
+}
@@ -0,0 +1,88 @@
+package com.aitravelplanner.service.llm;
+
+import com.aitravelplanner.config.BulkheadProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.Callable;
+
+/**
+ * 工具隔离舱
+ * 每个工具的AI调用在各自的线程池中执行，互不占用并发额度；某个工具变慢时只会耗尽自己的额度，
+ * 之后的调用被立即拒绝，由该工具返回兜底结果
+ */
+@Component
+public class ToolBulkheads {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolBulkheads.class);
+
+    @Autowired
+    private BulkheadProperties properties;
+
+    /**
+     * 调用方等待隔离舱中调用完成的上限，包括排队时间
+     */
+    @Value("${app.ai.timeout:60000}")
+    private long timeoutMs;
+
+    private final Map<AiTool, Bulkhead> bulkheads = new EnumMap<>(AiTool.class);
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (AiTool tool : AiTool.values()) {
+            BulkheadProperties.Tool config = properties.getTools().getOrDefault(tool.getKey(), new BulkheadProperties.Tool());
+            bulkheads.put(tool, new Bulkhead(tool.getKey(), config.getMaxConcurrent(), config.getQueueSize(), timeoutMs));
+            logger.info("🧱 工具 {} 隔离舱: 并发上限={}, 队列上限={}", tool.getToolName(),
+                       config.getMaxConcurrent(), config.getQueueSize());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        bulkheads.values().forEach(Bulkhead::shutdown);
+    }
+
+    /**
+     * 在工具的隔离舱中执行AI调用
+     *
+     * @throws BulkheadFullException 隔离舱已满
+     * @throws IllegalStateException 超过app.ai.timeout未完成
+     */
+    public <T> T execute(AiTool tool, Callable<T> call) {
+        Bulkhead bulkhead = bulkheads.get(tool);
+        if (bulkhead == null) {
+            try {
+                return call.call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        try {
+            return bulkhead.execute(call);
+        } catch (BulkheadFullException e) {
+            logger.warn("🚫 {}隔离舱已满，拒绝本次AI调用", tool.getToolName());
+            throw e;
+        }
+    }
+
+    /**
+     * 获取各隔离舱统计
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", properties.isEnabled());
+        bulkheads.forEach((tool, bulkhead) -> result.put(tool.getKey(), bulkhead.snapshot()));
+        return result;
+    }
+}
@@ -0,0 +1,135 @@
+package com.aitravelplanner.service.poi;
+
+import java.util.*;
+
+/**
+ * 单个城市的景点餐厅目录、贴士和文化洞察
+ */
+public class CityGuide {
+
+    private final String name;
+    private final List<String> tips;
+    private final List<String> insights;
+    private final List<PointOfInterest> pois;
+    private final SpatialGrid grid;
+    /** 行程文本中可能出现的地点称呼 → 地点 */
+    private final Map<String, PointOfInterest> mentions = new LinkedHashMap<>();
+
+    CityGuide(String name, List<String> tips, List<String> insights, List<PointOfInterest> pois, double cellSizeKm) {
+        this.name = name;
+        this.tips = List.copyOf(tips);
+        this.insights = List.copyOf(insights);
+        this.pois = List.copyOf(pois);
+        this.grid = new SpatialGrid(pois, cellSizeKm);
+        for (PointOfInterest poi : pois) {
+            for (String mention : mentionsOf(poi.name())) {
+                mentions.putIfAbsent(mention, poi);
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<String> getTips() {
+        return tips;
+    }
+
+    public List<String> getInsights() {
+        return insights;
+    }
+
+    public int size() {
+        return pois.size();
+    }
+
+    /**
+     * 找出行程文本中提到的地点，作为周边推荐的锚点
+     */
+    public List<PointOfInterest> findMentioned(Collection<String> texts) {
+        Set<PointOfInterest> found = new LinkedHashSet<>();
+        for (String text : texts) {
+            if (text == null) {
+                continue;
+            }
+            for (Map.Entry<String, PointOfInterest> mention : mentions.entrySet()) {
+                if (text.contains(mention.getKey())) {
+                    found.add(mention.getValue());
+                }
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    /**
+     * 推荐某一类地点
+     *
+     * 按偏好标签匹配数、与锚点的距离（半径内越近越优先）和消费水平打分，已在行程中的地点不再推荐
+     *
+     * @param category 地点类别
+     * @param preferences 用户偏好原文
+     * @param anchors 行程中提到的地点
+     * @param maxPriceLevel 可接受的最高消费水平，超出的降低排序
+     * @param radiusKm 锚点周边搜索半径
+     * @param limit 返回条数
+     */
+    public List<PointOfInterest> recommend(String category, String preferences, List<PointOfInterest> anchors,
+                                           int maxPriceLevel, double radiusKm, int limit) {
+        Map<PointOfInterest, Double> nearest = new HashMap<>();
+        for (PointOfInterest anchor : anchors) {
+            grid.within(anchor.lat(), anchor.lng(), radiusKm)
+                .forEach((poi, distance) -> nearest.merge(poi, distance, Math::min));
+        }
+
+        Set<PointOfInterest> excluded = new HashSet<>(anchors);
+        Map<PointOfInterest, Double> scores = new HashMap<>();
+        for (PointOfInterest poi : pois) {
+            if (!poi.category().equals(category) || excluded.contains(poi)) {
+                continue;
+            }
+            double score = 0;
+            for (String tag : poi.tags()) {
+                if (preferences != null && preferences.contains(tag)) {
+                    score += 2;
+                }
+            }
+            Double distance = nearest.get(poi);
+            if (distance != null) {
+                score += 1.5 * (1 - distance / radiusKm);
+            }
+            if (poi.priceLevel() > maxPriceLevel) {
+                score -= 2;
+            }
+            scores.put(poi, score);
+        }
+
+        return scores.entrySet().stream()
+                .sorted(Map.Entry.<PointOfInterest, Double>comparingByValue().reversed()
+                        .thenComparing(entry -> entry.getKey().name()))
+                .limit(limit)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * 地点在行程文本中可能的称呼：去掉分店说明的名称、括号中的别称、去掉通用后缀的简称
+     */
+    private static List<String> mentionsOf(String poiName) {
+        List<String> result = new ArrayList<>();
+        int bracket = poiName.indexOf('（');
+        String base = bracket > 0 ? poiName.substring(0, bracket) : poiName;
+        result.add(base);
+        if (bracket > 0 && poiName.endsWith("）")) {
+            String alias = poiName.substring(bracket + 1, poiName.length() - 1);
+            if (!alias.endsWith("店")) {
+                result.add(alias);
+            }
+        }
+        String shortName = base.replaceAll("(公园|景区|博物院|古街)$", "");
+        if (shortName.length() >= 2 && !shortName.equals(base)) {
+            result.add(shortName);
+        }
+        return result;
+    }
+}
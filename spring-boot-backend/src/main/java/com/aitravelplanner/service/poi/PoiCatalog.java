@@ -0,0 +1,90 @@
+package com.aitravelplanner.service.poi;
+
+import com.aitravelplanner.config.PoiProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.annotation.PostConstruct;
+import java.io.InputStream;
+import java.util.*;
+
+/**
+ * 本地景点餐厅目录
+ * 启动时从数据文件加载各城市的地点、贴士和文化洞察，并为每个城市建立空间网格索引
+ */
+@Component
+public class PoiCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(PoiCatalog.class);
+
+    @Autowired
+    private PoiProperties properties;
+
+    @Autowired
+    private ResourceLoader resourceLoader;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /** 城市名和别名（小写） → 城市目录 */
+    private Map<String, CityGuide> cities = Collections.emptyMap();
+
+    @PostConstruct
+    public void load() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Resource resource = resourceLoader.getResource(properties.getLocation());
+        try (InputStream input = resource.getInputStream()) {
+            Map<String, CityGuide> loaded = new HashMap<>();
+            int total = 0;
+            for (JsonNode city : objectMapper.readTree(input).path("cities")) {
+                List<PointOfInterest> pois = new ArrayList<>();
+                for (JsonNode poi : city.path("pois")) {
+                    pois.add(objectMapper.treeToValue(poi, PointOfInterest.class));
+                }
+                CityGuide guide = new CityGuide(city.path("name").asText(), texts(city.path("tips")),
+                                                texts(city.path("insights")), pois, properties.getCellSizeKm());
+                loaded.put(normalize(guide.getName()), guide);
+                for (String alias : texts(city.path("aliases"))) {
+                    loaded.put(normalize(alias), guide);
+                }
+                total += pois.size();
+            }
+            cities = loaded;
+            logger.info("🗺️ 本地景点目录加载完成: {}，共{}个地点", properties.getLocation(), total);
+        } catch (Exception e) {
+            logger.warn("⚠️ 本地景点目录加载失败，推荐将全部由AI生成: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 查找目的地对应的城市目录
+     */
+    public Optional<CityGuide> findCity(String destination) {
+        if (destination == null) {
+            return Optional.empty();
+        }
+        String key = normalize(destination);
+        CityGuide guide = cities.get(key);
+        if (guide == null && key.endsWith("市")) {
+            guide = cities.get(key.substring(0, key.length() - 1));
+        }
+        return Optional.ofNullable(guide);
+    }
+
+    private List<String> texts(JsonNode array) {
+        List<String> result = new ArrayList<>();
+        array.forEach(node -> result.add(node.asText()));
+        return result;
+    }
+
+    private String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,24 @@
+package com.aitravelplanner.service.poi;
+
+import java.util.List;
+
+/**
+ * 景点或餐厅
+ *
+ * @param category attraction 或 restaurant
+ * @param priceLevel 消费水平，1（平价）到4（高端）
+ * @param desc 一句话介绍
+ */
+public record PointOfInterest(String name, String category, double lat, double lng,
+                              List<String> tags, int priceLevel, String desc) {
+
+    public static final String ATTRACTION = "attraction";
+    public static final String RESTAURANT = "restaurant";
+
+    /**
+     * 推荐展示文本：名称 - 介绍
+     */
+    public String toRecommendation() {
+        return desc == null || desc.isBlank() ? name : name + " - " + desc;
+    }
+}
@@ -0,0 +1,70 @@
+package com.aitravelplanner.service.poi;
+
+import java.util.*;
+
+/**
+ * 城市级均匀网格索引
+ *
+ * 以城市中心纬度做等距投影换算成公里坐标，按固定边长分格；
+ * 半径查询只访问覆盖查询圆的少数格子，城市范围内投影误差可以忽略
+ */
+class SpatialGrid {
+
+    private static final double KM_PER_DEGREE_LAT = 110.574;
+    private static final double KM_PER_DEGREE_LNG_EQUATOR = 111.320;
+
+    private final double cellSizeKm;
+    private final double kmPerDegreeLng;
+    private final Map<Long, List<PointOfInterest>> cells = new HashMap<>();
+
+    SpatialGrid(Collection<PointOfInterest> pois, double cellSizeKm) {
+        this.cellSizeKm = cellSizeKm;
+        double referenceLat = pois.stream().mapToDouble(PointOfInterest::lat).average().orElse(0);
+        this.kmPerDegreeLng = KM_PER_DEGREE_LNG_EQUATOR * Math.cos(Math.toRadians(referenceLat));
+        for (PointOfInterest poi : pois) {
+            cells.computeIfAbsent(cellKey(cell(x(poi.lng())), cell(y(poi.lat()))), k -> new ArrayList<>()).add(poi);
+        }
+    }
+
+    /**
+     * 查询中心点半径范围内的地点
+     *
+     * @return 地点到中心点的距离（公里）
+     */
+    Map<PointOfInterest, Double> within(double lat, double lng, double radiusKm) {
+        double x = x(lng);
+        double y = y(lat);
+        Map<PointOfInterest, Double> result = new HashMap<>();
+        for (long cx = cell(x - radiusKm); cx <= cell(x + radiusKm); cx++) {
+            for (long cy = cell(y - radiusKm); cy <= cell(y + radiusKm); cy++) {
+                List<PointOfInterest> cell = cells.get(cellKey(cx, cy));
+                if (cell == null) {
+                    continue;
+                }
+                for (PointOfInterest poi : cell) {
+                    double distance = Math.hypot(x(poi.lng()) - x, y(poi.lat()) - y);
+                    if (distance <= radiusKm) {
+                        result.put(poi, distance);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private double x(double lng) {
+        return lng * kmPerDegreeLng;
+    }
+
+    private double y(double lat) {
+        return lat * KM_PER_DEGREE_LAT;
+    }
+
+    private long cell(double km) {
+        return (long) Math.floor(km / cellSizeKm);
+    }
+
+    private long cellKey(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xFFFFFFFFL);
+    }
+}